@@ -50,6 +50,8 @@ dependencies {
     implementation("org.apache.lucene:lucene-core:8.5.0")
     implementation("org.apache.lucene:lucene-analyzers-common:8.5.0")
     implementation("org.apache.lucene:lucene-queryparser:8.5.0")
+    // FunctionScoreQuery（搜索排序加成），queryparser 已间接依赖，这里显式声明
+    implementation("org.apache.lucene:lucene-queries:8.5.0")
 
     // IK 中文分词（Maven Central，可替代 JitPack 方案）
     implementation("com.github.magese:ik-analyzer:8.5.0")
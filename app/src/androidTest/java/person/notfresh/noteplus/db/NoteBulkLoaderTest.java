@@ -0,0 +1,265 @@
+package person.notfresh.noteplus.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import person.notfresh.noteplus.manager.ImportExportManager;
+
+import static org.junit.Assert.*;
+
+/**
+ * 批量导入的正确性检查和吞吐基准
+ * 基准生成 10 万条笔记的 JSON 导出文件，分别用改动前的逐行 ContentValues 插入（单个事务、逐个标签查询）
+ * 和 {@link ImportExportManager#readJsonData} 的批量路径导入，导入速度（条/秒）输出到日志
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteBulkLoaderTest {
+    private static final String TAG = "NoteBulkLoaderTest";
+    private static final String LEGACY_DB_NAME = "notes_import_legacy_test.db";
+    private static final String BULK_DB_NAME = "notes_import_bulk_test.db";
+    private static final String FILE_NAME = "bulk_import_test.json";
+    private static final int SMALL_NOTE_COUNT = 3000;
+    private static final int BENCH_NOTE_COUNT = 100_000;
+    private static final int TAG_COUNT = 50;
+
+    private final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+    private Context context;
+    private File file;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(LEGACY_DB_NAME);
+        context.deleteDatabase(BULK_DB_NAME);
+        file = new File(context.getCacheDir(), FILE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(LEGACY_DB_NAME);
+        context.deleteDatabase(BULK_DB_NAME);
+        file.delete();
+    }
+
+    @Test
+    public void importsAllRowsAndRestoresIndexesAndTriggers() throws Exception {
+        writeExportFile(SMALL_NOTE_COUNT);
+        NoteDbHelper dbHelper = new NoteDbHelper(context, BULK_DB_NAME);
+        try {
+            List<Integer> progress = new ArrayList<>();
+            ImportExportManager manager = new ImportExportManager(context, dbHelper, new ProjectContextManager(context));
+            ImportExportManager.ImportResult result = manager.readJsonData(Uri.fromFile(file),
+                    (done, total) -> {
+                        assertEquals(SMALL_NOTE_COUNT, (int) total);
+                        progress.add(done);
+                    });
+
+            assertEquals(SMALL_NOTE_COUNT, result.importedCount);
+            assertEquals(0, result.skippedCount);
+            assertTrue(progress.size() > 1);
+            assertEquals(SMALL_NOTE_COUNT, (int) progress.get(progress.size() - 1));
+
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            assertEquals(SMALL_NOTE_COUNT, count(db, "SELECT COUNT(*) FROM notes"));
+            assertEquals(TAG_COUNT, count(db, "SELECT COUNT(*) FROM tags"));
+            assertEquals(SMALL_NOTE_COUNT * 2, count(db, "SELECT COUNT(*) FROM note_tags"));
+            assertEquals(SMALL_NOTE_COUNT / 5, count(db, "SELECT COUNT(*) FROM time_ranges"));
+            assertEquals(SMALL_NOTE_COUNT / 3 * 2, count(db, "SELECT COUNT(*) FROM note_comments"));
+            assertEquals(SMALL_NOTE_COUNT / 3, count(db, "SELECT COUNT(*) FROM note_comments"
+                    + " WHERE parent_comment_id IS NOT NULL"));
+
+            // 每条笔记至少有一行变更日志，且没有按子行重复记录
+            assertEquals(SMALL_NOTE_COUNT, count(db, "SELECT COUNT(DISTINCT note_id) FROM change_log"));
+            assertTrue(count(db, "SELECT COUNT(*) FROM change_log") < SMALL_NOTE_COUNT * 2);
+
+            // 导入量超过原有笔记数，二级索引被删除后重建；插入触发器已恢复
+            assertEquals(1, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index'"
+                    + " AND name = 'idx_notes_archived_pinned_timestamp'"));
+            assertEquals(1, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index'"
+                    + " AND name = 'idx_note_comments_note_id'"));
+            assertEquals(3, count(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger'"
+                    + " AND name IN ('trg_notes_insert_log', 'trg_note_comments_insert_log', 'trg_note_tags_insert_log')"));
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    @Test
+    public void logImportThroughputBeforeAndAfter() throws Exception {
+        writeExportFile(BENCH_NOTE_COUNT);
+        Log.i(TAG, "synthetic export: " + BENCH_NOTE_COUNT + " notes, " + (file.length() / 1024) + " KiB");
+
+        NoteDbHelper legacyHelper = new NoteDbHelper(context, LEGACY_DB_NAME);
+        long legacyMs;
+        try {
+            long start = System.currentTimeMillis();
+            assertEquals(BENCH_NOTE_COUNT, legacyImport(legacyHelper));
+            legacyMs = System.currentTimeMillis() - start;
+        } finally {
+            legacyHelper.close();
+        }
+
+        NoteDbHelper bulkHelper = new NoteDbHelper(context, BULK_DB_NAME);
+        long bulkMs;
+        try {
+            ImportExportManager manager = new ImportExportManager(context, bulkHelper, new ProjectContextManager(context));
+            long start = System.currentTimeMillis();
+            ImportExportManager.ImportResult result = manager.readJsonData(Uri.fromFile(file));
+            bulkMs = System.currentTimeMillis() - start;
+            assertEquals(BENCH_NOTE_COUNT, result.importedCount);
+        } finally {
+            bulkHelper.close();
+        }
+
+        Log.i(TAG, "legacy ContentValues insert: " + legacyMs + "ms, notes/s=" + perSecond(legacyMs));
+        Log.i(TAG, "bulk loader: " + bulkMs + "ms, notes/s=" + perSecond(bulkMs));
+    }
+
+    private long perSecond(long ms) {
+        return ms > 0 ? BENCH_NOTE_COUNT * 1000L / ms : BENCH_NOTE_COUNT;
+    }
+
+    /**
+     * 生成单项目 JSON 导出文件：每条笔记两个标签，每 5 条一个时间范围，每 3 条一条追加内容和一条回复
+     */
+    private void writeExportFile(int noteCount) throws Exception {
+        long base = sdf.parse("2024-01-01 00:00:00").getTime();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("{\"exportType\":\"single_project\",\"notes\":[");
+            for (int i = 0; i < noteCount; i++) {
+                long timestamp = base + i * 60_000L;
+                JSONObject note = new JSONObject();
+                note.put("content", "synthetic note " + i + " with some text to index and search");
+                note.put("timestamp", sdf.format(timestamp));
+                note.put("cost", i % 7);
+                JSONArray tags = new JSONArray();
+                tags.put(new JSONObject().put("name", "tag" + (i % TAG_COUNT)).put("color", "#2196F3"));
+                tags.put(new JSONObject().put("name", "tag" + ((i + 1) % TAG_COUNT)).put("color", "#4CAF50"));
+                note.put("tags", tags);
+                if (i % 5 == 0) {
+                    note.put("timeRange", new JSONObject()
+                            .put("start", sdf.format(timestamp))
+                            .put("end", sdf.format(timestamp + 30 * 60_000L)));
+                }
+                if (i % 3 == 0) {
+                    JSONArray comments = new JSONArray();
+                    comments.put(new JSONObject().put("commentId", 1).put("parentCommentId", JSONObject.NULL)
+                            .put("content", "comment " + i).put("timestamp", sdf.format(timestamp + 60_000L)));
+                    comments.put(new JSONObject().put("commentId", 2).put("parentCommentId", 1)
+                            .put("content", "reply " + i).put("timestamp", sdf.format(timestamp + 120_000L)));
+                    note.put("comments", comments);
+                }
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(note.toString());
+            }
+            writer.write("]}");
+        }
+    }
+
+    /**
+     * 改动前的导入方式：读取同一个文件，单个事务内逐行 ContentValues 插入，每个标签查询一次
+     * @return 导入的笔记数
+     */
+    private int legacyImport(NoteDbHelper dbHelper) throws Exception {
+        StringBuilder json = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                json.append(line);
+            }
+        }
+        JSONArray notes = new JSONObject(json.toString()).getJSONArray("notes");
+
+        int imported = 0;
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < notes.length(); i++) {
+                JSONObject note = notes.getJSONObject(i);
+                ContentValues noteValues = new ContentValues();
+                noteValues.put(NoteDbHelper.COLUMN_CONTENT, note.getString("content"));
+                noteValues.put(NoteDbHelper.COLUMN_TIMESTAMP, sdf.parse(note.getString("timestamp")).getTime());
+                noteValues.put(NoteDbHelper.COLUMN_COST, note.getDouble("cost"));
+                noteValues.put(NoteDbHelper.COLUMN_IS_ARCHIVED, 0);
+                noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, 0);
+                long noteId = db.insert(NoteDbHelper.TABLE_NOTES, null, noteValues);
+
+                if (note.has("timeRange")) {
+                    JSONObject timeRange = note.getJSONObject("timeRange");
+                    dbHelper.saveTimeRange(noteId, sdf.parse(timeRange.getString("start")).getTime(),
+                            sdf.parse(timeRange.getString("end")).getTime());
+                }
+                JSONArray tags = note.getJSONArray("tags");
+                for (int j = 0; j < tags.length(); j++) {
+                    JSONObject tag = tags.getJSONObject(j);
+                    long tagId = dbHelper.getTagIdByName(tag.getString("name"));
+                    if (tagId == -1) {
+                        tagId = dbHelper.addTag(tag.getString("name"), tag.getString("color"));
+                    }
+                    dbHelper.linkNoteToTag(noteId, tagId);
+                }
+                if (note.has("comments")) {
+                    JSONArray comments = note.getJSONArray("comments");
+                    Long parentId = null;
+                    for (int j = 0; j < comments.length(); j++) {
+                        JSONObject comment = comments.getJSONObject(j);
+                        ContentValues commentValues = new ContentValues();
+                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_NOTE_ID, noteId);
+                        if (!comment.isNull("parentCommentId")) {
+                            commentValues.put(NoteDbHelper.COLUMN_PARENT_COMMENT_ID, parentId);
+                        }
+                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_CONTENT, comment.getString("content"));
+                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_TIMESTAMP,
+                                sdf.parse(comment.getString("timestamp")).getTime());
+                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_COST, 0.0);
+                        parentId = db.insert(NoteDbHelper.TABLE_NOTE_COMMENTS, null, commentValues);
+                    }
+                }
+                imported++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return imported;
+    }
+
+    private int count(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package person.notfresh.noteplus.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 检查项目数据库的打开策略（WAL、synchronous=NORMAL、页缓存）
+ * 同时对比回滚日志模式和 WAL 模式下一个写线程与多个读线程并发时的吞吐，结果输出到日志
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteDbHelperConcurrencyTest {
+    private static final String TAG = "NoteDbHelperConcurrencyTest";
+    private static final String WAL_DB_NAME = "notes_wal_test.db";
+    private static final String JOURNAL_DB_NAME = "notes_journal_test.db";
+    private static final int NOTE_COUNT = 2000;
+    private static final int READER_THREADS = 3;
+    private static final long DURATION_MS = 3000;
+
+    private static final String LIST_PAGE_QUERY = "SELECT _id, content, timestamp, cost, is_pinned FROM notes"
+            + " WHERE is_archived = 0 ORDER BY is_pinned DESC, timestamp DESC, _id DESC LIMIT 100";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(WAL_DB_NAME);
+        context.deleteDatabase(JOURNAL_DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(WAL_DB_NAME);
+        context.deleteDatabase(JOURNAL_DB_NAME);
+    }
+
+    @Test
+    public void opensWithWalPolicy() {
+        NoteDbHelper dbHelper = new NoteDbHelper(context, WAL_DB_NAME);
+        try {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            assertTrue(db.isWriteAheadLoggingEnabled());
+            assertEquals("wal", pragma(db, "journal_mode").toLowerCase());
+            // 1 = NORMAL
+            assertEquals("1", pragma(db, "synchronous"));
+            assertEquals("-4096", pragma(db, "cache_size"));
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    @Test
+    public void settingsSnapshotIsSharedByHelpersOnSameFile() {
+        NoteDbHelper first = new NoteDbHelper(context, WAL_DB_NAME);
+        NoteDbHelper second = new NoteDbHelper(context, WAL_DB_NAME);
+        try {
+            // 两个 Helper 都先读一次，各自的读取都走快照
+            assertEquals("none", first.getSetting("snapshot_test", "none"));
+            assertEquals("none", second.getSetting("snapshot_test", "none"));
+
+            second.saveSetting("snapshot_test", "saved");
+            assertEquals("saved", first.getSetting("snapshot_test", "none"));
+
+            // 一个 Helper 关闭后另一个仍读到库中的值
+            second.close();
+            assertEquals("saved", first.getSetting("snapshot_test", "none"));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void logConcurrentThroughputBeforeAndAfterWal() throws Exception {
+        // 改动前：回滚日志模式（Android 默认 synchronous=FULL），连接池只有一个连接
+        NoteDbHelper journalHelper = new NoteDbHelper(context, JOURNAL_DB_NAME);
+        journalHelper.setWriteAheadLoggingEnabled(false);
+        long[] before;
+        try {
+            SQLiteDatabase db = journalHelper.getWritableDatabase();
+            db.execSQL("PRAGMA synchronous=FULL");
+            assertNotEquals("wal", pragma(db, "journal_mode").toLowerCase());
+            populate(db);
+            before = runWorkload(journalHelper);
+        } finally {
+            journalHelper.close();
+        }
+
+        // 改动后：WAL，读连接与写连接分开
+        NoteDbHelper walHelper = new NoteDbHelper(context, WAL_DB_NAME);
+        long[] after;
+        try {
+            populate(walHelper.getWritableDatabase());
+            after = runWorkload(walHelper);
+        } finally {
+            walHelper.close();
+        }
+
+        Log.i(TAG, "rollback journal: reads/s=" + perSecond(before[0]) + " writes/s=" + perSecond(before[1]));
+        Log.i(TAG, "wal: reads/s=" + perSecond(after[0]) + " writes/s=" + perSecond(after[1]));
+        assertTrue(after[0] > 0);
+        assertTrue(after[1] > 0);
+    }
+
+    /**
+     * 一个写线程逐条插入笔记（每条一个事务，与界面保存一致），多个读线程反复查询列表第一页
+     * @return {读次数, 写次数}
+     */
+    private long[] runWorkload(NoteDbHelper dbHelper) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        threads.add(new Thread(() -> {
+            try {
+                SQLiteDatabase db = dbHelper.getWritableDatabase();
+                long i = 0;
+                while (running.get()) {
+                    db.execSQL("INSERT INTO notes (content, timestamp) VALUES (?, ?)",
+                            new Object[]{"concurrent " + i, NOTE_COUNT + i});
+                    i++;
+                    writes.incrementAndGet();
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }, "bench-writer"));
+        for (int r = 0; r < READER_THREADS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    SQLiteDatabase db = dbHelper.getReadableDatabase();
+                    while (running.get()) {
+                        Cursor cursor = db.rawQuery(LIST_PAGE_QUERY, null);
+                        try {
+                            while (cursor.moveToNext()) {
+                                // 读完所有行
+                            }
+                        } finally {
+                            cursor.close();
+                        }
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "bench-reader-" + r));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(DURATION_MS);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("并发读写失败", failure.get());
+        }
+        return new long[]{reads.get(), writes.get()};
+    }
+
+    private long perSecond(long count) {
+        return count * 1000 / DURATION_MS;
+    }
+
+    private String pragma(SQLiteDatabase db, String name) {
+        Cursor cursor = db.rawQuery("PRAGMA " + name, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void populate(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= NOTE_COUNT; i++) {
+                db.execSQL("INSERT INTO notes (content, timestamp, is_pinned, is_archived) VALUES (?, ?, ?, ?)",
+                        new Object[]{"note " + i, i, i % 50 == 0 ? 1 : 0, i % 10 == 0 ? 1 : 0});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
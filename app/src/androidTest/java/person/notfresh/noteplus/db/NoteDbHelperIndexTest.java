@@ -0,0 +1,169 @@
+package person.notfresh.noteplus.db;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import person.notfresh.noteplus.manager.NoteCursorWrapper;
+
+import static org.junit.Assert.*;
+
+/**
+ * 检查热点查询的执行计划（EXPLAIN QUERY PLAN）是否走索引
+ * 同时记录删除索引前后的计划和耗时，便于对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteDbHelperIndexTest {
+    private static final String TAG = "NoteDbHelperIndexTest";
+    private static final String DB_NAME = "notes_index_test.db";
+    private static final int NOTE_COUNT = 5000;
+
+    // loadNotesPage 第 2 页起的查询（带锚点），参数已代入：非置顶分区，锚点 (timestamp=2500, _id=2500)
+    private static final String LIST_PAGE_QUERY = listPageQuery(true);
+    private static final String LIST_PAGE_ASC_QUERY = listPageQuery(false);
+    private static final String TIMELINE_QUERY = "SELECT _id, content, timestamp FROM notes"
+            + " WHERE is_archived = 0 AND timestamp >= 2500";
+    private static final String TIME_RANGE_QUERY = "SELECT range_id, note_id, start_time, end_time FROM time_ranges"
+            + " WHERE note_id IN (1, 2, 3)";
+    private static final String TAGS_BY_NOTE_QUERY = "SELECT t.tag_id, t.tag_name FROM tags t"
+            + " INNER JOIN note_tags nt ON t.tag_id = nt.tag_id WHERE nt.record_id IN (1, 2, 3)";
+    private static final String NOTES_BY_TAG_QUERY = "SELECT record_id FROM note_tags WHERE tag_id = 1";
+    private static final String IMAGES_QUERY = "SELECT note_id, path FROM note_images WHERE note_id IN (1, 2, 3)";
+    private static final String AUDIO_QUERY = "SELECT note_id, path FROM note_audio WHERE note_id IN (1, 2, 3)";
+
+    private Context context;
+    private NoteDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new NoteDbHelper(context, DB_NAME);
+        populate(dbHelper.getWritableDatabase());
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void hotQueriesUseIndexes() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        assertUsesIndex(db, LIST_PAGE_QUERY, "idx_notes_archived_pinned_timestamp");
+        assertUsesIndex(db, LIST_PAGE_ASC_QUERY, "idx_notes_archived_pinned_timestamp");
+        // 两个方向都直接按索引顺序返回，不需要临时排序
+        assertFalse(explain(db, LIST_PAGE_QUERY).contains("USE TEMP B-TREE"));
+        assertFalse(explain(db, LIST_PAGE_ASC_QUERY).contains("USE TEMP B-TREE"));
+        assertUsesIndex(db, TIMELINE_QUERY, "idx_notes_archived_timestamp");
+        assertUsesIndex(db, TIME_RANGE_QUERY, "idx_time_ranges_note_id");
+        assertUsesIndex(db, NOTES_BY_TAG_QUERY, "idx_note_tags_tag_id");
+        assertUsesIndex(db, IMAGES_QUERY, "idx_note_images_note_id");
+        assertUsesIndex(db, AUDIO_QUERY, "idx_note_audio_note_id");
+        // 按笔记查标签由 note_tags 主键覆盖
+        assertFalse(explain(db, TAGS_BY_NOTE_QUERY).contains("SCAN nt"));
+    }
+
+    @Test
+    public void logPlansBeforeAndAfterIndexes() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String[] queries = {LIST_PAGE_QUERY, LIST_PAGE_ASC_QUERY, TIMELINE_QUERY, TIME_RANGE_QUERY, NOTES_BY_TAG_QUERY,
+                IMAGES_QUERY, AUDIO_QUERY};
+
+        for (String query : queries) {
+            Log.i(TAG, "with index: " + explain(db, query) + " " + timeQuery(db, query) + "us");
+        }
+
+        db.execSQL("DROP INDEX idx_notes_archived_pinned_timestamp");
+        db.execSQL("DROP INDEX idx_notes_archived_timestamp");
+        db.execSQL("DROP INDEX idx_note_tags_tag_id");
+        db.execSQL("DROP INDEX idx_time_ranges_note_id");
+        db.execSQL("DROP INDEX idx_note_images_note_id");
+        db.execSQL("DROP INDEX idx_note_audio_note_id");
+
+        for (String query : queries) {
+            String plan = explain(db, query);
+            Log.i(TAG, "without index: " + plan + " " + timeQuery(db, query) + "us");
+        }
+        assertTrue(explain(db, TIME_RANGE_QUERY).contains("SCAN"));
+    }
+
+    /**
+     * 用 loadNotesPage 的 SQL 构造第 2 页起的查询，把参数代入以便 EXPLAIN 和计时
+     */
+    private static String listPageQuery(boolean timeDescOrder) {
+        String sql = NoteDbHelper.notesPageSql(timeDescOrder, true, 0, NoteCursorWrapper.PAGE_SIZE);
+        for (String arg : new String[]{"0", "2500", "2500"}) {
+            sql = sql.replaceFirst("\\?", arg);
+        }
+        return sql;
+    }
+
+    private void assertUsesIndex(SQLiteDatabase db, String query, String indexName) {
+        String plan = explain(db, query);
+        assertTrue(query + " -> " + plan, plan.contains(indexName));
+    }
+
+    private String explain(SQLiteDatabase db, String query) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, null);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                if (plan.length() > 0) {
+                    plan.append(" | ");
+                }
+                plan.append(cursor.getString(detailIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+
+    private long timeQuery(SQLiteDatabase db, String query) {
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            Cursor cursor = db.rawQuery(query, null);
+            while (cursor.moveToNext()) {
+                // 读完所有行
+            }
+            cursor.close();
+        }
+        return (System.nanoTime() - start) / 20 / 1000;
+    }
+
+    private void populate(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO tags (tag_name) VALUES ('t1'), ('t2'), ('t3')");
+            for (int i = 1; i <= NOTE_COUNT; i++) {
+                db.execSQL("INSERT INTO notes (content, timestamp, is_pinned, is_archived) VALUES (?, ?, ?, ?)",
+                        new Object[]{"note " + i, i, i % 50 == 0 ? 1 : 0, i % 10 == 0 ? 1 : 0});
+                db.execSQL("INSERT INTO time_ranges (note_id, start_time, end_time) VALUES (?, ?, ?)",
+                        new Object[]{i, i, i + 1});
+                db.execSQL("INSERT INTO note_tags (record_id, tag_id) VALUES (?, ?)",
+                        new Object[]{i, i % 3 + 1});
+                db.execSQL("INSERT INTO note_images (note_id, path) VALUES (?, ?)",
+                        new Object[]{i, "/tmp/" + i + ".jpg"});
+                db.execSQL("INSERT INTO note_audio (note_id, path) VALUES (?, ?)",
+                        new Object[]{i, "/tmp/" + i + ".m4a"});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.execSQL("ANALYZE");
+    }
+}
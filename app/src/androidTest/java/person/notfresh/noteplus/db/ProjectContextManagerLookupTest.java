@@ -0,0 +1,114 @@
+package person.notfresh.noteplus.db;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 项目查找路径的微基准
+ * 对比快照命中时和每次重建快照（相当于改动前每次解析 SharedPreferences 并重新排序）的单次耗时，结果输出到日志；
+ * 同时检查修改项目后快照立即失效
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProjectContextManagerLookupTest {
+    private static final String TAG = "ProjectContextManagerLookupTest";
+    private static final String PROJECT_PREFIX = "lookup_bench_";
+    private static final int PROJECT_COUNT = 40;
+    private static final int WARMUP_ITERATIONS = 1000;
+    private static final int ITERATIONS = 20000;
+
+    private ProjectContextManager projectManager;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        projectManager = new ProjectContextManager(context);
+        for (int i = 0; i < PROJECT_COUNT; i++) {
+            projectManager.createProject(PROJECT_PREFIX + i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (int i = 0; i < PROJECT_COUNT; i++) {
+            String projectName = PROJECT_PREFIX + i;
+            projectManager.moveProjectToRecycleBin(projectName);
+            projectManager.permanentlyDeleteProject(projectName);
+        }
+    }
+
+    @Test
+    public void snapshotFollowsMutations() {
+        String projectName = PROJECT_PREFIX + "renamed";
+        assertTrue(projectManager.hasProject(PROJECT_PREFIX + 0));
+        assertTrue(projectManager.moveProjectToRecycleBin(PROJECT_PREFIX + 0));
+        assertFalse(projectManager.hasProject(PROJECT_PREFIX + 0));
+        assertTrue(projectManager.isRecycled(PROJECT_PREFIX + 0));
+        assertTrue(projectManager.restoreProjectFromRecycleBin(PROJECT_PREFIX + 0));
+        assertTrue(projectManager.hasProject(PROJECT_PREFIX + 0));
+
+        assertTrue(projectManager.renameProject(PROJECT_PREFIX + 1, projectName));
+        assertTrue(projectManager.hasProject(projectName));
+        assertFalse(projectManager.hasProject(PROJECT_PREFIX + 1));
+        assertTrue(projectManager.renameProject(projectName, PROJECT_PREFIX + 1));
+
+        // 返回的列表是副本，修改不影响快照
+        List<String> projects = projectManager.getProjectList();
+        projects.clear();
+        assertTrue(projectManager.hasProject(PROJECT_PREFIX + 2));
+    }
+
+    @Test
+    public void logLookupCost() {
+        String target = PROJECT_PREFIX + (PROJECT_COUNT - 1);
+        // 打开数据库并持有引用，基准只测查找本身
+        DbHelperCache.Lease held = projectManager.acquireDbHelper(target);
+        assertNotNull(held);
+        try {
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                projectManager.hasProject(target);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertTrue(projectManager.hasProject(target));
+            }
+            long hasProjectNs = (System.nanoTime() - start) / ITERATIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                try (DbHelperCache.Lease lease = projectManager.acquireDbHelper(target)) {
+                    assertNotNull(lease);
+                }
+            }
+            long cachedLookupNs = (System.nanoTime() - start) / ITERATIONS;
+
+            // 每次先让快照失效，相当于改动前每次查找都读取并排序项目列表
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                projectManager.invalidateSnapshot();
+                try (DbHelperCache.Lease lease = projectManager.acquireDbHelper(target)) {
+                    assertNotNull(lease);
+                }
+            }
+            long rebuildLookupNs = (System.nanoTime() - start) / ITERATIONS;
+
+            Log.i(TAG, PROJECT_COUNT + " projects: hasProject=" + hasProjectNs + "ns"
+                    + " acquireDbHelper(snapshot)=" + cachedLookupNs + "ns"
+                    + " acquireDbHelper(rebuild each call)=" + rebuildLookupNs + "ns");
+        } finally {
+            held.close();
+        }
+    }
+}
@@ -69,6 +69,7 @@ import android.widget.Spinner;
 import android.widget.ArrayAdapter;
 import android.widget.AdapterView;
 import android.widget.HorizontalScrollView;
+import android.widget.AbsListView;
 import com.google.android.flexbox.FlexboxLayout;
 import android.media.MediaRecorder;
 import android.media.MediaPlayer;
@@ -102,11 +103,13 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import person.notfresh.noteplus.db.DbHelperCache;
 import person.notfresh.noteplus.db.NoteDbHelper;
 import person.notfresh.noteplus.db.ProjectContextManager;
 import person.notfresh.noteplus.core.model.Tag;
 import person.notfresh.noteplus.core.GlobalTimeline;
 import person.notfresh.noteplus.core.TimeRangeFilter;
+import person.notfresh.noteplus.core.TimelineCursor;
 import person.notfresh.noteplus.core.model.Comment;
 
 import person.notfresh.noteplus.util.NotificationHelper;
@@ -124,8 +127,11 @@ import person.notfresh.noteplus.core.model.AudioAttachment;
 import person.notfresh.noteplus.widget.NoteWidgetUpdater;
 import person.notfresh.noteplus.widget.NoteWidgetProvider;
 import person.notfresh.noteplus.search.SearchManager;
+import person.notfresh.noteplus.search.SearchPage;
+import person.notfresh.noteplus.search.SearchQuery;
 import person.notfresh.noteplus.search.SearchResult;
 import person.notfresh.noteplus.search.SearchResultAdapter;
+import person.notfresh.noteplus.search.SearchSuggestions;
 
 
 public class MainActivity extends AppCompatActivity implements INoteListCallback {
@@ -162,6 +168,16 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
     private Runnable timelineClickRunnable;
     private long lastTimelineClickTime = 0;
     private int lastTimelineClickPosition = -1;
+
+    // Timeline 范围下拉框中"自定义"选项的位置
+    private static final int TIMELINE_CUSTOM_RANGE_POSITION = 5;
+    // 距离列表底部还剩多少项时读取下一页
+    private static final int TIMELINE_LOAD_MORE_THRESHOLD = 30;
+    // 当前 Timeline 列表对应的分页游标，切换范围或排序后会被替换
+    private TimelineCursor timelineCursor;
+    private boolean timelineLoadingMore = false;
+    // 正在加载下一页时，加载完成后需要执行的回调（如跳转日期）
+    private Runnable timelineLoadCallback;
     private static final long DOUBLE_CLICK_DELAY = 500; // 双击间隔时间（毫秒），增加到500ms以提高检测成功率
 
     private EditText momentEditText;
@@ -249,11 +265,19 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
     private View searchContainer;
     private EditText searchEditText;
     private ListView searchResultListView;
+    private View searchFacetScrollView;
+    private LinearLayout searchFacetContainer;
+    private View searchSuggestScrollView;
+    private LinearLayout searchSuggestContainer;
     private SearchResultAdapter searchResultAdapter;
     private ArrayList<SearchResult> searchResults = new ArrayList<>();
+    // 最近一页搜索结果，用于继续加载下一页；开始新的搜索时替换
+    private SearchPage lastSearchPage;
     private SearchManager searchManager;
     private Handler searchHandler = new Handler();
     private Runnable searchRunnable;
+    // 搜索防抖时间：输入补全直接查词典，不经过防抖，搜索本身的防抖可以更短
+    private static final int SEARCH_DEBOUNCE_MS = 150;
     private MenuItem searchMenuItem;
 
     // 添加笔记相关容器（搜索时隐藏）
@@ -332,9 +356,8 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
             noteListManager.loadNotes();
         }
 
-        // 初始化搜索管理器
-        String currentProject = projectManager != null ? projectManager.getCurrentProject() : "default";
-        searchManager = SearchManager.getInstance(this, dbHelper, projectManager, currentProject);
+        // 初始化搜索管理器（不做 IO，索引在首帧之后预热）
+        searchManager = SearchManager.getInstance(this, projectManager);
         initSearchUi();
 
         // 检查索引是否存在且版本匹配
@@ -349,8 +372,13 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
             }
         }
 
-        // 触发当前项目的未索引笔记补建
-        searchManager.indexUnindexedNotes(null);
+        // 首帧绘制之后再在后台预热索引并同步变更，不与启动争抢 IO
+        getWindow().getDecorView().post(() -> {
+            if (searchManager != null) {
+                searchManager.warmUp();
+                searchManager.syncIndex(null);
+            }
+        });
 
         // 处理来自Widget的跳转请求
         handleWidgetIntent(getIntent());
@@ -430,10 +458,12 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         super.onDestroy();
         stopRecordingIfNeeded();
         stopPreviewPlayback();
+        closeTimelineCursor();
         // NoteListManager 会自己管理 Cursor 包装器的关闭
-        if (dbHelper != null) {
-            dbHelper.close();
+        if (noteListManager != null) {
+            noteListManager.release();
         }
+        // dbHelper 归进程内的 DbHelperCache 所有，由缓存负责淘汰和关闭，这里不直接关闭
         // 即使closeAll()不可用，也确保正确关闭数据库
         if (projectManager != null) {
             // 暂时的解决方案，不调用closeAll
@@ -444,16 +474,18 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         if (searchHandler != null) {
             searchHandler.removeCallbacksAndMessages(null);
         }
-        if (searchManager != null) {
-            searchManager.release();
-            searchManager = null;
-        }
+        // SearchManager 是进程内单例，后台索引任务和下一个 Activity 仍在使用，这里只放开引用，不释放
+        searchManager = null;
     }
 
     private void initSearchUi() {
         searchContainer = findViewById(R.id.searchContainer);
         searchEditText = findViewById(R.id.searchEditText);
         searchResultListView = findViewById(R.id.searchResultListView);
+        searchFacetScrollView = findViewById(R.id.searchFacetScrollView);
+        searchFacetContainer = findViewById(R.id.searchFacetContainer);
+        searchSuggestScrollView = findViewById(R.id.searchSuggestScrollView);
+        searchSuggestContainer = findViewById(R.id.searchSuggestContainer);
         ImageButton searchCloseButton = findViewById(R.id.searchCloseButton);
 
         // 初始化添加笔记相关容器（搜索时隐藏）
@@ -464,6 +496,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
 
         if (searchResultListView != null) {
             searchResultAdapter = new SearchResultAdapter(this, searchResults);
+            searchResultAdapter.setOnLoadMoreListener(this::loadMoreSearchResults);
             searchResultListView.setAdapter(searchResultAdapter);
             searchResultListView.setOnItemClickListener((parent, view, position, id) -> {
                 if (position < 0 || position >= searchResults.size()) {
@@ -837,7 +870,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
      */
     private void loadSettings() {
         // 加载花费显示设置
-        showCost = Boolean.parseBoolean(dbHelper.getSetting(NoteDbHelper.KEY_COST_DISPLAY, "true"));
+        showCost = dbHelper.getBooleanSetting(NoteDbHelper.KEY_COST_DISPLAY, true);
         
         // 根据设置决定是否显示花费输入框
         if (!showCost) {
@@ -847,7 +880,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         }
         
         // 加载时间区间显示设置
-        showTimeRange = Boolean.parseBoolean(dbHelper.getSetting(NoteDbHelper.KEY_TIME_RANGE_DISPLAY, "false"));
+        showTimeRange = dbHelper.getBooleanSetting(NoteDbHelper.KEY_TIME_RANGE_DISPLAY, false);
         
         // 根据设置决定是否显示时间区间输入框
         if (!showTimeRange) {
@@ -857,7 +890,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         }
         
         // 加载时间排序设置
-        timeDescOrder = Boolean.parseBoolean(dbHelper.getSetting(NoteDbHelper.KEY_TIME_DESC_ORDER, "true"));
+        timeDescOrder = dbHelper.getBooleanSetting(NoteDbHelper.KEY_TIME_DESC_ORDER, true);
     }
 
     /**
@@ -875,8 +908,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
 
         
         // 检查是否开启了时间范围必填
-        String timeRangeRequired = dbHelper.getSetting(NoteDbHelper.KEY_TIME_RANGE_REQUIRED, "false");
-        if (Boolean.parseBoolean(timeRangeRequired) && !hasTimeRange) {
+        if (dbHelper.getBooleanSetting(NoteDbHelper.KEY_TIME_RANGE_REQUIRED, false) && !hasTimeRange) {
             Toast.makeText(this, "请设置开始和结束时间", Toast.LENGTH_SHORT).show();
             return;
         }
@@ -888,9 +920,8 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         }
         
         // 检查花费必填配置
-        String costRequired = dbHelper.getSetting(NoteDbHelper.KEY_COST_REQUIRED, "false");
         String costText = costEditText.getText().toString().trim();
-        if (Boolean.parseBoolean(costRequired) && costText.isEmpty()) {
+        if (dbHelper.getBooleanSetting(NoteDbHelper.KEY_COST_REQUIRED, false) && costText.isEmpty()) {
             Toast.makeText(this, "请输入花费金额", Toast.LENGTH_SHORT).show();
             return;
         }
@@ -1315,6 +1346,12 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         if (searchContainer != null) {
             searchContainer.setVisibility(View.GONE);
         }
+        if (searchFacetScrollView != null) {
+            searchFacetScrollView.setVisibility(View.GONE);
+        }
+        if (searchSuggestScrollView != null) {
+            searchSuggestScrollView.setVisibility(View.GONE);
+        }
         if (searchResultListView != null) {
             searchResultListView.setVisibility(View.GONE);
         }
@@ -1359,23 +1396,38 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                 searchRunnable = null;
             }
             searchResults.clear();
+            lastSearchPage = null;
             if (searchResultAdapter != null) {
+                searchResultAdapter.setHasMore(false);
                 searchResultAdapter.notifyDataSetChanged();
             }
+            updateSearchFacets(null);
+            updateSearchSuggestions(null);
             return;
         }
 
+        // 补全只查词典，每次输入都直接请求；结果返回时输入已变化则丢弃
+        searchManager.suggest(query, suggestions -> {
+            if (searchEditText != null && suggestions.getInput().equals(searchEditText.getText().toString())) {
+                updateSearchSuggestions(suggestions);
+            }
+        });
+
         // 防抖处理
         if (searchRunnable != null) {
             searchHandler.removeCallbacks(searchRunnable);
         }
         searchRunnable = () -> {
-            searchManager.search(trimmed, results -> {
+            searchManager.search(trimmed, page -> {
+                List<SearchResult> results = page.getResults();
+                lastSearchPage = page;
                 searchResults.clear();
                 searchResults.addAll(results);
                 if (searchResultAdapter != null) {
+                    searchResultAdapter.setHasMore(page.hasMore());
                     searchResultAdapter.notifyDataSetChanged();
                 }
+                updateSearchFacets(page);
                 // 有结果时只显示结果列表，搜索框保持显示
                 if (!results.isEmpty()) {
                     if (searchResultListView != null) {
@@ -1386,7 +1438,138 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                 }
             });
         };
-        searchHandler.postDelayed(searchRunnable, 300);
+        searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+    }
+
+    /**
+     * 显示输入补全，点击后替换搜索框中正在输入的最后一个词
+     * @param suggestions 补全结果，为 null 或空时隐藏
+     */
+    private void updateSearchSuggestions(SearchSuggestions suggestions) {
+        if (searchSuggestContainer == null || searchSuggestScrollView == null) {
+            return;
+        }
+        searchSuggestContainer.removeAllViews();
+        if (suggestions == null || suggestions.isEmpty()) {
+            searchSuggestScrollView.setVisibility(View.GONE);
+            return;
+        }
+        int padding = DisplayUtil.dpToPx(this, 4);
+        int replaceStart = suggestions.getReplaceStart();
+        for (String suggestion : suggestions.getSuggestions()) {
+            TextView suggestView = new TextView(this);
+            suggestView.setText(suggestion);
+            suggestView.setTextSize(13);
+            suggestView.setTextColor(0xFF424242);
+            suggestView.setBackgroundColor(0xFFEEEEEE);
+            suggestView.setPadding(padding * 2, padding, padding * 2, padding);
+            LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                    LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT);
+            params.setMargins(0, 0, DisplayUtil.dpToPx(this, 8), 0);
+            suggestView.setLayoutParams(params);
+            suggestView.setOnClickListener(v -> {
+                if (searchEditText == null) {
+                    return;
+                }
+                String current = searchEditText.getText().toString();
+                // 从被补全的词开始替换（中文输入中该词前面可能没有空白）
+                int wordStart = Math.min(replaceStart, current.length());
+                // 补全后加空格，表示这个词已输入完整（文本变化会触发搜索并收起补全）
+                String updated = current.substring(0, wordStart) + suggestion + " ";
+                searchEditText.setText(updated);
+                searchEditText.setSelection(updated.length());
+            });
+            searchSuggestContainer.addView(suggestView);
+        }
+        searchSuggestScrollView.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * 显示第一页返回的命中总数和分面计数，点击项目或标签把对应过滤条件追加到搜索框
+     * @param page 第一页结果，为 null 时隐藏
+     */
+    private void updateSearchFacets(SearchPage page) {
+        if (searchFacetContainer == null || searchFacetScrollView == null) {
+            return;
+        }
+        searchFacetContainer.removeAllViews();
+        if (page == null || page.getTotalHits() <= 0) {
+            searchFacetScrollView.setVisibility(View.GONE);
+            return;
+        }
+
+        TextView totalView = new TextView(this);
+        totalView.setText("共 " + page.getTotalHits() + " 条");
+        totalView.setTextSize(13);
+        totalView.setTextColor(0xFF757575);
+        totalView.setPadding(0, DisplayUtil.dpToPx(this, 4), DisplayUtil.dpToPx(this, 8), DisplayUtil.dpToPx(this, 4));
+        searchFacetContainer.addView(totalView);
+
+        SearchQuery currentQuery = SearchQuery.parse(page.getQuery());
+        // 只有一个项目时按项目过滤没有意义
+        if (page.getProjectCounts().size() > 1) {
+            for (Map.Entry<String, Integer> entry : page.getProjectCounts().entrySet()) {
+                addSearchFacetView("📁" + entry.getKey() + " " + entry.getValue(), "project:", entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Integer> entry : page.getTagCounts().entrySet()) {
+            if (currentQuery.getTags().contains(entry.getKey())) {
+                continue;
+            }
+            addSearchFacetView("#" + entry.getKey() + " " + entry.getValue(), "tag:", entry.getKey());
+        }
+        searchFacetScrollView.setVisibility(View.VISIBLE);
+    }
+
+    private void addSearchFacetView(String label, String prefix, String value) {
+        TextView facetView = new TextView(this);
+        facetView.setText(label);
+        facetView.setTextSize(13);
+        facetView.setTextColor(0xFF2196F3);
+        facetView.setBackgroundColor(0xFFE3F2FD);
+        int padding = DisplayUtil.dpToPx(this, 4);
+        facetView.setPadding(padding * 2, padding, padding * 2, padding);
+        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT);
+        params.setMargins(0, 0, DisplayUtil.dpToPx(this, 8), 0);
+        facetView.setLayoutParams(params);
+        facetView.setOnClickListener(v -> {
+            if (searchEditText == null) {
+                return;
+            }
+            String current = searchEditText.getText().toString().trim();
+            String filter = prefix + SearchQuery.formatValue(value);
+            String updated = current.isEmpty() ? filter : current + " " + filter;
+            // 文本变化会触发搜索
+            searchEditText.setText(updated);
+            searchEditText.setSelection(updated.length());
+        });
+        searchFacetContainer.addView(facetView);
+    }
+
+    /**
+     * 滚动到搜索结果末尾时加载下一页，搜索词已变化时丢弃结果
+     */
+    private void loadMoreSearchResults() {
+        SearchPage previous = lastSearchPage;
+        if (searchManager == null || previous == null || !previous.hasMore()) {
+            return;
+        }
+        searchManager.loadMore(previous, page -> {
+            if (lastSearchPage != previous) {
+                return;
+            }
+            lastSearchPage = page;
+            searchResults.addAll(page.getResults());
+            if (searchResultAdapter != null) {
+                searchResultAdapter.setHasMore(page.hasMore());
+                searchResultAdapter.notifyDataSetChanged();
+            }
+            // 整页命中都是缺少存储字段的旧格式文档（已跳过）时没有新条目可显示，直接继续加载
+            if (page.getResults().isEmpty() && page.hasMore()) {
+                loadMoreSearchResults();
+            }
+        });
     }
 
     @Override
@@ -1903,10 +2086,17 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                 // 注意：需要在ProjectContextManager中添加重命名方法
                 if (projectManager.renameProject(oldName, newName)) {
                     Toast.makeText(this, "项目已重命名", Toast.LENGTH_SHORT).show();
+                    if (newName.equals(projectManager.getCurrentProject())) {
+                        // 数据库文件已改名，旧的 Helper 已关闭，换成新文件的 Helper
+                        dbHelper = projectManager.getCurrentDbHelper();
+                        importExportManager = new person.notfresh.noteplus.manager.ImportExportManager(
+                                this, dbHelper, projectManager);
+                    }
                     updateTitle();
-                    // 重建搜索索引（项目重命名后索引中的旧项目名会失效）
+                    // 只重建该项目的索引分片（分片中的项目名随重命名失效），其他项目不受影响
                     if (searchManager != null) {
-                        searchManager.rebuildIndex();
+                        searchManager.dropProjectIndex(oldName);
+                        searchManager.syncIndex(null);
                     }
                 } else {
                     Toast.makeText(this, "重命名失败", Toast.LENGTH_SHORT).show();
@@ -1944,6 +2134,10 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                     
                     if (success) {
                         Toast.makeText(this, "项目已移至回收站", Toast.LENGTH_SHORT).show();
+                        // 回收站中的项目不参与搜索，删除它的索引分片
+                        if (searchManager != null) {
+                            searchManager.dropProjectIndex(projectName);
+                        }
                         updateTitle();
                         clearForm();
                         
@@ -1957,10 +2151,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                             e.printStackTrace();
                             Toast.makeText(this, "正在恢复...", Toast.LENGTH_SHORT).show();
                             
-                            // 重新初始化数据库连接
-                            if (dbHelper != null) {
-                                dbHelper.close();
-                            }
+                            // 重新获取当前项目的数据库Helper（由缓存管理，不直接关闭旧的）
                             dbHelper = projectManager.getCurrentDbHelper();
                             if (noteListManager != null) {
                 noteListManager.loadNotes();
@@ -2020,15 +2211,11 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         // 使用后台线程处理数据库操作
         new Thread(() -> {
             if (projectManager.switchToProject(projectName)) {
-                // 数据库操作放在后台线程中执行
-                if (dbHelper != null) {
-                    dbHelper.close();
-                }
+                // 数据库操作放在后台线程中执行；旧项目的Helper留在缓存中，由缓存按最近使用淘汰
                 dbHelper = projectManager.getCurrentDbHelper();
 
                 if (searchManager != null) {
-                    searchManager.rebindDbHelper(dbHelper, projectName);
-                    searchManager.indexUnindexedNotes(null);
+                    searchManager.syncIndex(null);
                 }
                 
                 // 更新导入导出管理器
@@ -2251,6 +2438,10 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                 // 恢复项目
                 if (projectManager.restoreProjectFromRecycleBin(projectName)) {
                     Toast.makeText(this, "项目已恢复", Toast.LENGTH_SHORT).show();
+                    // 恢复的项目没有索引分片，同步时全量索引
+                    if (searchManager != null) {
+                        searchManager.syncIndex(null);
+                    }
                 } else {
                     Toast.makeText(this, "恢复失败", Toast.LENGTH_SHORT).show();
                 }
@@ -3220,15 +3411,8 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         );
 
         // 读取折叠显示字数配置
-        int foldLength;
-        try {
-            foldLength = Integer.parseInt(dbHelper.getSetting(NoteDbHelper.KEY_FOLD_DISPLAY_LENGTH, "300"));
-            if (foldLength < 1) {
-                foldLength = 1;
-            }
-        } catch (Exception e) {
-            foldLength = 300;
-        }
+        int foldLength = Math.max(1, dbHelper.getIntSetting(NoteDbHelper.KEY_FOLD_DISPLAY_LENGTH,
+                NoteDbHelper.DEFAULT_FOLD_DISPLAY_LENGTH));
 
         int finalFoldLength = foldLength;
         adapter.setViewBinder((view, cursor, columnIndex) -> {
@@ -3278,6 +3462,9 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                         boolean success = dbHelper.restoreArchivedNote(noteId);
                         if (success) {
                             Toast.makeText(this, "已还原", Toast.LENGTH_SHORT).show();
+                            if (searchManager != null) {
+                                searchManager.reindexNote(noteId, projectManager.getCurrentProject());
+                            }
 
                             // 刷新主列表
                             if (noteListManager != null) {
@@ -3330,22 +3517,27 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         // 创建对话框
         AlertDialog dialog = builder.create();
 
+        // 自定义范围 [起始时间, 结束时间]，未选择时结束时间为 0
+        final long[] customRange = {0, 0};
+        // 最近一次选择的预设范围位置（取消自定义时恢复）
+        final int[] lastPresetPosition = {1};
+
         // 设置跳转日期按钮点击事件
         jumpToDateButton.setOnClickListener(v -> {
             // 获取当前 Timeline 的时间范围
-            int selectedPosition = rangeSpinner.getSelectedItemPosition();
-            TimeRangeFilter currentRange = getTimeRangeFromPosition(selectedPosition);
-            boolean descending = sortButton.getText().toString().equals("逆序");
+            long[] currentRange = getTimelineRange(rangeSpinner.getSelectedItemPosition(), customRange);
 
             // 显示日期跳转对话框（不关闭 Timeline）
-            showDateJumpDialogForTimeline(timelineListView, currentRange, descending);
+            showDateJumpDialogForTimeline(timelineListView, itemCountText, currentRange[0], currentRange[1]);
         });
 
         // 设置关闭按钮点击事件
         closeButton.setOnClickListener(v -> dialog.dismiss());
+        // 关闭时释放游标持有的各项目数据库引用
+        dialog.setOnDismissListener(d -> closeTimelineCursor());
 
         // 初始化时间范围选择器
-        String[] rangeOptions = {"最近3天", "最近1周", "最近2周", "最近1个月", "最近3个月"};
+        String[] rangeOptions = {"最近3天", "最近1周", "最近2周", "最近1个月", "最近3个月", "自定义..."};
         ArrayAdapter<String> rangeAdapter = new ArrayAdapter<>(this, 
             android.R.layout.simple_spinner_item, rangeOptions);
         rangeAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
@@ -3355,6 +3547,10 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         SharedPreferences prefs = getSharedPreferences(PREFS_TIMELINE, MODE_PRIVATE);
         int savedRangePosition = prefs.getInt(KEY_TIMELINE_RANGE, 1); // 默认最近1周（位置1，因为位置0现在是最近3天）
         boolean savedSortDescending = prefs.getBoolean(KEY_TIMELINE_SORT, false); // 默认顺序
+        if (savedRangePosition < 0 || savedRangePosition >= TIMELINE_CUSTOM_RANGE_POSITION) {
+            savedRangePosition = 1;
+        }
+        lastPresetPosition[0] = savedRangePosition;
         
         // 应用用户偏好
         rangeSpinner.setSelection(savedRangePosition);
@@ -3367,10 +3563,26 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         rangeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                TimeRangeFilter selectedRange = getTimeRangeFromPosition(position);
                 // 从按钮文字判断当前排序方向
                 boolean descending = sortButton.getText().toString().equals("逆序");
                 
+                // 自定义范围：依次选择起始和结束日期，取消时恢复之前的预设范围
+                if (position == TIMELINE_CUSTOM_RANGE_POSITION) {
+                    showTimelineCustomRangePicker((start, end) -> {
+                        customRange[0] = start;
+                        customRange[1] = end;
+                        loadTimelineData(timelineListView, itemCountText, start, end,
+                            sortButton.getText().toString().equals("逆序"));
+                    }, () -> {
+                        if (customRange[1] == 0) {
+                            rangeSpinner.setSelection(lastPresetPosition[0]);
+                        }
+                    });
+                    return;
+                }
+                lastPresetPosition[0] = position;
+                TimeRangeFilter selectedRange = getTimeRangeFromPosition(position);
+                
                 // 保存偏好
                 saveTimelinePreferences(position, descending);
                 
@@ -3394,13 +3606,14 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
             updateSortButtonText(sortButton, newDescending);
             
             int selectedPosition = rangeSpinner.getSelectedItemPosition();
-            TimeRangeFilter selectedRange = getTimeRangeFromPosition(selectedPosition);
+            long[] selectedRange = getTimelineRange(selectedPosition, customRange);
             
-            // 保存偏好
-            saveTimelinePreferences(selectedPosition, newDescending);
+            // 保存偏好（自定义范围不保存，只记录最近的预设范围）
+            saveTimelinePreferences(selectedPosition == TIMELINE_CUSTOM_RANGE_POSITION
+                ? lastPresetPosition[0] : selectedPosition, newDescending);
             
             // 重新加载数据
-            loadTimelineData(timelineListView, itemCountText, selectedRange, newDescending);
+            loadTimelineData(timelineListView, itemCountText, selectedRange[0], selectedRange[1], newDescending);
         });
 
         // 初始加载数据（使用用户偏好）
@@ -3430,10 +3643,11 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         dialog.setNoteListManager(noteListManager);
         dialog.setOnDateSelectedListener(date -> {
             String dateStr = date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.US));
-            boolean located = noteListManager.scrollToDate(dateStr);
-            if (!located) {
-                Toast.makeText(this, "该日期没有可跳转的笔记", Toast.LENGTH_SHORT).show();
-            }
+            noteListManager.scrollToDate(dateStr, located -> {
+                if (!located) {
+                    Toast.makeText(this, "该日期没有可跳转的笔记", Toast.LENGTH_SHORT).show();
+                }
+            });
         });
         // 使用带时间戳的唯一tag确保每次都创建新实例
         dialog.show(getSupportFragmentManager(), "date_jump_" + System.currentTimeMillis());
@@ -3442,19 +3656,17 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
     /**
      * 显示日期跳转对话框（用于 Timeline）
      * @param timelineListView Timeline 的列表视图
-     * @param timeRange 当前 Timeline 的时间范围
-     * @param descending 是否逆序
+     * @param countText Timeline 的数量文本（跳转时可能需要继续加载后续页）
+     * @param rangeStart 当前 Timeline 的起始时间
+     * @param rangeEnd 当前 Timeline 的结束时间
      */
-    private void showDateJumpDialogForTimeline(ListView timelineListView, TimeRangeFilter timeRange, boolean descending) {
-        // 获取 Timeline 数据
-        GlobalTimeline globalTimeline = new GlobalTimeline(projectManager);
-        final List<Comment> timelineItems = globalTimeline.loadGlobalTimeline(timeRange, descending);
-
+    private void showDateJumpDialogForTimeline(ListView timelineListView, TextView countText,
+                                               long rangeStart, long rangeEnd) {
         DateJumpDialog dialog = DateJumpDialog.newInstance();
         dialog.setCrossProject(true);
-        dialog.setTimeRangeFilter(timeRange);
+        dialog.setTimeRange(rangeStart, rangeEnd);
         dialog.setOnDateSelectedListener(date -> {
-            // 在 timelineItems 中找到该日期的第一条记录
+            // 在已加载的 Timeline 中找到该日期的第一条记录，未加载到时继续读取后续页
             String dateStr = date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.US));
             long targetTimestamp;
             try {
@@ -3463,21 +3675,115 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
             } catch (Exception e) {
                 return;
             }
+            jumpTimelineToDate(timelineListView, countText, targetTimestamp);
+        });
+        dialog.show(getSupportFragmentManager(), "date_jump_timeline_" + System.currentTimeMillis());
+    }
 
-            // 找到该日期在列表中的位置（考虑日期分割线）
-            for (int i = 0; i < timelineItems.size(); i++) {
-                Comment item = timelineItems.get(i);
-                if (item.getItemType() == person.notfresh.noteplus.core.model.TimelineItemType.DATE_DIVIDER) {
-                    continue;
-                }
-                if (item.getTimestamp() >= targetTimestamp && item.getTimestamp() < targetTimestamp + 24 * 60 * 60 * 1000) {
-                    // 滚动到该位置
-                    timelineListView.setSelectionFromTop(i, 0);
+    /**
+     * 滚动 Timeline 到指定日期
+     * 目标日期还没有加载时逐页读取，直到找到该日期、越过该日期或没有更多数据
+     *
+     * @param dayStart 目标日期 0 点的时间戳
+     */
+    private void jumpTimelineToDate(ListView listView, TextView countText, long dayStart) {
+        if (!(listView.getAdapter() instanceof TimelineAdapter)) {
+            return;
+        }
+        TimelineAdapter adapter = (TimelineAdapter) listView.getAdapter();
+        List<Comment> items = adapter.items;
+        long dayEnd = dayStart + 24 * 60 * 60 * 1000;
+
+        // 找到该日期在列表中的位置（考虑日期分割线）
+        Comment lastItem = null;
+        for (int i = 0; i < items.size(); i++) {
+            Comment item = items.get(i);
+            if (item.getItemType() == person.notfresh.noteplus.core.model.TimelineItemType.DATE_DIVIDER) {
+                continue;
+            }
+            if (item.getTimestamp() >= dayStart && item.getTimestamp() < dayEnd) {
+                // 滚动到该位置
+                listView.setSelectionFromTop(i, 0);
+                return;
+            }
+            lastItem = item;
+        }
+
+        TimelineCursor cursor = timelineCursor;
+        if (cursor == null || !cursor.hasMore()) {
+            return;
+        }
+        // 已加载的最后一项已经越过目标日期，说明该日期没有记录
+        if (lastItem != null && (cursor.isDescending() ? lastItem.getTimestamp() < dayStart
+                : lastItem.getTimestamp() >= dayEnd)) {
+            return;
+        }
+        loadMoreTimeline(cursor, adapter, items, countText,
+            () -> jumpTimelineToDate(listView, countText, dayStart));
+    }
+
+    /**
+     * 依次弹出起始日期和结束日期选择框，用于 Timeline 的自定义范围
+     *
+     * @param onSelected 选择完成回调，参数为起始时间（当天 0 点）和结束时间（当天最后一毫秒）
+     * @param onCancel 任一步取消时的回调
+     */
+    private void showTimelineCustomRangePicker(java.util.function.BiConsumer<Long, Long> onSelected,
+                                               Runnable onCancel) {
+        Calendar today = Calendar.getInstance();
+        final boolean[] handled = {false};
+        DatePickerDialog startPicker = new DatePickerDialog(this, (view, year, month, dayOfMonth) -> {
+            handled[0] = true;
+            Calendar start = Calendar.getInstance();
+            start.set(year, month, dayOfMonth, 0, 0, 0);
+            start.set(Calendar.MILLISECOND, 0);
+
+            final boolean[] endHandled = {false};
+            DatePickerDialog endPicker = new DatePickerDialog(this, (view2, year2, month2, dayOfMonth2) -> {
+                endHandled[0] = true;
+                Calendar end = Calendar.getInstance();
+                end.set(year2, month2, dayOfMonth2, 0, 0, 0);
+                end.set(Calendar.MILLISECOND, 0);
+                end.add(Calendar.DAY_OF_MONTH, 1);
+                long startTime = start.getTimeInMillis();
+                long endTime = end.getTimeInMillis() - 1;
+                if (endTime < startTime) {
+                    Toast.makeText(this, "结束日期不能早于起始日期", Toast.LENGTH_SHORT).show();
+                    onCancel.run();
                     return;
                 }
+                onSelected.accept(startTime, endTime);
+            }, today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH));
+            endPicker.setTitle("选择结束日期");
+            endPicker.getDatePicker().setMinDate(start.getTimeInMillis());
+            endPicker.setOnDismissListener(d -> {
+                if (!endHandled[0]) {
+                    onCancel.run();
+                }
+            });
+            endPicker.show();
+        }, today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH));
+        startPicker.setTitle("选择起始日期");
+        startPicker.setOnDismissListener(d -> {
+            if (!handled[0]) {
+                onCancel.run();
             }
         });
-        dialog.show(getSupportFragmentManager(), "date_jump_timeline_" + System.currentTimeMillis());
+        startPicker.show();
+    }
+
+    /**
+     * 计算 Timeline 下拉框位置对应的时间范围
+     *
+     * @param position 下拉框位置
+     * @param customRange 自定义范围 [起始时间, 结束时间]
+     * @return [起始时间, 结束时间]，预设范围的结束时间不设上限
+     */
+    private long[] getTimelineRange(int position, long[] customRange) {
+        if (position == TIMELINE_CUSTOM_RANGE_POSITION && customRange[1] > 0) {
+            return new long[]{customRange[0], customRange[1]};
+        }
+        return new long[]{getTimeRangeFromPosition(position).getStartTime(), Long.MAX_VALUE};
     }
 
     /**
@@ -3533,7 +3839,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
             return;
         }
         
-        // 直接加载详情，不切换项目（使用getDbHelperForProject查询，不改变当前项目）
+        // 直接加载详情，不切换项目（持有项目数据库引用查询，不改变当前项目）
         android.util.Log.d("Timeline", "加载详情，项目: " + targetProjectName);
         loadNoteDetail(noteId, targetProjectName);
     }
@@ -3671,12 +3977,13 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
     private void loadNoteDetail(long noteId, String projectName) {
         // 直接在后台线程加载，不显示进度提示
         new Thread(() -> {
+            // 持有引用直到详情对话框关闭，期间该项目的数据库不会因淘汰而关闭
+            DbHelperCache.Lease lease = projectManager.acquireDbHelper(projectName);
             try {
-                // 获取数据库Helper
-                NoteDbHelper dbHelper = projectManager.getDbHelperForProject(projectName);
-                if (dbHelper == null) {
+                if (lease == null) {
                     throw new Exception("Timeline: 项目不存在: " + projectName);
                 }
+                NoteDbHelper dbHelper = lease.getHelper();
                 
                 // 加载Note基本信息
                 Note note = loadNoteById(dbHelper, noteId, projectName);
@@ -3696,10 +4003,20 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                 final Cursor finalTagsCursor = tagsCursor;
                 
                 runOnUiThread(() -> {
+                    if (isFinishing() || isDestroyed()) {
+                        if (finalTagsCursor != null) {
+                            finalTagsCursor.close();
+                        }
+                        lease.close();
+                        return;
+                    }
                     // 直接显示详情对话框，不延迟
-                    showNoteDetailDialog(finalNote, finalComments, finalTagsCursor, dbHelper);
+                    showNoteDetailDialog(finalNote, finalComments, finalTagsCursor, lease);
                 });
             } catch (Exception e) {
+                if (lease != null) {
+                    lease.close();
+                }
                 // 使用Log记录完整异常信息，包括堆栈，便于通过"Timeline"标签过滤
                 android.util.Log.e("Timeline", "Timeline: 加载Note详情失败", e);
                 
@@ -3716,9 +4033,11 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
      * @param note Note对象
      * @param comments Comment列表
      * @param tagsCursor 标签Cursor
-     * @param noteDbHelper 该笔记所属项目的数据库Helper
+     * @param noteDbLease 该笔记所属项目的数据库Helper引用，对话框关闭时释放
      */
-    private void showNoteDetailDialog(Note note, List<Comment> comments, Cursor tagsCursor, NoteDbHelper noteDbHelper) {
+    private void showNoteDetailDialog(Note note, List<Comment> comments, Cursor tagsCursor,
+                                      DbHelperCache.Lease noteDbLease) {
+        NoteDbHelper noteDbHelper = noteDbLease.getHelper();
         // 创建对话框
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         View dialogView = getLayoutInflater().inflate(R.layout.dialog_note_detail, null);
@@ -3770,6 +4089,12 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         
         // 创建对话框
         AlertDialog dialog = builder.create();
+        dialog.setOnDismissListener(d -> {
+            if (tagsCursor != null && !tagsCursor.isClosed()) {
+                tagsCursor.close();
+            }
+            noteDbLease.close();
+        });
 
         // 移除对话框窗口的默认内边距，让内容占满整个窗口
         Window window = dialog.getWindow();
@@ -4510,6 +4835,19 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
      */
     private void loadTimelineData(ListView listView, TextView countText, 
                                   TimeRangeFilter timeRange, boolean descending) {
+        loadTimelineData(listView, countText, timeRange.getStartTime(), Long.MAX_VALUE, descending);
+    }
+
+    /**
+     * 加载任意时间范围的 Timeline
+     * 只读取第一页，滚动到接近底部时再读取后续页
+     *
+     * @param rangeStart 起始时间（包含）
+     * @param rangeEnd 结束时间（包含）
+     * @param descending 是否逆序
+     */
+    private void loadTimelineData(ListView listView, TextView countText,
+                                  long rangeStart, long rangeEnd, boolean descending) {
         // 加载时间线数据（在后台线程中执行）
         ProgressDialog progressDialog = new ProgressDialog(this);
         progressDialog.setMessage("正在加载时间线...");
@@ -4521,12 +4859,15 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         final long MIN_DISPLAY_TIME = 500; // 最少显示时间（毫秒）
         
         new Thread(() -> {
+            TimelineCursor openedCursor = null;
             try {
                 // 创建 GlobalTimeline 实例
                 GlobalTimeline globalTimeline = new GlobalTimeline(projectManager);
                 
-                // 加载指定时间范围的数据
-                final List<Comment> timelineItems = globalTimeline.loadGlobalTimeline(timeRange, descending);
+                // 打开分页游标，只读取第一页（首屏耗时与时间范围大小无关）
+                openedCursor = globalTimeline.openGlobalTimelineCursor(rangeStart, rangeEnd, descending);
+                final TimelineCursor cursor = openedCursor;
+                final List<Comment> timelineItems = new ArrayList<>(cursor.nextPage());
                 
                 // 计算已用时间
                 long elapsedTime = System.currentTimeMillis() - startTime;
@@ -4538,13 +4879,40 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                     Runnable updateUIRunnable = () -> {
                         progressDialog.dismiss();
                         
+                        // 加载期间对话框已关闭，不再使用这个游标
+                        if (!listView.isAttachedToWindow()) {
+                            cursor.close();
+                            return;
+                        }
+                        
+                        // 切换到新的游标，关闭旧游标并丢弃它未完成的加载
+                        closeTimelineCursor();
+                        timelineCursor = cursor;
+                        
                         // 更新项目数量
-                        countText.setText(timelineItems.size() + " 项");
+                        updateTimelineCount(countText, timelineItems, cursor);
                         
                         // 创建适配器
                         TimelineAdapter adapter = new TimelineAdapter(timelineItems);
                         listView.setAdapter(adapter);
                         
+                        // 滚动到接近底部时读取下一页
+                        listView.setOnScrollListener(new AbsListView.OnScrollListener() {
+                            @Override
+                            public void onScrollStateChanged(AbsListView view, int scrollState) {
+                                // 不做处理
+                            }
+                            
+                            @Override
+                            public void onScroll(AbsListView view, int firstVisibleItem,
+                                                 int visibleItemCount, int totalItemCount) {
+                                if (totalItemCount > 0
+                                        && firstVisibleItem + visibleItemCount >= totalItemCount - TIMELINE_LOAD_MORE_THRESHOLD) {
+                                    loadMoreTimeline(cursor, adapter, timelineItems, countText, null);
+                                }
+                            }
+                        });
+                        
                         // 清除之前的延迟任务和状态（防止干扰）
                         timelineClickHandler.removeCallbacks(timelineClickRunnable);
                         lastTimelineClickTime = 0;
@@ -4646,6 +5014,9 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
             } catch (Exception e) {
                 // 使用Log记录完整异常信息，包括堆栈，便于通过"Timeline"标签过滤
                 android.util.Log.e("Timeline", "Timeline: 加载时间线数据失败", e);
+                if (openedCursor != null) {
+                    openedCursor.close();
+                }
                 
                 // 计算已用时间
                 long elapsedTime = System.currentTimeMillis() - startTime;
@@ -4679,6 +5050,73 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         }).start();
     }
     
+    /**
+     * 在后台读取 Timeline 的下一页并追加到列表
+     * 同一时间只有一个加载任务；游标已被替换（切换了范围或排序）时丢弃结果
+     *
+     * @param onLoaded 加载完成后的回调，可为 null
+     */
+    private void loadMoreTimeline(TimelineCursor cursor, TimelineAdapter adapter, List<Comment> items,
+                                  TextView countText, Runnable onLoaded) {
+        if (cursor != timelineCursor || !cursor.hasMore()) {
+            return;
+        }
+        if (onLoaded != null) {
+            timelineLoadCallback = onLoaded;
+        }
+        if (timelineLoadingMore) {
+            return;
+        }
+        timelineLoadingMore = true;
+        
+        new Thread(() -> {
+            List<Comment> page;
+            try {
+                page = cursor.nextPage();
+            } catch (Exception e) {
+                android.util.Log.e("Timeline", "Timeline: 加载下一页失败", e);
+                page = Collections.emptyList();
+            }
+            final List<Comment> loaded = page;
+            
+            runOnUiThread(() -> {
+                if (cursor != timelineCursor) {
+                    return;
+                }
+                timelineLoadingMore = false;
+                items.addAll(loaded);
+                adapter.notifyDataSetChanged();
+                updateTimelineCount(countText, items, cursor);
+                
+                Runnable callback = timelineLoadCallback;
+                timelineLoadCallback = null;
+                if (callback != null) {
+                    callback.run();
+                }
+            });
+        }).start();
+    }
+    
+    /**
+     * 关闭当前的 Timeline 游标（释放各项目数据库的引用），丢弃它未完成的加载
+     */
+    private void closeTimelineCursor() {
+        TimelineCursor cursor = timelineCursor;
+        timelineCursor = null;
+        timelineLoadingMore = false;
+        timelineLoadCallback = null;
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 更新 Timeline 数量文本，还有未加载的数据时显示"+"
+     */
+    private void updateTimelineCount(TextView countText, List<Comment> items, TimelineCursor cursor) {
+        countText.setText(items.size() + (cursor.hasMore() ? "+" : "") + " 项");
+    }
+    
     /**
      * Timeline 列表适配器
      */
@@ -4794,10 +5232,11 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                 String project = comment.getProjectName();
                 if (project != null && !project.isEmpty()) {
                     Cursor tagsCursor = null;
+                    DbHelperCache.Lease lease = null;
                     try {
-                        NoteDbHelper dbHelper = projectManager.getDbHelperForProject(project);
-                        if (dbHelper != null) {
-                            tagsCursor = dbHelper.getTagsForNote(noteId);
+                        lease = projectManager.acquireDbHelper(project);
+                        if (lease != null) {
+                            tagsCursor = lease.getHelper().getTagsForNote(noteId);
                             if (tagsCursor != null && tagsCursor.getCount() > 0) {
                                 tagsContainer.setVisibility(View.VISIBLE);
                                 while (tagsCursor.moveToNext()) {
@@ -4840,6 +5279,9 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                         if (tagsCursor != null) {
                             tagsCursor.close();
                         }
+                        if (lease != null) {
+                            lease.close();
+                        }
                     }
                 } else {
                     tagsContainer.setVisibility(View.GONE);
@@ -5744,10 +6186,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         // 使用后台线程处理数据库操作
         new Thread(() -> {
             if (projectManager.switchToProject(projectName)) {
-                // 数据库操作放在后台线程中执行
-                if (dbHelper != null) {
-                    dbHelper.close();
-                }
+                // 数据库操作放在后台线程中执行；旧项目的Helper留在缓存中，由缓存按最近使用淘汰
                 dbHelper = projectManager.getCurrentDbHelper();
                 
                 // 更新导入导出管理器
@@ -5809,7 +6248,8 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         new Thread(() -> {
             try {
                 person.notfresh.noteplus.manager.ImportExportManager.ImportResult result = 
-                    importExportManager.readCsvData(uri);
+                    importExportManager.readCsvData(uri, (done, total) -> runOnUiThread(() ->
+                            progressDialog.setMessage("正在从CSV导入... 已导入 " + done + " 条")));
                 
                 final int finalImportedCount = result.importedCount;
                 final int finalSkippedCount = result.skippedCount;
@@ -5848,7 +6288,8 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         new Thread(() -> {
             try {
                 person.notfresh.noteplus.manager.ImportExportManager.ImportResult result = 
-                    importExportManager.readJsonData(uri);
+                    importExportManager.readJsonData(uri, (done, total) -> runOnUiThread(() ->
+                            progressDialog.setMessage("正在从JSON导入... " + done + "/" + total)));
                 
                 final int finalImportedCount = result.importedCount;
                 final int finalSkippedCount = result.skippedCount;
@@ -6237,11 +6678,12 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                         searchManager.indexNote(finalNewNoteId, mergedContent.toString(), System.currentTimeMillis(), projectManager.getCurrentProject());
                     });
 
-                    // 移除原笔记的索引
+                    // 原笔记已归档，按归档状态重建索引
+                    String mergeProject = projectManager.getCurrentProject();
                     for (long oldNoteId : sortedIds) {
                         final long finalOldNoteId = oldNoteId;
                         runOnUiThread(() -> {
-                            searchManager.deleteNoteIndex(finalOldNoteId);
+                            searchManager.reindexNote(finalOldNoteId, mergeProject);
                         });
                     }
                 }
@@ -6333,6 +6775,7 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
      * 移动记录到指定项目
      */
     private void moveNotesToProject(String targetProject) {
+        String sourceProject = projectManager.getCurrentProject();
         // 显示进度对话框
         ProgressDialog progressDialog = new ProgressDialog(this);
         progressDialog.setMessage("正在移动记录...");
@@ -6341,22 +6784,27 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
         
         // 在后台线程执行移动操作
         new Thread(() -> {
+            DbHelperCache.Lease targetLease = null;
             try {
-                // 获取目标项目的数据库Helper
-                NoteDbHelper targetDbHelper = projectManager.getDbHelperForProject(targetProject);
-                if (targetDbHelper == null) {
+                // 获取目标项目的数据库Helper并持有引用，移动期间不会因淘汰而关闭
+                targetLease = projectManager.acquireDbHelper(targetProject);
+                if (targetLease == null) {
                     runOnUiThread(() -> {
                         progressDialog.dismiss();
                         Toast.makeText(this, "目标项目不存在", Toast.LENGTH_SHORT).show();
                     });
                     return;
                 }
+                NoteDbHelper targetDbHelper = targetLease.getHelper();
                 
                 SQLiteDatabase sourceDb = dbHelper.getReadableDatabase();
                 SQLiteDatabase targetDb = targetDbHelper.getWritableDatabase();
                 
                 int movedCount = 0;
                 int failedCount = 0;
+                // 移动成功的笔记：源项目中的ID，以及目标项目中的新笔记（用于更新搜索索引）
+                List<Long> movedSourceIds = new ArrayList<>();
+                List<Note> movedNotes = new ArrayList<>();
                 
                 // 开始事务
                 targetDb.beginTransaction();
@@ -6520,6 +6968,8 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                                     // 6. 从源数据库删除记录
                                     sourceDb.delete(NoteDbHelper.TABLE_NOTES, "_id = ?", new String[]{String.valueOf(noteId)});
                                     
+                                    movedSourceIds.add(noteId);
+                                    movedNotes.add(new Note(newNoteId, content, timestamp, cost, false, targetProject));
                                     movedCount++;
                                 } else {
                                     failedCount++;
@@ -6551,21 +7001,14 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
 
                         // 更新搜索索引（删除旧索引，用新项目名重建）
                         if (searchManager != null && finalMovedCount > 0) {
-                            for (Long noteId : selectedNoteIds) {
-                                // 获取笔记内容并重新索引
-                                Cursor noteCursor = targetDbHelper.getWritableDatabase().query(
-                                        NoteDbHelper.TABLE_NOTES,
-                                        new String[]{NoteDbHelper.COLUMN_CONTENT, NoteDbHelper.COLUMN_TIMESTAMP},
-                                        NoteDbHelper.COLUMN_ID + "=?",
-                                        new String[]{String.valueOf(noteId)},
-                                        null, null, null
-                                );
-                                if (noteCursor != null && noteCursor.moveToFirst()) {
-                                    String content = noteCursor.getString(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_CONTENT));
-                                    long timestamp = noteCursor.getLong(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_TIMESTAMP));
-                                    searchManager.indexNote(noteId, content, timestamp, targetProject);
-                                    noteCursor.close();
-                                }
+                            // 源项目中的文档按 项目名:ID 唯一键删除
+                            for (Long noteId : movedSourceIds) {
+                                searchManager.deleteNoteIndex(noteId, sourceProject);
+                            }
+                            // 目标项目中的笔记是新ID，按移动时读出的内容索引（不在主线程查询目标项目）
+                            for (Note movedNote : movedNotes) {
+                                searchManager.indexNote(movedNote.getId(), movedNote.getContent(),
+                                        movedNote.getTimestamp(), targetProject);
                             }
                         }
 
@@ -6588,6 +7031,10 @@ public class MainActivity extends AppCompatActivity implements INoteListCallback
                     progressDialog.dismiss();
                     Toast.makeText(this, "移动失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 });
+            } finally {
+                if (targetLease != null) {
+                    targetLease.close();
+                }
             }
         }).start();
     }
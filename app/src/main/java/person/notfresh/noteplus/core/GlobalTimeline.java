@@ -1,22 +1,28 @@
 package person.notfresh.noteplus.core;
 
-import person.notfresh.noteplus.db.NoteDbHelper;
+import person.notfresh.noteplus.db.DbHelperCache;
 import person.notfresh.noteplus.db.ProjectContextManager;
 import person.notfresh.noteplus.core.model.Comment;
 import person.notfresh.noteplus.core.model.TimelineItemType;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 全局时间线加载器
  * 用于跨项目加载所有项目的时间线数据
  */
 public class GlobalTimeline {
+
+    // 并行加载项目时间线的最大线程数（各项目是独立的数据库文件，可以并发读取）
+    private static final int MAX_PARALLEL_LOADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static volatile ExecutorService loadExecutor;
     
     private final ProjectContextManager projectManager;
     
@@ -82,44 +88,157 @@ public class GlobalTimeline {
      * @return 所有项目的时间线数据，置顶Note在最前面，然后按时间排序
      */
     public List<Comment> loadGlobalTimeline(TimeRangeFilter timeRange, boolean descending) {
-        List<Comment> globalTimeline = new ArrayList<>();
-        
+        // 在当前线程解析各项目的数据库帮助类（持有引用直到查询结束，期间不会因淘汰而关闭），
+        // 再把查询分发到线程池并行执行
+        List<DbHelperCache.Lease> leases = new ArrayList<>();
+        List<NoteDataLoader> loaders = resolveProjectLoaders(leases);
+        List<List<Comment>> projectTimelines = new ArrayList<>();
+        try {
+            List<Future<List<Comment>>> futures = new ArrayList<>();
+            ExecutorService executor = getLoadExecutor();
+            for (NoteDataLoader loader : loaders) {
+                // 加载该项目的时间线数据（每个项目的结果已按时间排序）
+                futures.add(executor.submit(() -> loader.loadFullTimelineByTimeRange(timeRange, descending)));
+            }
+
+            // 按项目顺序收集结果
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    projectTimelines.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    // 如果某个项目加载失败，记录错误但继续处理其他项目
+                    android.util.Log.e("Timeline", "Timeline: 加载项目时间线失败: " + loaders.get(i).getProjectName(), e);
+                }
+            }
+        } finally {
+            for (DbHelperCache.Lease lease : leases) {
+                lease.close();
+            }
+        }
+
+        return finalizeTimeline(mergeSortedTimelines(projectTimelines, descending), descending);
+    }
+
+    /**
+     * 打开分页全局时间线游标（预设时间范围，截止到当前时间之后的所有数据）
+     *
+     * @param timeRange 时间范围枚举
+     * @param descending true表示逆序（最新的在前），false表示顺序（最旧的在前）
+     * @return 时间线游标，通过 nextPage 逐页读取
+     */
+    public TimelineCursor openGlobalTimelineCursor(TimeRangeFilter timeRange, boolean descending) {
+        return openGlobalTimelineCursor(timeRange.getStartTime(), Long.MAX_VALUE, descending);
+    }
+
+    /**
+     * 打开分页全局时间线游标（任意时间范围）
+     * 与 loadGlobalTimeline 不同，不会一次性加载范围内的全部数据：
+     * 每页只从各项目读取需要的一段，首屏耗时与时间范围大小无关
+     *
+     * @param startTime 起始时间（包含）
+     * @param endTime 结束时间（包含）
+     * @param descending true表示逆序（最新的在前），false表示顺序（最旧的在前）
+     * @return 时间线游标，通过 nextPage 逐页读取；游标持有各项目数据库的引用，用完后必须关闭
+     */
+    public TimelineCursor openGlobalTimelineCursor(long startTime, long endTime, boolean descending) {
+        List<DbHelperCache.Lease> leases = new ArrayList<>();
+        try {
+            return new TimelineCursor(resolveProjectLoaders(leases), startTime, endTime, descending,
+                    getLoadExecutor(), leases);
+        } catch (RuntimeException e) {
+            for (DbHelperCache.Lease lease : leases) {
+                lease.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 解析所有可用项目（跳过回收站中的项目）的数据加载器，按项目列表顺序返回
+     * @param leases 按引用获取各项目的数据库帮助类并加入其中，由调用方在查询结束后释放
+     */
+    private List<NoteDataLoader> resolveProjectLoaders(List<DbHelperCache.Lease> leases) {
         // 获取所有项目列表
         List<String> projects = projectManager.getProjectList();
         
-        // 获取回收站中的项目列表，排除这些项目（因为它们的数据库表结构可能不完整）
-        List<String> recycledProjects = projectManager.getRecycledProjects();
-        
-        // 遍历每个项目，加载其时间线数据（排除回收站中的项目）
+        // 排除回收站中的项目（因为它们的数据库表结构可能不完整）
+        List<NoteDataLoader> loaders = new ArrayList<>();
         for (String projectName : projects) {
             // 跳过回收站中的项目
-            if (recycledProjects.contains(projectName)) {
+            if (projectManager.isRecycled(projectName)) {
                 android.util.Log.d("Timeline", "Timeline: 跳过回收站中的项目: " + projectName);
                 continue;
             }
             try {
                 // 获取该项目的数据库帮助类
-                NoteDbHelper dbHelper = projectManager.getDbHelperForProject(projectName);
-                if (dbHelper == null) {
+                DbHelperCache.Lease lease = projectManager.acquireDbHelper(projectName);
+                if (lease == null) {
                     continue; // 如果项目不存在或无法获取，跳过
                 }
-                
-                // 创建该项目的 NoteDataLoader
-                NoteDataLoader loader = new NoteDataLoader(dbHelper, projectName);
-                
-                // 加载该项目的时间线数据
-                List<Comment> projectTimeline = loader.loadFullTimelineByTimeRange(timeRange, descending);
-                
-                // 合并到全局时间线
-                globalTimeline.addAll(projectTimeline);
-                
+                leases.add(lease);
+                loaders.add(new NoteDataLoader(lease.getHelper(), projectName));
             } catch (Exception e) {
-                // 如果某个项目加载失败，记录错误但继续处理其他项目
                 android.util.Log.e("Timeline", "Timeline: 加载项目时间线失败: " + projectName, e);
             }
         }
+        return loaders;
+    }
+
+    /**
+     * 多路归并各项目已排序的时间线，代替合并后整体重新排序
+     * 时间相同时按项目顺序输出，与之前 addAll + 稳定排序的结果一致
+     *
+     * @param timelines 各项目的时间线，均已按 descending 指定的方向排序
+     * @param descending true表示逆序（最新的在前），false表示顺序（最旧的在前）
+     * @return 归并后的时间线
+     */
+    static List<Comment> mergeSortedTimelines(List<List<Comment>> timelines, boolean descending) {
+        int total = 0;
+        for (List<Comment> timeline : timelines) {
+            total += timeline.size();
+        }
+        List<Comment> merged = new ArrayList<>(total);
+        if (timelines.size() == 1) {
+            merged.addAll(timelines.get(0));
+            return merged;
+        }
+
+        // 堆中元素为 {列表序号, 列表内位置}
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, timelines.size()), (a, b) -> {
+            long ta = timelines.get(a[0]).get(a[1]).getTimestamp();
+            long tb = timelines.get(b[0]).get(b[1]).getTimestamp();
+            int cmp = descending ? Long.compare(tb, ta) : Long.compare(ta, tb);
+            return cmp != 0 ? cmp : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < timelines.size(); i++) {
+            if (!timelines.get(i).isEmpty()) {
+                heap.add(new int[]{i, 0});
+            }
+        }
+        while (!heap.isEmpty()) {
+            int[] head = heap.poll();
+            List<Comment> source = timelines.get(head[0]);
+            merged.add(source.get(head[1]));
+            if (head[1] + 1 < source.size()) {
+                head[1]++;
+                heap.add(head);
+            }
+        }
+        return merged;
+    }
 
-        return finalizeTimeline(globalTimeline, descending);
+    private static ExecutorService getLoadExecutor() {
+        if (loadExecutor == null) {
+            synchronized (GlobalTimeline.class) {
+                if (loadExecutor == null) {
+                    loadExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_LOADS);
+                }
+            }
+        }
+        return loadExecutor;
     }
 
     /**
@@ -141,19 +260,18 @@ public class GlobalTimeline {
             return projectTimeline;
         }
 
-        List<String> recycledProjects = projectManager.getRecycledProjects();
-        if (recycledProjects.contains(targetProject)) {
+        if (projectManager.isRecycled(targetProject)) {
             android.util.Log.d("Timeline", "Timeline: 当前项目在回收站中，跳过: " + targetProject);
             return projectTimeline;
         }
 
-        try {
-            NoteDbHelper dbHelper = projectManager.getDbHelperForProject(targetProject);
-            if (dbHelper == null) {
+        // 持有引用，查询期间该项目的数据库不会因淘汰而关闭
+        try (DbHelperCache.Lease lease = projectManager.acquireDbHelper(targetProject)) {
+            if (lease == null) {
                 return projectTimeline;
             }
 
-            NoteDataLoader loader = new NoteDataLoader(dbHelper, targetProject);
+            NoteDataLoader loader = new NoteDataLoader(lease.getHelper(), targetProject);
             projectTimeline.addAll(loader.loadFullTimelineByTimeRange(timeRange, descending));
         } catch (Exception e) {
             android.util.Log.e("Timeline", "Timeline: 加载当前项目时间线失败: " + targetProject, e);
@@ -162,25 +280,12 @@ public class GlobalTimeline {
         return finalizeTimeline(projectTimeline, descending);
     }
 
+    /**
+     * 在已按时间排序的时间线上添加置顶区域和日期分割线
+     * 调用方保证 timeline 已排序（单项目结果本身有序，多项目结果经过归并）
+     */
     private List<Comment> finalizeTimeline(List<Comment> timeline, boolean descending) {
         
-        // 对所有项目的时间线数据进行统一排序
-        // 注意：虽然每个项目内部已经排序，但跨项目需要重新排序
-        // 排序规则：先按时间排序（不考虑置顶），置顶的Note会在后面复制到最前面
-        Collections.sort(timeline, new Comparator<Comment>() {
-            @Override
-            public int compare(Comment a, Comment b) {
-                // 按时间排序（不考虑置顶状态）
-                if (descending) {
-                    // 逆序：b.timestamp - a.timestamp（最新的在前）
-                    return Long.compare(b.getTimestamp(), a.getTimestamp());
-                } else {
-                    // 顺序：a.timestamp - b.timestamp（最旧的在前）
-                    return Long.compare(a.getTimestamp(), b.getTimestamp());
-                }
-            }
-        });
-        
         // 收集所有置顶的Note，并创建副本添加到列表最前面
         // 这样置顶的Note会同时出现在置顶区域和原时间位置
         List<Comment> pinnedNotes = new ArrayList<>();
@@ -193,19 +298,7 @@ public class GlobalTimeline {
             }
         }
         
-        // 将置顶的Note副本添加到列表最前面
-        // 置顶Note之间也按时间排序
-        Collections.sort(pinnedNotes, new Comparator<Comment>() {
-            @Override
-            public int compare(Comment a, Comment b) {
-                if (descending) {
-                    return Long.compare(b.getTimestamp(), a.getTimestamp());
-                } else {
-                    return Long.compare(a.getTimestamp(), b.getTimestamp());
-                }
-            }
-        });
-        
+        // 置顶Note按遍历顺序收集，已经按时间排序
         // 将置顶Note副本插入到列表最前面
         timeline.addAll(0, pinnedNotes);
         
@@ -267,7 +360,7 @@ public class GlobalTimeline {
      * @param timestamp 时间戳
      * @return 当天 0 点的时间戳
      */
-    private long getDayStart(long timestamp) {
+    static long getDayStart(long timestamp) {
         Calendar cal = Calendar.getInstance(Locale.CHINA);
         cal.setTimeInMillis(timestamp);
         cal.set(Calendar.HOUR_OF_DAY, 0);
@@ -283,7 +376,7 @@ public class GlobalTimeline {
      * @param timestamp 该日期的时间戳（用于格式化显示）
      * @return 日期分割线 Comment 对象
      */
-    private Comment createDateDivider(long timestamp) {
+    static Comment createDateDivider(long timestamp) {
         Comment divider = new Comment();
         divider.setItemType(TimelineItemType.DATE_DIVIDER);
         divider.setTimestamp(timestamp);
@@ -313,7 +406,7 @@ public class GlobalTimeline {
      * @param original 原始的置顶Note
      * @return 置顶Note的副本
      */
-    private Comment createPinnedCopy(Comment original) {
+    static Comment createPinnedCopy(Comment original) {
         Comment copy = new Comment();
         copy.setId(original.getId());
         copy.setNoteId(original.getNoteId());
@@ -261,6 +261,195 @@ public class NoteDataLoader {
         return timeline;
     }
     
+    /**
+     * 按 (timestamp, _id) 键集分段加载时间范围内的 Note，供 TimelineCursor 逐段读取
+     * 每次只查询 limit 条，首屏耗时与时间范围大小无关
+     *
+     * @param startTime 起始时间（包含）
+     * @param endTime 结束时间（包含）
+     * @param descending true表示逆序（最新的在前），false表示顺序（最旧的在前）
+     * @param after 上一段的最后一项，为 null 时从头开始
+     * @param limit 最多返回的条数
+     * @return Note 转换成的时间线条目，已按方向排序
+     */
+    public List<Comment> loadNoteSlice(long startTime, long endTime, boolean descending, Comment after, int limit) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String direction = descending ? " DESC" : " ASC";
+
+        StringBuilder selection = new StringBuilder();
+        selection.append(NoteDbHelper.COLUMN_IS_ARCHIVED).append(" = 0 AND ")
+                .append(NoteDbHelper.COLUMN_TIMESTAMP).append(" >= ? AND ")
+                .append(NoteDbHelper.COLUMN_TIMESTAMP).append(" <= ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(startTime));
+        args.add(String.valueOf(endTime));
+        appendKeysetCondition(selection, args, NoteDbHelper.COLUMN_TIMESTAMP, "_id", descending, after);
+
+        List<Comment> slice = new ArrayList<>();
+        Cursor cursor = db.query(
+                NoteDbHelper.TABLE_NOTES,
+                new String[]{
+                    "_id",
+                    NoteDbHelper.COLUMN_CONTENT,
+                    NoteDbHelper.COLUMN_TIMESTAMP,
+                    NoteDbHelper.COLUMN_COST,
+                    NoteDbHelper.COLUMN_IS_PINNED
+                },
+                selection.toString(),
+                args.toArray(new String[0]),
+                null, null,
+                NoteDbHelper.COLUMN_TIMESTAMP + direction + ", _id" + direction,
+                String.valueOf(limit)
+        );
+        try {
+            while (cursor.moveToNext()) {
+                slice.add(noteRowToComment(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return slice;
+    }
+
+    /**
+     * 按 (timestamp, comment_id) 键集分段加载时间范围内的 Comment（排除归档笔记的评论）
+     *
+     * @param startTime 起始时间（包含）
+     * @param endTime 结束时间（包含）
+     * @param descending true表示逆序（最新的在前），false表示顺序（最旧的在前）
+     * @param after 上一段的最后一项，为 null 时从头开始
+     * @param limit 最多返回的条数
+     * @return 时间线条目，已按方向排序；评论表不存在时返回空列表
+     */
+    public List<Comment> loadCommentSlice(long startTime, long endTime, boolean descending, Comment after, int limit) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String direction = descending ? " DESC" : " ASC";
+
+        StringBuilder selection = new StringBuilder();
+        selection.append("c.").append(NoteDbHelper.COLUMN_COMMENT_TIMESTAMP).append(" >= ? AND ")
+                .append("c.").append(NoteDbHelper.COLUMN_COMMENT_TIMESTAMP).append(" <= ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(startTime));
+        args.add(String.valueOf(endTime));
+        appendKeysetCondition(selection, args, "c." + NoteDbHelper.COLUMN_COMMENT_TIMESTAMP,
+                "c." + NoteDbHelper.COLUMN_COMMENT_ID, descending, after);
+
+        String query = "SELECT c." + NoteDbHelper.COLUMN_COMMENT_ID + ", " +
+                "c." + NoteDbHelper.COLUMN_COMMENT_NOTE_ID + ", " +
+                "c." + NoteDbHelper.COLUMN_PARENT_COMMENT_ID + ", " +
+                "c." + NoteDbHelper.COLUMN_COMMENT_CONTENT + ", " +
+                "c." + NoteDbHelper.COLUMN_COMMENT_TIMESTAMP + ", " +
+                "c." + NoteDbHelper.COLUMN_COMMENT_COST +
+                " FROM " + NoteDbHelper.TABLE_NOTE_COMMENTS + " c" +
+                " INNER JOIN " + NoteDbHelper.TABLE_NOTES + " n" +
+                " ON c." + NoteDbHelper.COLUMN_COMMENT_NOTE_ID + " = n." + NoteDbHelper.COLUMN_ID +
+                " WHERE " + selection +
+                " AND n." + NoteDbHelper.COLUMN_IS_ARCHIVED + " = 0" +
+                " ORDER BY c." + NoteDbHelper.COLUMN_COMMENT_TIMESTAMP + direction +
+                ", c." + NoteDbHelper.COLUMN_COMMENT_ID + direction +
+                " LIMIT " + limit;
+
+        List<Comment> slice = new ArrayList<>();
+        Cursor cursor;
+        try {
+            cursor = db.rawQuery(query, args.toArray(new String[0]));
+        } catch (android.database.sqlite.SQLiteException e) {
+            android.util.Log.w("Timeline", "Timeline: 查询 Comment 表失败，可能表不存在: " + e.getMessage());
+            return slice;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                Long parentCommentId = cursor.isNull(2) ? null : cursor.getLong(2);
+                slice.add(new Comment(
+                        cursor.getLong(0),
+                        cursor.getLong(1),
+                        parentCommentId,
+                        cursor.getString(3),
+                        cursor.getLong(4),
+                        cursor.getDouble(5),
+                        projectName,
+                        TimelineItemType.COMMENT
+                ));
+            }
+        } finally {
+            cursor.close();
+        }
+        return slice;
+    }
+
+    /**
+     * 加载时间范围内所有置顶的 Note（置顶数量很少，一次查完，用于时间线最前面的置顶区域）
+     *
+     * @param startTime 起始时间（包含）
+     * @param endTime 结束时间（包含）
+     * @param descending true表示逆序（最新的在前），false表示顺序（最旧的在前）
+     * @return 置顶 Note 转换成的时间线条目
+     */
+    public List<Comment> loadPinnedNotesInRange(long startTime, long endTime, boolean descending) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        String direction = descending ? " DESC" : " ASC";
+
+        List<Comment> pinned = new ArrayList<>();
+        Cursor cursor = db.query(
+                NoteDbHelper.TABLE_NOTES,
+                new String[]{
+                    "_id",
+                    NoteDbHelper.COLUMN_CONTENT,
+                    NoteDbHelper.COLUMN_TIMESTAMP,
+                    NoteDbHelper.COLUMN_COST,
+                    NoteDbHelper.COLUMN_IS_PINNED
+                },
+                NoteDbHelper.COLUMN_IS_ARCHIVED + " = 0 AND " + NoteDbHelper.COLUMN_IS_PINNED + " = 1 AND " +
+                    NoteDbHelper.COLUMN_TIMESTAMP + " >= ? AND " + NoteDbHelper.COLUMN_TIMESTAMP + " <= ?",
+                new String[]{String.valueOf(startTime), String.valueOf(endTime)},
+                null, null,
+                NoteDbHelper.COLUMN_TIMESTAMP + direction + ", _id" + direction
+        );
+        try {
+            while (cursor.moveToNext()) {
+                pinned.add(noteRowToComment(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return pinned;
+    }
+
+    /**
+     * 追加键集条件：逆序时取 (时间, ID) 小于锚点的行，顺序时取大于锚点的行
+     */
+    private static void appendKeysetCondition(StringBuilder selection, List<String> args, String timeColumn,
+                                              String idColumn, boolean descending, Comment after) {
+        if (after == null) {
+            return;
+        }
+        String op = descending ? " < ?" : " > ?";
+        selection.append(" AND (").append(timeColumn).append(op)
+                .append(" OR (").append(timeColumn).append(" = ? AND ").append(idColumn).append(op).append("))");
+        String timestamp = String.valueOf(after.getTimestamp());
+        args.add(timestamp);
+        args.add(timestamp);
+        args.add(String.valueOf(after.getId()));
+    }
+
+    /**
+     * 将 notes 表的一行（_id, content, timestamp, cost, is_pinned）转换为时间线条目
+     */
+    private Comment noteRowToComment(Cursor cursor) {
+        long noteId = cursor.getLong(0);
+        return new Comment(
+                noteId,                 // commentId = noteId
+                noteId,                 // noteId = noteId（指向自己）
+                null,
+                cursor.getString(1),
+                cursor.getLong(2),
+                cursor.getDouble(3),
+                projectName,
+                TimelineItemType.NOTE,
+                cursor.getInt(4) == 1
+        );
+    }
+
      /**
      * 根据时间范围加载笔记数据列表（平台无关）
      * 按时间逆序排列（最新的最前面），置顶的记录仍然排在最前面
@@ -52,4 +52,14 @@ public enum TimeRangeFilter {
     public int getDays() {
         return days;
     }
+    
+    /**
+     * 获取时间范围的起始时间（当前时间减去对应天数）
+     * @return 起始时间戳
+     */
+    public long getStartTime() {
+        java.util.Calendar calendar = java.util.Calendar.getInstance();
+        calendar.add(java.util.Calendar.DAY_OF_YEAR, -days);
+        return calendar.getTimeInMillis();
+    }
 }
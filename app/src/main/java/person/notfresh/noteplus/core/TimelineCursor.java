@@ -0,0 +1,304 @@
+package person.notfresh.noteplus.core;
+
+import person.notfresh.noteplus.core.model.Comment;
+import person.notfresh.noteplus.db.DbHelperCache;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 分页时间线游标
+ * 每个项目的 Note 和 Comment 各是一路按时间有序的流，每路只缓冲一段（SLICE_SIZE 条），
+ * 取页时多路归并，某一路的缓冲读完后再按键集去数据库取下一段
+ * 首屏只需每路查询一段，耗时与时间范围大小无关；置顶区域和日期分割线在输出时增量生成
+ * 取页会查询数据库，需要在后台线程调用
+ * 游标持有各项目数据库的引用，期间这些数据库不会因淘汰而关闭；不再使用时必须调用 {@link #close}
+ */
+public class TimelineCursor implements Closeable {
+
+    // 每页默认条目数（不含日期分割线）
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    // 每一路每次从数据库读取的条数
+    private static final int SLICE_SIZE = 100;
+
+    private final List<NoteDataLoader> loaders;
+    private final long startTime;
+    private final long endTime;
+    private final boolean descending;
+    private final ExecutorService executor;
+    private final List<DbHelperCache.Lease> leases;
+    // 保护 busy/closed：正在取页时关闭，等这一页取完再释放引用
+    private final Object stateLock = new Object();
+    private boolean busy;
+    private boolean closed;
+
+    private final List<Source> sources = new ArrayList<>();
+    private final PriorityQueue<Source> heap;
+    private final List<Comment> pinnedCopies = new ArrayList<>();
+    private boolean started;
+    // 是否已读完，UI 线程判断是否需要继续加载时读取，不需要等待正在进行的取页
+    private volatile boolean finished;
+    private boolean hasLastDay;
+    private long lastDay;
+
+    /**
+     * @param loaders 各项目的数据加载器，顺序决定时间相同时的输出顺序
+     * @param startTime 起始时间（包含）
+     * @param endTime 结束时间（包含）
+     * @param descending true表示逆序（最新的在前），false表示顺序（最旧的在前）
+     * @param executor 首段并行加载使用的线程池，为 null 时在调用线程依次加载
+     * @param leases 各项目数据库的引用，游标关闭时释放
+     */
+    TimelineCursor(List<NoteDataLoader> loaders, long startTime, long endTime, boolean descending,
+                   ExecutorService executor, List<DbHelperCache.Lease> leases) {
+        this.loaders = loaders;
+        this.leases = leases;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.descending = descending;
+        this.executor = executor;
+        this.heap = new PriorityQueue<>(Math.max(1, loaders.size() * 2), (a, b) -> {
+            long ta = a.head().getTimestamp();
+            long tb = b.head().getTimestamp();
+            int cmp = descending ? Long.compare(tb, ta) : Long.compare(ta, tb);
+            return cmp != 0 ? cmp : Integer.compare(a.order, b.order);
+        });
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * 读取下一页（默认页大小）
+     */
+    public List<Comment> nextPage() {
+        return nextPage(DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * 读取下一页
+     * 第一页前面是置顶区域；每跨一天插入一条日期分割线，跨页时不会重复插入同一天的分割线
+     *
+     * @param pageSize 本页最多包含的时间线条目数（不含日期分割线）
+     * @return 本页条目，已读完或已关闭时返回空列表
+     */
+    public synchronized List<Comment> nextPage(int pageSize) {
+        synchronized (stateLock) {
+            if (closed) {
+                return Collections.emptyList();
+            }
+            busy = true;
+        }
+        try {
+            return readPage(pageSize);
+        } finally {
+            boolean release;
+            synchronized (stateLock) {
+                busy = false;
+                release = closed;
+            }
+            if (release) {
+                finished = true;
+                releaseLeases();
+            }
+        }
+    }
+
+    private List<Comment> readPage(int pageSize) {
+        if (!started) {
+            start();
+        }
+
+        List<Comment> page = new ArrayList<>();
+        for (Comment pinned : pinnedCopies) {
+            append(page, pinned);
+        }
+        pinnedCopies.clear();
+
+        int count = 0;
+        while (count < pageSize && !heap.isEmpty()) {
+            Source source = heap.poll();
+            append(page, source.next());
+            count++;
+            if (source.head() != null) {
+                heap.add(source);
+            }
+        }
+        finished = heap.isEmpty();
+        return page;
+    }
+
+    /**
+     * 是否还有未读取的条目（不加锁，可以在 UI 线程调用）
+     */
+    public boolean hasMore() {
+        return !finished;
+    }
+
+    /**
+     * 关闭游标，释放各项目数据库的引用（不等待，可以在 UI 线程调用）
+     * 正在取页时由取页线程在这一页结束后释放
+     */
+    @Override
+    public void close() {
+        synchronized (stateLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            finished = true;
+            if (busy) {
+                return;
+            }
+        }
+        releaseLeases();
+    }
+
+    private void releaseLeases() {
+        for (DbHelperCache.Lease lease : leases) {
+            lease.close();
+        }
+    }
+
+    private void append(List<Comment> page, Comment item) {
+        long day = GlobalTimeline.getDayStart(item.getTimestamp());
+        if (!hasLastDay || day != lastDay) {
+            page.add(GlobalTimeline.createDateDivider(item.getTimestamp()));
+            lastDay = day;
+            hasLastDay = true;
+        }
+        page.add(item);
+    }
+
+    /**
+     * 并行读取每一路的首段和各项目的置顶 Note
+     */
+    private void start() {
+        started = true;
+        for (NoteDataLoader loader : loaders) {
+            sources.add(new Source(loader, false, sources.size()));
+            sources.add(new Source(loader, true, sources.size()));
+        }
+
+        List<Future<List<Comment>>> pinnedFutures = new ArrayList<>();
+        List<Future<?>> sliceFutures = new ArrayList<>();
+        if (executor != null) {
+            for (NoteDataLoader loader : loaders) {
+                pinnedFutures.add(executor.submit(() -> loader.loadPinnedNotesInRange(startTime, endTime, descending)));
+            }
+            for (Source source : sources) {
+                sliceFutures.add(executor.submit(source::fill));
+            }
+        }
+
+        // 各项目的置顶 Note 各自有序，归并后整体有序
+        List<List<Comment>> pinnedByProject = new ArrayList<>();
+        for (int i = 0; i < loaders.size(); i++) {
+            try {
+                pinnedByProject.add(executor != null ? pinnedFutures.get(i).get()
+                        : loaders.get(i).loadPinnedNotesInRange(startTime, endTime, descending));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                android.util.Log.e("Timeline", "Timeline: 加载置顶Note失败: " + loaders.get(i).getProjectName(), e);
+            }
+        }
+        for (Comment item : GlobalTimeline.mergeSortedTimelines(pinnedByProject, descending)) {
+            pinnedCopies.add(GlobalTimeline.createPinnedCopy(item));
+        }
+
+        for (int i = 0; i < sources.size(); i++) {
+            Source source = sources.get(i);
+            try {
+                if (executor != null) {
+                    sliceFutures.get(i).get();
+                } else {
+                    source.fill();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                source.exhausted = true;
+                android.util.Log.e("Timeline", "Timeline: 加载项目时间线失败: " + source.loader.getProjectName(), e);
+            }
+            if (source.head() != null) {
+                heap.add(source);
+            }
+        }
+    }
+
+    /**
+     * 一路有序数据流：某个项目的 Note 或 Comment
+     */
+    private class Source {
+        final NoteDataLoader loader;
+        final boolean comments;
+        final int order;
+        List<Comment> buffer = new ArrayList<>();
+        int index;
+        Comment last;
+        boolean exhausted;
+
+        Source(NoteDataLoader loader, boolean comments, int order) {
+            this.loader = loader;
+            this.comments = comments;
+            this.order = order;
+        }
+
+        /**
+         * 当前缓冲中的下一项，缓冲读完时自动加载下一段，没有更多数据时返回 null
+         */
+        Comment head() {
+            if (index >= buffer.size()) {
+                if (exhausted) {
+                    return null;
+                }
+                try {
+                    fill();
+                } catch (Exception e) {
+                    exhausted = true;
+                    android.util.Log.e("Timeline", "Timeline: 加载项目时间线失败: " + loader.getProjectName(), e);
+                }
+                if (index >= buffer.size()) {
+                    return null;
+                }
+            }
+            return buffer.get(index);
+        }
+
+        Comment next() {
+            Comment item = head();
+            index++;
+            last = item;
+            return item;
+        }
+
+        /**
+         * 以上一段最后一项为锚点读取下一段，替换当前缓冲
+         */
+        void fill() {
+            List<Comment> slice = comments
+                    ? loader.loadCommentSlice(startTime, endTime, descending, last, SLICE_SIZE)
+                    : loader.loadNoteSlice(startTime, endTime, descending, last, SLICE_SIZE);
+            buffer = slice;
+            index = 0;
+            exhausted = slice.size() < SLICE_SIZE;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package person.notfresh.noteplus.core.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 笔记附加信息模型
+ * 列表项展示时需要的时间区间、标签、图片、音频和追加数量
+ */
+public class NoteExtras {
+    private final long noteId;
+    private final List<TimeRange> timeRanges = new ArrayList<>();
+    private final List<Tag> tags = new ArrayList<>();
+    private final List<String> imagePaths = new ArrayList<>();
+    private final List<AudioAttachment> audioItems = new ArrayList<>();
+    private int commentCount;
+
+    public NoteExtras(long noteId) {
+        this.noteId = noteId;
+    }
+
+    public long getNoteId() {
+        return noteId;
+    }
+
+    public List<TimeRange> getTimeRanges() {
+        return timeRanges;
+    }
+
+    public List<Tag> getTags() {
+        return tags;
+    }
+
+    public List<String> getImagePaths() {
+        return imagePaths;
+    }
+
+    public List<AudioAttachment> getAudioItems() {
+        return audioItems;
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+
+    public void setCommentCount(int commentCount) {
+        this.commentCount = commentCount;
+    }
+}
@@ -0,0 +1,244 @@
+package person.notfresh.noteplus.db;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 项目数据库Helper缓存（线程安全，按最近使用淘汰）
+ * 同时打开的数据库不超过上限，超出时关闭最久未使用的项目；固定的项目（当前项目）不淘汰。
+ * 通过 {@link #acquire} 取得的 Helper 带引用计数：被淘汰时如果还有引用（游标还在读），
+ * 等最后一个引用释放后再关闭；等待期间再次请求该项目时直接复用，同一个数据库文件不会有两个 Helper。
+ * 不计引用的 {@link #getPinned} 只用于固定的当前项目（不会被淘汰），其他项目一律通过引用访问
+ */
+public final class DbHelperCache {
+    private static final String TAG = "DbHelperCache";
+    // 上限至少为 2：固定的当前项目和正在请求的项目
+    private static final int MIN_OPEN = 2;
+
+    /**
+     * 创建项目的数据库Helper
+     */
+    interface Factory {
+        NoteDbHelper create(String projectName);
+    }
+
+    private static final class Entry {
+        final String projectName;
+        final NoteDbHelper helper;
+        int refCount;
+        boolean evicted;
+
+        Entry(String projectName, NoteDbHelper helper) {
+            this.projectName = projectName;
+            this.helper = helper;
+        }
+    }
+
+    /**
+     * 一次引用，用完后关闭（释放引用），可用于 try-with-resources
+     */
+    public static final class Lease implements Closeable {
+        private final DbHelperCache cache;
+        private final Entry entry;
+        private boolean released;
+
+        private Lease(DbHelperCache cache, Entry entry) {
+            this.cache = cache;
+            this.entry = entry;
+        }
+
+        public NoteDbHelper getHelper() {
+            return entry.helper;
+        }
+
+        public String getProjectName() {
+            return entry.projectName;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            cache.release(entry);
+        }
+    }
+
+    private final Factory factory;
+    // accessOrder = true，迭代顺序即淘汰顺序
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 已淘汰、等待引用释放后关闭的
+    private final Map<String, Entry> pendingClose = new HashMap<>();
+    private int maxOpen;
+    private String pinnedProject;
+
+    DbHelperCache(int maxOpen, Factory factory) {
+        this.maxOpen = Math.max(MIN_OPEN, maxOpen);
+        this.factory = factory;
+    }
+
+    /**
+     * 把项目设为固定项目并获取它的Helper（不计引用，固定期间不会被淘汰）
+     */
+    NoteDbHelper getPinned(String projectName) {
+        List<NoteDbHelper> toClose = new ArrayList<>();
+        NoteDbHelper helper;
+        synchronized (this) {
+            pinnedProject = projectName;
+            helper = obtain(projectName).helper;
+            trim(toClose);
+        }
+        closeAll(toClose);
+        return helper;
+    }
+
+    /**
+     * 获取项目的Helper并增加引用，用完后必须关闭返回的引用
+     */
+    Lease acquire(String projectName) {
+        List<NoteDbHelper> toClose = new ArrayList<>();
+        Lease lease;
+        synchronized (this) {
+            Entry entry = obtain(projectName);
+            entry.refCount++;
+            lease = new Lease(this, entry);
+            trim(toClose);
+        }
+        closeAll(toClose);
+        return lease;
+    }
+
+    /**
+     * 立即关闭并移除项目的Helper（删除、重命名数据库文件之前调用），不等待引用释放
+     */
+    void remove(String projectName) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(projectName);
+            Entry pending = pendingClose.remove(projectName);
+            if (entry == null) {
+                entry = pending;
+            }
+            if (entry != null) {
+                entry.evicted = true;
+            }
+        }
+        if (entry != null) {
+            entry.helper.close();
+        }
+    }
+
+    /**
+     * 关闭所有Helper，包括还有引用的
+     */
+    void clear() {
+        List<NoteDbHelper> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                entry.evicted = true;
+                toClose.add(entry.helper);
+            }
+            for (Entry entry : pendingClose.values()) {
+                toClose.add(entry.helper);
+            }
+            entries.clear();
+            pendingClose.clear();
+        }
+        closeAll(toClose);
+    }
+
+    /**
+     * 设置不淘汰的项目（当前项目）
+     */
+    synchronized void setPinnedProject(String projectName) {
+        pinnedProject = projectName;
+    }
+
+    /**
+     * 设置同时打开的数据库上限，超出的立即淘汰
+     */
+    void setMaxOpen(int maxOpen) {
+        List<NoteDbHelper> toClose = new ArrayList<>();
+        synchronized (this) {
+            this.maxOpen = Math.max(MIN_OPEN, maxOpen);
+            trim(toClose);
+        }
+        closeAll(toClose);
+    }
+
+    synchronized int getMaxOpen() {
+        return maxOpen;
+    }
+
+    /**
+     * 缓存中（未淘汰）的Helper数
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void release(Entry entry) {
+        NoteDbHelper toClose = null;
+        synchronized (this) {
+            entry.refCount--;
+            if (entry.refCount == 0 && entry.evicted && pendingClose.get(entry.projectName) == entry) {
+                pendingClose.remove(entry.projectName);
+                toClose = entry.helper;
+            }
+        }
+        if (toClose != null) {
+            Log.d(TAG, "关闭已淘汰的数据库: " + entry.projectName);
+            toClose.close();
+        }
+    }
+
+    private Entry obtain(String projectName) {
+        Entry entry = entries.get(projectName);
+        if (entry == null) {
+            entry = pendingClose.remove(projectName);
+            if (entry != null) {
+                entry.evicted = false;
+            } else {
+                entry = new Entry(projectName, factory.create(projectName));
+            }
+            entries.put(projectName, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 淘汰超出上限的最久未使用项，没有引用的加入 toClose，由调用方在锁外关闭
+     */
+    private void trim(List<NoteDbHelper> toClose) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxOpen && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.projectName.equals(pinnedProject)) {
+                continue;
+            }
+            iterator.remove();
+            entry.evicted = true;
+            if (entry.refCount > 0) {
+                pendingClose.put(entry.projectName, entry);
+            } else {
+                toClose.add(entry.helper);
+            }
+        }
+    }
+
+    private static void closeAll(List<NoteDbHelper> helpers) {
+        for (NoteDbHelper helper : helpers) {
+            helper.close();
+        }
+    }
+}
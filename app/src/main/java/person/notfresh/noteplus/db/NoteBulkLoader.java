@@ -0,0 +1,293 @@
+package person.notfresh.noteplus.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 批量导入笔记（导入文件用）
+ * - 每张表一条预编译语句，逐行只绑定参数，不再为每行构造 ContentValues
+ * - 标签名 -> ID 在内存中维护，开始时一次读出，不再逐个标签查询
+ * - 每 batchSize 行提交一次事务，提交后回调进度；中途失败时已提交的批次保留，只回滚当前批次
+ * - 批次事务内暂时去掉插入类的变更日志触发器，提交前按笔记去重写日志（每条笔记每批一行），再恢复触发器
+ * - 导入的笔记数超过库中原有笔记数（且不少于 {@link #DEFER_INDEXES_MIN_NOTES}）后删除二级索引，
+ *   全部写完后一次性重建，比逐行维护 B 树快；重建前进程被杀时由 {@link NoteDbHelper#onOpen} 补回
+ * 用法：try (NoteBulkLoader loader = new NoteBulkLoader(dbHelper)) { ...; loader.finish(); }
+ * 不是线程安全的，事务与线程绑定，必须在同一个线程中使用
+ */
+public final class NoteBulkLoader implements Closeable {
+    private static final String TAG = "NoteBulkLoader";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    // 导入量太小时重建索引不划算
+    static final int DEFER_INDEXES_MIN_NOTES = 2000;
+
+    private final NoteDbHelper dbHelper;
+    private final SQLiteDatabase db;
+    private final int batchSize;
+    private final long existingNotes;
+    private final Map<String, Long> tagIds = new HashMap<>();
+    // 当前批次中需要写变更日志的笔记
+    private final Set<Long> changedNoteIds = new LinkedHashSet<>();
+
+    private final SQLiteStatement insertNote;
+    private final SQLiteStatement insertTimeRange;
+    private final SQLiteStatement insertTag;
+    private final SQLiteStatement linkTag;
+    private final SQLiteStatement insertComment;
+    private final SQLiteStatement insertChange;
+
+    private BiConsumer<Integer, Integer> progressCallback;
+    private int totalNotes = -1;
+    private int rowsInBatch;
+    private int notesInBatch;
+    private int committedNotes;
+    private boolean inTransaction;
+    private boolean indexesDeferred;
+    private boolean closed;
+
+    public NoteBulkLoader(NoteDbHelper dbHelper) {
+        this(dbHelper, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize 每个事务最多写入的行数（笔记、时间范围、标签、标签关联、追加内容都算一行）
+     */
+    public NoteBulkLoader(NoteDbHelper dbHelper, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize 必须大于 0: " + batchSize);
+        }
+        this.dbHelper = dbHelper;
+        this.db = dbHelper.getWritableDatabase();
+        this.batchSize = batchSize;
+        this.existingNotes = DatabaseUtils.queryNumEntries(db, NoteDbHelper.TABLE_NOTES);
+        loadTags();
+
+        insertNote = db.compileStatement("INSERT INTO " + NoteDbHelper.TABLE_NOTES + " ("
+                + NoteDbHelper.COLUMN_CONTENT + ", " + NoteDbHelper.COLUMN_TIMESTAMP + ", "
+                + NoteDbHelper.COLUMN_COST + ", " + NoteDbHelper.COLUMN_IS_ARCHIVED + ", "
+                + NoteDbHelper.COLUMN_ARCHIVED_AT + ") VALUES (?, ?, ?, ?, ?)");
+        insertTimeRange = db.compileStatement("INSERT INTO " + NoteDbHelper.TABLE_TIME_RANGES + " ("
+                + NoteDbHelper.COLUMN_NOTE_ID + ", " + NoteDbHelper.COLUMN_START_TIME + ", "
+                + NoteDbHelper.COLUMN_END_TIME + ") VALUES (?, ?, ?)");
+        insertTag = db.compileStatement("INSERT INTO " + NoteDbHelper.TABLE_TAGS + " ("
+                + NoteDbHelper.COLUMN_TAG_NAME + ", " + NoteDbHelper.COLUMN_TAG_COLOR + ") VALUES (?, ?)");
+        // 同一条笔记重复的标签忽略，与 linkNoteToTag 插入失败时返回 -1 一致
+        linkTag = db.compileStatement("INSERT OR IGNORE INTO " + NoteDbHelper.TABLE_NOTE_TAGS + " ("
+                + NoteDbHelper.COLUMN_RECORD_ID + ", " + NoteDbHelper.COLUMN_TAG_ID + ") VALUES (?, ?)");
+        insertComment = db.compileStatement("INSERT INTO " + NoteDbHelper.TABLE_NOTE_COMMENTS + " ("
+                + NoteDbHelper.COLUMN_COMMENT_NOTE_ID + ", " + NoteDbHelper.COLUMN_PARENT_COMMENT_ID + ", "
+                + NoteDbHelper.COLUMN_COMMENT_CONTENT + ", " + NoteDbHelper.COLUMN_COMMENT_TIMESTAMP + ", "
+                + NoteDbHelper.COLUMN_COMMENT_COST + ") VALUES (?, ?, ?, ?, ?)");
+        insertChange = db.compileStatement("INSERT INTO " + NoteDbHelper.TABLE_CHANGE_LOG + " ("
+                + NoteDbHelper.COLUMN_CHANGE_NOTE_ID + ") VALUES (?)");
+    }
+
+    /**
+     * 设置进度回调，每提交一批调用一次
+     * @param progressCallback (已提交的笔记数, 总数)
+     * @param totalNotes 预计导入的笔记总数，未知时为 -1
+     */
+    public void setProgressCallback(BiConsumer<Integer, Integer> progressCallback, int totalNotes) {
+        this.progressCallback = progressCallback;
+        this.totalNotes = totalNotes;
+    }
+
+    /**
+     * 插入笔记
+     * @return 新笔记ID
+     */
+    public long insertNote(String content, long timestamp, double cost, int isArchived, long archivedAt) {
+        beforeInsert();
+        insertNote.bindString(1, content);
+        insertNote.bindLong(2, timestamp);
+        insertNote.bindDouble(3, cost);
+        insertNote.bindLong(4, isArchived);
+        insertNote.bindLong(5, archivedAt);
+        long noteId = insertNote.executeInsert();
+        changedNoteIds.add(noteId);
+        rowsInBatch++;
+        notesInBatch++;
+        return noteId;
+    }
+
+    public long saveTimeRange(long noteId, long startTime, long endTime) {
+        beforeInsert();
+        insertTimeRange.bindLong(1, noteId);
+        insertTimeRange.bindLong(2, startTime);
+        insertTimeRange.bindLong(3, endTime);
+        long rangeId = insertTimeRange.executeInsert();
+        rowsInBatch++;
+        return rangeId;
+    }
+
+    /**
+     * 根据标签名称获取标签ID（查内存）
+     * @return 标签ID，不存在返回 -1
+     */
+    public long getTagIdByName(String tagName) {
+        Long tagId = tagIds.get(tagName);
+        return tagId != null ? tagId : -1;
+    }
+
+    public long addTag(String tagName, String tagColor) {
+        beforeInsert();
+        insertTag.bindString(1, tagName);
+        insertTag.bindString(2, tagColor);
+        long tagId = insertTag.executeInsert();
+        tagIds.put(tagName, tagId);
+        rowsInBatch++;
+        return tagId;
+    }
+
+    /**
+     * @return 关联行的 rowid，已关联时返回 -1
+     */
+    public long linkNoteToTag(long noteId, long tagId) {
+        beforeInsert();
+        linkTag.bindLong(1, noteId);
+        linkTag.bindLong(2, tagId);
+        long rowId = linkTag.executeInsert();
+        changedNoteIds.add(noteId);
+        rowsInBatch++;
+        return rowId;
+    }
+
+    /**
+     * 插入追加内容
+     * @param parentCommentId 父评论ID，null 表示直接回复笔记
+     * @return 新评论ID
+     */
+    public long insertComment(long noteId, Long parentCommentId, String content, long timestamp, double cost) {
+        beforeInsert();
+        insertComment.bindLong(1, noteId);
+        if (parentCommentId != null) {
+            insertComment.bindLong(2, parentCommentId);
+        } else {
+            insertComment.bindNull(2);
+        }
+        insertComment.bindString(3, content);
+        insertComment.bindLong(4, timestamp);
+        insertComment.bindDouble(5, cost);
+        long commentId = insertComment.executeInsert();
+        changedNoteIds.add(noteId);
+        rowsInBatch++;
+        return commentId;
+    }
+
+    /**
+     * 提交最后一批并重建索引；不调用就关闭时，当前批次回滚
+     */
+    public void finish() {
+        if (closed) {
+            throw new IllegalStateException("NoteBulkLoader 已关闭");
+        }
+        if (inTransaction) {
+            commitBatch();
+        }
+        restoreIndexes();
+    }
+
+    /**
+     * 已提交的笔记数
+     */
+    public int getCommittedNotes() {
+        return committedNotes;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (inTransaction) {
+                // 没有 setTransactionSuccessful，当前批次（连同触发器的改动）回滚
+                inTransaction = false;
+                db.endTransaction();
+                Log.w(TAG, "导入未完成，回滚当前批次，已提交 " + committedNotes + " 条");
+            }
+            restoreIndexes();
+        } finally {
+            insertNote.close();
+            insertTimeRange.close();
+            insertTag.close();
+            linkTag.close();
+            insertComment.close();
+            insertChange.close();
+        }
+    }
+
+    private void loadTags() {
+        Cursor cursor = db.query(NoteDbHelper.TABLE_TAGS,
+                new String[]{NoteDbHelper.COLUMN_TAG_ID, NoteDbHelper.COLUMN_TAG_NAME},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                tagIds.put(cursor.getString(1), cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void beforeInsert() {
+        if (closed) {
+            throw new IllegalStateException("NoteBulkLoader 已关闭");
+        }
+        if (rowsInBatch >= batchSize) {
+            commitBatch();
+        }
+        if (!inTransaction) {
+            db.beginTransaction();
+            inTransaction = true;
+            dbHelper.dropChangeLogInsertTriggers(db);
+        }
+    }
+
+    private void commitBatch() {
+        try {
+            for (Long noteId : changedNoteIds) {
+                insertChange.bindLong(1, noteId);
+                insertChange.executeInsert();
+            }
+            dbHelper.createChangeLog(db);
+            db.setTransactionSuccessful();
+        } finally {
+            inTransaction = false;
+            db.endTransaction();
+        }
+        committedNotes += notesInBatch;
+        notesInBatch = 0;
+        rowsInBatch = 0;
+        changedNoteIds.clear();
+
+        if (!indexesDeferred && committedNotes >= Math.max(DEFER_INDEXES_MIN_NOTES, existingNotes)) {
+            dbHelper.dropSecondaryIndexes(db);
+            indexesDeferred = true;
+            Log.d(TAG, "已导入 " + committedNotes + " 条（原有 " + existingNotes + " 条），暂停维护二级索引");
+        }
+        if (progressCallback != null) {
+            progressCallback.accept(committedNotes, totalNotes);
+        }
+    }
+
+    private void restoreIndexes() {
+        if (!indexesDeferred) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        dbHelper.createSecondaryIndexes(db);
+        indexesDeferred = false;
+        Log.d(TAG, "重建二级索引耗时 " + (System.currentTimeMillis() - start) + "ms");
+    }
+}
@@ -2,19 +2,33 @@ package person.notfresh.noteplus.db;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.content.ContentValues;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import person.notfresh.noteplus.core.model.AudioAttachment;
 
 public class NoteDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "notes.db";
-    private static final int DATABASE_VERSION = 11;
+    private static final int DATABASE_VERSION = 15;
+    // 主连接的页缓存上限（负数表示 KiB），列表分页和批量写入时减少重复读盘
+    private static final int CACHE_SIZE_KIB = 4096;
     private static volatile NoteDbHelper instance;
+    // 数据库文件路径 -> 设置表的内存快照（不可修改），首次读取时加载，saveSetting 写库后替换
+    // 同一个文件可能同时有多个 Helper（单例与项目 Helper、淘汰后重新打开的 Helper），快照按文件共享
+    private static final Map<String, Map<String, String>> SETTINGS_SNAPSHOTS = new ConcurrentHashMap<>();
+    // 加载和替换快照互斥，避免加载到写库之前的旧值后覆盖新快照
+    private static final Object SETTINGS_LOCK = new Object();
+    private final String settingsKey;
 
     public static NoteDbHelper getInstance(Context context) {
         if (instance == null) {
@@ -43,7 +57,7 @@ public class NoteDbHelper extends SQLiteOpenHelper {
     public static final String TABLE_NOTE_COMMENTS = "note_comments";
     public static final String TABLE_NOTE_IMAGES = "note_images";
     public static final String TABLE_NOTE_AUDIO = "note_audio";
-    public static final String TABLE_SEARCH_INDEX_STATUS = "search_index_status";
+    public static final String TABLE_CHANGE_LOG = "change_log";
 
     public static final String COLUMN_TAG_ID = "tag_id";
     public static final String COLUMN_TAG_NAME = "tag_name";
@@ -75,8 +89,9 @@ public class NoteDbHelper extends SQLiteOpenHelper {
     public static final String COLUMN_AUDIO_PATH = "path";
     public static final String COLUMN_AUDIO_DURATION = "duration_ms";
 
-    public static final String COLUMN_INDEX_NOTE_ID = "note_id";
-    public static final String COLUMN_INDEXED_AT = "indexed_at";
+    // 变更日志表字段（由触发器写入，供搜索索引增量同步）
+    public static final String COLUMN_CHANGE_SEQ = "seq";
+    public static final String COLUMN_CHANGE_NOTE_ID = "note_id";
 
     public static final String KEY_TIME_RANGE_REQUIRED = "time_range_required";
     public static final String KEY_TIME_RANGE_DISPLAY = "time_range_display";
@@ -84,13 +99,15 @@ public class NoteDbHelper extends SQLiteOpenHelper {
     public static final String KEY_COST_REQUIRED = "cost_required";
     public static final String KEY_TIME_DESC_ORDER = "time_desc_order";
     public static final String KEY_FOLD_DISPLAY_LENGTH = "fold_display_length";
+    // 折叠显示字数的默认值
+    public static final int DEFAULT_FOLD_DISPLAY_LENGTH = 300;
 
     // 全局设置key（用于全局设置对话框）
     public static final String KEY_GLOBAL_TIME_DESC_ORDER = "global_time_desc_order";
     public static final String KEY_GLOBAL_FOLD_DISPLAY_LENGTH = "global_fold_display_length";
 
     // 搜索索引版本（与数据库版本独立）
-    public static final int SEARCH_INDEX_VERSION = 3;
+    public static final int SEARCH_INDEX_VERSION = 8;
     public static final String PREF_SEARCH_INDEX_VERSION = "search_search_index_version";
 
     private static final String DATABASE_CREATE = "create table "
@@ -103,14 +120,40 @@ public class NoteDbHelper extends SQLiteOpenHelper {
             + COLUMN_IS_ARCHIVED + " integer default 0, "
             + COLUMN_ARCHIVED_AT + " integer default 0);";
 
+    /**
+     * 每个项目的数据库都按同一策略打开：
+     * WAL 模式（读写互不阻塞，连接池可同时持有多个只读连接），synchronous=NORMAL（WAL 下只在检查点时同步，
+     * 掉电最多丢失最近的事务，不会损坏数据库），并调大主连接的页缓存
+     */
     public NoteDbHelper(Context context, String databaseName) {
         super(context, databaseName, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+        settingsKey = databaseName != null ? context.getDatabasePath(databaseName).getPath() : "";
     }
 
     public NoteDbHelper(Context context) {
         this(context, DATABASE_NAME);
     }
 
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // 在建表和升级之前执行，对主连接生效（写入都走主连接）
+        db.execSQL("PRAGMA synchronous=NORMAL");
+        db.execSQL("PRAGMA cache_size=-" + CACHE_SIZE_KIB);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // 文件可能在上次打开之后被替换（恢复备份、删除后重建同名项目），设置快照重新加载
+        invalidateSettings();
+        if (!db.isReadOnly()) {
+            // 批量导入期间会暂时删除二级索引，导入中途进程被杀时在这里补回（已存在时不做任何事）
+            createSecondaryIndexes(db);
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase database) {
         database.execSQL(DATABASE_CREATE);
@@ -168,12 +211,6 @@ public class NoteDbHelper extends SQLiteOpenHelper {
                 + "FOREIGN KEY (" + COLUMN_AUDIO_NOTE_ID + ") REFERENCES " + TABLE_NOTES + "(" + COLUMN_ID + ") ON DELETE CASCADE"
                 + ")";
 
-        String CREATE_SEARCH_INDEX_STATUS_TABLE = "CREATE TABLE " + TABLE_SEARCH_INDEX_STATUS + "("
-                + COLUMN_INDEX_NOTE_ID + " INTEGER PRIMARY KEY,"
-                + COLUMN_INDEXED_AT + " INTEGER NOT NULL,"
-                + "FOREIGN KEY (" + COLUMN_INDEX_NOTE_ID + ") REFERENCES " + TABLE_NOTES + "(" + COLUMN_ID + ") ON DELETE CASCADE"
-                + ")";
-
         database.execSQL(CREATE_TAGS_TABLE);
         database.execSQL(CREATE_TIME_RANGES_TABLE);
         database.execSQL(CREATE_NOTE_TAGS_TABLE);
@@ -181,13 +218,14 @@ public class NoteDbHelper extends SQLiteOpenHelper {
         database.execSQL(CREATE_NOTE_COMMENTS_TABLE);
         database.execSQL(CREATE_NOTE_IMAGES_TABLE);
         database.execSQL(CREATE_NOTE_AUDIO_TABLE);
-        database.execSQL(CREATE_SEARCH_INDEX_STATUS_TABLE);
         
         // 创建索引
         database.execSQL("CREATE INDEX IF NOT EXISTS idx_note_comments_note_id ON " 
                 + TABLE_NOTE_COMMENTS + "(" + COLUMN_COMMENT_NOTE_ID + ")");
         database.execSQL("CREATE INDEX IF NOT EXISTS idx_note_comments_timestamp ON " 
                 + TABLE_NOTE_COMMENTS + "(" + COLUMN_COMMENT_TIMESTAMP + ")");
+        createQueryIndexes(database);
+        createChangeLog(database);
         
         ContentValues defaultSettings = new ContentValues();
         defaultSettings.put(COLUMN_SETTING_KEY, KEY_TIME_RANGE_REQUIRED);
@@ -339,14 +377,131 @@ public class NoteDbHelper extends SQLiteOpenHelper {
             db.execSQL(CREATE_NOTE_AUDIO_TABLE);
         }
 
-        if (oldVersion < 11) {
-            String CREATE_SEARCH_INDEX_STATUS_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_SEARCH_INDEX_STATUS + "("
-                    + COLUMN_INDEX_NOTE_ID + " INTEGER PRIMARY KEY,"
-                    + COLUMN_INDEXED_AT + " INTEGER NOT NULL,"
-                    + "FOREIGN KEY (" + COLUMN_INDEX_NOTE_ID + ") REFERENCES " + TABLE_NOTES + "(" + COLUMN_ID + ") ON DELETE CASCADE"
-                    + ")";
-            db.execSQL(CREATE_SEARCH_INDEX_STATUS_TABLE);
+        if (oldVersion < 12) {
+            // 为列表、时间线和附加信息查询创建索引
+            try {
+                createQueryIndexes(db);
+            } catch (Exception e) {
+                // 忽略索引已存在的错误
+            }
         }
+
+        if (oldVersion < 13) {
+            // 变更日志：搜索索引按日志增量同步
+            createChangeLog(db);
+        }
+
+        if (oldVersion >= 13 && oldVersion < 14) {
+            // 置顶状态写入搜索索引（排序加成），笔记更新触发器增加 is_pinned 列
+            db.execSQL("DROP TRIGGER IF EXISTS trg_notes_update_log");
+            createChangeLog(db);
+        }
+
+        if (oldVersion < 15) {
+            // 索引同步改由变更日志记录，版本 11 引入的逐条索引标记表不再使用
+            db.execSQL("DROP TABLE IF EXISTS search_index_status");
+        }
+    }
+
+    /**
+     * 创建所有二级索引（追加内容索引和热点查询索引）
+     */
+    void createSecondaryIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_note_comments_note_id ON "
+                + TABLE_NOTE_COMMENTS + "(" + COLUMN_COMMENT_NOTE_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_note_comments_timestamp ON "
+                + TABLE_NOTE_COMMENTS + "(" + COLUMN_COMMENT_TIMESTAMP + ")");
+        createQueryIndexes(db);
+    }
+
+    /**
+     * 删除批量导入会写入的表上的二级索引，导入完成后由 {@link #createSecondaryIndexes} 一次性重建
+     */
+    void dropSecondaryIndexes(SQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS idx_note_comments_note_id");
+        db.execSQL("DROP INDEX IF EXISTS idx_note_comments_timestamp");
+        db.execSQL("DROP INDEX IF EXISTS idx_notes_archived_pinned_timestamp");
+        db.execSQL("DROP INDEX IF EXISTS idx_notes_archived_timestamp");
+        db.execSQL("DROP INDEX IF EXISTS idx_note_tags_tag_id");
+        db.execSQL("DROP INDEX IF EXISTS idx_time_ranges_note_id");
+    }
+
+    /**
+     * 创建热点查询使用的索引
+     * - notes(is_archived, is_pinned, timestamp)：列表分页，索引项自带 rowid(_id)，可直接按 (is_pinned, timestamp, _id) 有序扫描
+     * - notes(is_archived, timestamp)：时间线按时间范围加载
+     * - note_tags(tag_id, record_id)：按标签查笔记；按笔记查标签由主键 (record_id, tag_id) 覆盖
+     * - time_ranges / note_images / note_audio 的 note_id：列表项附加信息按笔记批量查询
+     */
+    private void createQueryIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_archived_pinned_timestamp ON "
+                + TABLE_NOTES + "(" + COLUMN_IS_ARCHIVED + ", " + COLUMN_IS_PINNED + ", " + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_archived_timestamp ON "
+                + TABLE_NOTES + "(" + COLUMN_IS_ARCHIVED + ", " + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_note_tags_tag_id ON "
+                + TABLE_NOTE_TAGS + "(" + COLUMN_TAG_ID + ", " + COLUMN_RECORD_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_time_ranges_note_id ON "
+                + TABLE_TIME_RANGES + "(" + COLUMN_NOTE_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_note_images_note_id ON "
+                + TABLE_NOTE_IMAGES + "(" + COLUMN_IMAGE_NOTE_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_note_audio_note_id ON "
+                + TABLE_NOTE_AUDIO + "(" + COLUMN_AUDIO_NOTE_ID + ")");
+    }
+
+    /**
+     * 创建变更日志表和触发器
+     * 笔记的新增、内容/时间/归档/置顶状态修改、删除，以及追加内容、标签关联、标签改名，
+     * 都会以受影响的笔记ID写入一行日志；seq 自增且不复用，搜索索引记录已同步到的 seq，
+     * 每次只处理其后的日志
+     */
+    void createChangeLog(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CHANGE_LOG + "("
+                + COLUMN_CHANGE_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + COLUMN_CHANGE_NOTE_ID + " INTEGER NOT NULL"
+                + ")");
+
+        String logNew = "INSERT INTO " + TABLE_CHANGE_LOG + " (" + COLUMN_CHANGE_NOTE_ID + ") VALUES ";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_notes_insert_log AFTER INSERT ON " + TABLE_NOTES
+                + " BEGIN " + logNew + "(NEW." + COLUMN_ID + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_notes_update_log AFTER UPDATE OF "
+                + COLUMN_CONTENT + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_IS_ARCHIVED + ", " + COLUMN_IS_PINNED
+                + " ON " + TABLE_NOTES
+                + " BEGIN " + logNew + "(NEW." + COLUMN_ID + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_notes_delete_log AFTER DELETE ON " + TABLE_NOTES
+                + " BEGIN " + logNew + "(OLD." + COLUMN_ID + "); END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_note_comments_insert_log AFTER INSERT ON " + TABLE_NOTE_COMMENTS
+                + " BEGIN " + logNew + "(NEW." + COLUMN_COMMENT_NOTE_ID + "); END");
+        // 追加内容改挂到其他笔记时，新旧两条笔记都要更新
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_note_comments_update_log AFTER UPDATE OF "
+                + COLUMN_COMMENT_CONTENT + ", " + COLUMN_COMMENT_NOTE_ID + " ON " + TABLE_NOTE_COMMENTS
+                + " BEGIN " + logNew + "(OLD." + COLUMN_COMMENT_NOTE_ID + ");"
+                + " INSERT INTO " + TABLE_CHANGE_LOG + " (" + COLUMN_CHANGE_NOTE_ID + ")"
+                + " SELECT NEW." + COLUMN_COMMENT_NOTE_ID
+                + " WHERE NEW." + COLUMN_COMMENT_NOTE_ID + " <> OLD." + COLUMN_COMMENT_NOTE_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_note_comments_delete_log AFTER DELETE ON " + TABLE_NOTE_COMMENTS
+                + " BEGIN " + logNew + "(OLD." + COLUMN_COMMENT_NOTE_ID + "); END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_note_tags_insert_log AFTER INSERT ON " + TABLE_NOTE_TAGS
+                + " BEGIN " + logNew + "(NEW." + COLUMN_RECORD_ID + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_note_tags_delete_log AFTER DELETE ON " + TABLE_NOTE_TAGS
+                + " BEGIN " + logNew + "(OLD." + COLUMN_RECORD_ID + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_tags_update_log AFTER UPDATE OF " + COLUMN_TAG_NAME
+                + " ON " + TABLE_TAGS
+                + " BEGIN INSERT INTO " + TABLE_CHANGE_LOG + " (" + COLUMN_CHANGE_NOTE_ID + ")"
+                + " SELECT " + COLUMN_RECORD_ID + " FROM " + TABLE_NOTE_TAGS
+                + " WHERE " + COLUMN_TAG_ID + " = NEW." + COLUMN_TAG_ID + "; END");
+    }
+
+    /**
+     * 删除插入类的变更日志触发器（笔记、追加内容、标签关联）
+     * 只在批量导入的事务内使用：导入方按笔记去重后自行写日志，并在同一事务提交前用 {@link #createChangeLog} 恢复，
+     * 其他连接看不到触发器缺失的状态
+     */
+    void dropChangeLogInsertTriggers(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS trg_notes_insert_log");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_note_comments_insert_log");
+        db.execSQL("DROP TRIGGER IF EXISTS trg_note_tags_insert_log");
     }
 
     /**
@@ -546,25 +701,79 @@ public class NoteDbHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * 获取设置值
+     * 获取设置值（从内存快照读取，不查询数据库）
      */
     public String getSetting(String key, String defaultValue) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        String value = defaultValue;
-        
-        Cursor cursor = db.query(
-                TABLE_SETTINGS,
-                new String[]{COLUMN_SETTING_VALUE},
-                COLUMN_SETTING_KEY + "=?",
-                new String[]{key},
-                null, null, null);
-        
-        if (cursor.moveToFirst()) {
-            value = cursor.getString(0);
+        Map<String, String> snapshot = settings();
+        return snapshot.containsKey(key) ? snapshot.get(key) : defaultValue;
+    }
+
+    /**
+     * 获取布尔类型的设置值
+     */
+    public boolean getBooleanSetting(String key, boolean defaultValue) {
+        String value = getSetting(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    /**
+     * 获取整数类型的设置值，没有设置或格式错误时返回默认值
+     */
+    public int getIntSetting(String key, int defaultValue) {
+        String value = getSetting(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        // 在 Helper 的锁之外处理，与 onOpen（持有 Helper 的锁时进入）的加锁顺序一致
+        invalidateSettings();
+    }
+
+    private void invalidateSettings() {
+        synchronized (SETTINGS_LOCK) {
+            SETTINGS_SNAPSHOTS.remove(settingsKey);
+        }
+    }
+
+    /**
+     * 设置快照，首次调用时一次读出整张设置表
+     */
+    private Map<String, String> settings() {
+        Map<String, String> snapshot = SETTINGS_SNAPSHOTS.get(settingsKey);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // 先在锁外打开数据库：打开时 onOpen 会持有 Helper 的锁再进入 SETTINGS_LOCK
+        SQLiteDatabase db = getReadableDatabase();
+        synchronized (SETTINGS_LOCK) {
+            snapshot = SETTINGS_SNAPSHOTS.get(settingsKey);
+            if (snapshot == null) {
+                Map<String, String> loaded = new HashMap<>();
+                Cursor cursor = db.query(
+                        TABLE_SETTINGS,
+                        new String[]{COLUMN_SETTING_KEY, COLUMN_SETTING_VALUE},
+                        null, null, null, null, null);
+                try {
+                    while (cursor.moveToNext()) {
+                        loaded.put(cursor.getString(0), cursor.getString(1));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                snapshot = Collections.unmodifiableMap(loaded);
+                SETTINGS_SNAPSHOTS.put(settingsKey, snapshot);
+            }
+            return snapshot;
         }
-        cursor.close();
-        
-        return value;
     }
 
     /**
@@ -586,6 +795,16 @@ public class NoteDbHelper extends SQLiteOpenHelper {
             values.put(COLUMN_SETTING_KEY, key);
             db.insert(TABLE_SETTINGS, null, values);
         }
+
+        // 写库成功后替换快照（还没加载过时不用处理，首次读取会读到新值）
+        synchronized (SETTINGS_LOCK) {
+            Map<String, String> snapshot = SETTINGS_SNAPSHOTS.get(settingsKey);
+            if (snapshot != null) {
+                Map<String, String> updated = new HashMap<>(snapshot);
+                updated.put(key, value);
+                SETTINGS_SNAPSHOTS.put(settingsKey, Collections.unmodifiableMap(updated));
+            }
+        }
     }
 
     /**
@@ -913,6 +1132,228 @@ public class NoteDbHelper extends SQLiteOpenHelper {
         return cursor;
     }
 
+    /**
+     * 统计未归档笔记数量（列表总行数）
+     */
+    public int countNotes() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(
+                "SELECT COUNT(*) FROM " + TABLE_NOTES + " WHERE " + COLUMN_IS_ARCHIVED + " = 0", null);
+        int count = 0;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+            cursor.close();
+        }
+        return count;
+    }
+
+    /**
+     * 按 (is_pinned, timestamp, _id) 键集分页加载笔记
+     * 排序与 loadNotes(boolean) 一致：置顶在前，再按时间排序，_id 作为相同时间戳时的稳定次序
+     * 每次只查询一个置顶分区，分区内用行值比较 (timestamp, _id) &lt; (?, ?)（升序为 &gt;），
+     * 可以直接在 (is_archived, is_pinned, timestamp) 索引上定位到锚点，两个方向都不需要临时排序；
+     * 当前分区不够一页时接着查询下一个分区
+     *
+     * @param timeDescOrder true表示时间降序，false表示时间升序
+     * @param after 上一页最后一条笔记（只使用 id、timestamp、isPinned），为 null 时从头开始
+     * @param offset 锚点之后跳过的行数（跳页时使用，顺序翻页时为 0）
+     * @param limit 每页行数
+     * @return 包含笔记数据的Cursor，字段与 loadNotes(boolean) 相同
+     */
+    public Cursor loadNotesPage(boolean timeDescOrder, person.notfresh.noteplus.core.model.Note after,
+                                int offset, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<Cursor> parts = new ArrayList<>(2);
+        int skip = Math.max(0, offset);
+        int remaining = limit;
+        int firstPinned = after == null || after.isPinned() ? 1 : 0;
+        for (int pinned = firstPinned; pinned >= 0 && remaining > 0; pinned--) {
+            // 锚点只约束它所在的分区，之后的分区从头开始
+            boolean anchored = after != null && pinned == firstPinned;
+            String[] args = anchored
+                    ? new String[]{String.valueOf(pinned), String.valueOf(after.getTimestamp()), String.valueOf(after.getId())}
+                    : new String[]{String.valueOf(pinned)};
+            Cursor cursor = db.rawQuery(notesPageSql(timeDescOrder, anchored, skip, remaining), args);
+            int rows = cursor.getCount();
+            if (rows > 0) {
+                parts.add(cursor);
+                remaining -= rows;
+                skip = 0;
+            } else {
+                cursor.close();
+                if (skip > 0) {
+                    // 整个分区都被跳过，剩余的偏移落到下一个分区
+                    skip = Math.max(0, skip - countNotesInPartition(db, timeDescOrder, pinned, anchored ? after : null));
+                }
+            }
+        }
+        if (parts.isEmpty()) {
+            return db.rawQuery(notesPageSql(timeDescOrder, false, 0, 0), new String[]{"0"});
+        }
+        return parts.size() == 1 ? parts.get(0) : new MergeCursor(parts.toArray(new Cursor[0]));
+    }
+
+    /**
+     * 构造一个置顶分区的分页查询（loadNotesPage 使用，测试用它检查执行计划）
+     * 参数依次为 is_pinned，以及 anchored 时锚点的 timestamp、_id
+     */
+    static String notesPageSql(boolean timeDescOrder, boolean anchored, int offset, int limit) {
+        String order = timeDescOrder ? " DESC" : " ASC";
+        return "SELECT " + COLUMN_ID + ", " + COLUMN_CONTENT + ", " + COLUMN_TIMESTAMP + ", "
+                + COLUMN_COST + ", " + COLUMN_IS_PINNED + " FROM " + TABLE_NOTES
+                + " WHERE " + partitionSelection(timeDescOrder, anchored, true)
+                + " ORDER BY " + COLUMN_TIMESTAMP + order + ", " + COLUMN_ID + order
+                + " LIMIT " + (offset > 0 ? offset + ", " + limit : String.valueOf(limit));
+    }
+
+    /**
+     * 一个置顶分区（未归档）内排在锚点之后（after=true）或之前（after=false）的条件
+     */
+    private static String partitionSelection(boolean timeDescOrder, boolean anchored, boolean after) {
+        String selection = COLUMN_IS_ARCHIVED + " = 0 AND " + COLUMN_IS_PINNED + " = ?";
+        if (anchored) {
+            String cmp = timeDescOrder == after ? " < " : " > ";
+            selection += " AND (" + COLUMN_TIMESTAMP + ", " + COLUMN_ID + ")" + cmp + "(?, ?)";
+        }
+        return selection;
+    }
+
+    private int countNotesInPartition(SQLiteDatabase db, boolean timeDescOrder, int pinned,
+                                      person.notfresh.noteplus.core.model.Note after) {
+        String[] args = after != null
+                ? new String[]{String.valueOf(pinned), String.valueOf(after.getTimestamp()), String.valueOf(after.getId())}
+                : new String[]{String.valueOf(pinned)};
+        return countQuery(db, "SELECT COUNT(*) FROM " + TABLE_NOTES
+                + " WHERE " + partitionSelection(timeDescOrder, after != null, true), args);
+    }
+
+    /**
+     * 计算笔记在 loadNotesPage 排序下的位置（排在它之前的未归档笔记数量）
+     * 非置顶笔记之前是全部置顶笔记，加上同一分区内排在它之前的笔记，两次计数都在索引上按范围定位
+     *
+     * @param noteId 笔记ID
+     * @param timeDescOrder true表示时间降序，false表示时间升序
+     * @return 位置索引，笔记不存在或已归档时返回 -1
+     */
+    public int getNotePosition(long noteId, boolean timeDescOrder) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor keyCursor = db.query(
+                TABLE_NOTES,
+                new String[]{COLUMN_IS_PINNED, COLUMN_TIMESTAMP},
+                COLUMN_ID + " = ? AND " + COLUMN_IS_ARCHIVED + " = 0",
+                new String[]{String.valueOf(noteId)},
+                null, null, null
+        );
+        if (keyCursor == null) {
+            return -1;
+        }
+        if (!keyCursor.moveToFirst()) {
+            keyCursor.close();
+            return -1;
+        }
+        String pinned = keyCursor.getInt(0) == 1 ? "1" : "0";
+        String timestamp = String.valueOf(keyCursor.getLong(1));
+        keyCursor.close();
+
+        int position = 0;
+        if ("0".equals(pinned)) {
+            position += countQuery(db, "SELECT COUNT(*) FROM " + TABLE_NOTES + " WHERE "
+                    + partitionSelection(timeDescOrder, false, true), new String[]{"1"});
+        }
+        position += countQuery(db, "SELECT COUNT(*) FROM " + TABLE_NOTES + " WHERE "
+                        + partitionSelection(timeDescOrder, true, false),
+                new String[]{pinned, timestamp, String.valueOf(noteId)});
+        return position;
+    }
+
+    /**
+     * 按列表排序查找某段时间内的第一条未归档笔记（跳转到日期用）
+     *
+     * @param startTime 起始时间（包含）
+     * @param endTime 结束时间（包含）
+     * @param timeDescOrder true表示时间降序，false表示时间升序
+     * @param excludedIds 不参与查找的笔记ID（列表中已隐藏的），可为空
+     * @return 笔记ID，没有时返回 -1
+     */
+    public long findFirstNoteInTimeRange(long startTime, long endTime, boolean timeDescOrder,
+                                         java.util.Collection<Long> excludedIds) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(startTime));
+        args.add(String.valueOf(endTime));
+        String selection = COLUMN_IS_ARCHIVED + " = 0 AND " + COLUMN_TIMESTAMP + " BETWEEN ? AND ?"
+                + excludeIdsSelection(excludedIds, args);
+        String order = timeDescOrder ? " DESC" : " ASC";
+        Cursor cursor = this.getReadableDatabase().query(
+                TABLE_NOTES,
+                new String[]{COLUMN_ID},
+                selection,
+                args.toArray(new String[0]),
+                null, null,
+                COLUMN_IS_PINNED + " DESC, " + COLUMN_TIMESTAMP + order + ", " + COLUMN_ID + order,
+                "1");
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 查询某条笔记前后一段时间内（包含边界）的未归档笔记，按时间倒序
+     *
+     * @param noteId 中心笔记ID，不存在或已归档时结果为空
+     * @param rangeMillis 前后各多少毫秒
+     * @param excludedIds 不返回的笔记ID（列表中已隐藏的），可为空
+     * @return Cursor，包含 _id、content、timestamp、cost、is_pinned
+     */
+    public Cursor getNotesAround(long noteId, long rangeMillis, java.util.Collection<Long> excludedIds) {
+        String center = "(SELECT " + COLUMN_TIMESTAMP + " FROM " + TABLE_NOTES
+                + " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_IS_ARCHIVED + " = 0)";
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(noteId));
+        args.add(String.valueOf(rangeMillis));
+        args.add(String.valueOf(noteId));
+        args.add(String.valueOf(rangeMillis));
+        String selection = COLUMN_IS_ARCHIVED + " = 0 AND " + COLUMN_TIMESTAMP
+                + " BETWEEN " + center + " - ? AND " + center + " + ?"
+                + excludeIdsSelection(excludedIds, args);
+        return this.getReadableDatabase().query(
+                TABLE_NOTES,
+                new String[]{COLUMN_ID, COLUMN_CONTENT, COLUMN_TIMESTAMP, COLUMN_COST, COLUMN_IS_PINNED},
+                selection,
+                args.toArray(new String[0]),
+                null, null,
+                COLUMN_TIMESTAMP + " DESC");
+    }
+
+    /**
+     * 排除若干笔记ID的条件（参数绑定），没有要排除的ID时返回空串
+     */
+    private static String excludeIdsSelection(java.util.Collection<Long> excludedIds, List<String> args) {
+        if (excludedIds == null || excludedIds.isEmpty()) {
+            return "";
+        }
+        StringBuilder selection = new StringBuilder(" AND " + COLUMN_ID + " NOT IN (");
+        boolean first = true;
+        for (Long id : excludedIds) {
+            selection.append(first ? "?" : ", ?");
+            args.add(String.valueOf(id));
+            first = false;
+        }
+        return selection.append(")").toString();
+    }
+
+    private static int countQuery(SQLiteDatabase db, String sql, String[] args) {
+        Cursor cursor = db.rawQuery(sql, args);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * 加载归档笔记数据（按归档时间倒序）
      * 
@@ -1274,54 +1715,213 @@ public class NoteDbHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * 标记笔记已索引
-     * @param noteId 笔记ID
-     * @return 是否成功
+     * 统计所有笔记数量（包括已归档，全量建索引时用于显示进度）
      */
-    public boolean markNoteIndexed(long noteId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_INDEX_NOTE_ID, noteId);
-        values.put(COLUMN_INDEXED_AT, System.currentTimeMillis());
-        return db.insertWithOnConflict(TABLE_SEARCH_INDEX_STATUS, null, values, SQLiteDatabase.CONFLICT_REPLACE) != -1;
+    public int countNotesForIndex() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_NOTES, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
-     * 移除笔记索引标记（删除时调用）
-     * @param noteId 笔记ID
+     * 按 ID 分批获取笔记的索引内容（全量建索引时使用，包括已归档的笔记）
+     * 用 ID 键集分批，每批都有进展，批量写入期间游标也不会失效
+     * @param afterId 只返回 ID 大于该值的笔记，首批传 0
+     * @param limit 每批最多条数
+     * @return Cursor，包含 _id、content、timestamp、is_archived、is_pinned、cost，按 _id 升序
+     */
+    public Cursor getNotesForIndex(long afterId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.query(TABLE_NOTES,
+                new String[]{COLUMN_ID, COLUMN_CONTENT, COLUMN_TIMESTAMP, COLUMN_IS_ARCHIVED, COLUMN_IS_PINNED, COLUMN_COST},
+                COLUMN_ID + " > ?",
+                new String[]{String.valueOf(afterId)},
+                null, null,
+                COLUMN_ID + " ASC",
+                String.valueOf(limit));
+    }
+
+    /**
+     * 按 ID 批量获取笔记的索引内容（增量同步时使用）
+     * @param noteIds 笔记ID列表，已删除的笔记不在结果中
+     * @return Cursor，包含 _id、content、timestamp、is_archived、is_pinned、cost
+     */
+    public Cursor getNotesForIndex(List<Long> noteIds) {
+        StringBuilder placeholders = new StringBuilder();
+        String[] args = new String[noteIds.size()];
+        for (int i = 0; i < noteIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+            args[i] = String.valueOf(noteIds.get(i));
+        }
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.query(TABLE_NOTES,
+                new String[]{COLUMN_ID, COLUMN_CONTENT, COLUMN_TIMESTAMP, COLUMN_IS_ARCHIVED, COLUMN_IS_PINNED, COLUMN_COST},
+                COLUMN_ID + " IN (" + placeholders + ")",
+                args,
+                null, null, null);
+    }
+
+    /**
+     * 获取变更日志已分配的最大序号
+     * 读取 sqlite_sequence 而不是 MAX(seq)，已处理的日志被删除后序号也不会回退
+     * @return 最大序号，还没有任何日志时返回 0
+     */
+    public long getMaxChangeSeq() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT seq FROM sqlite_sequence WHERE name = ?", new String[]{TABLE_CHANGE_LOG});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 统计某个序号之后的变更日志条数
+     */
+    public int countChanges(long afterSeq) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_CHANGE_LOG
+                + " WHERE " + COLUMN_CHANGE_SEQ + " > ?", new String[]{String.valueOf(afterSeq)});
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 按序号分批读取变更日志
+     * @param afterSeq 只返回序号大于该值的日志
+     * @param limit 每批最多条数
+     * @return Cursor，包含 seq、note_id，按 seq 升序
+     */
+    public Cursor getChanges(long afterSeq, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.query(TABLE_CHANGE_LOG,
+                new String[]{COLUMN_CHANGE_SEQ, COLUMN_CHANGE_NOTE_ID},
+                COLUMN_CHANGE_SEQ + " > ?",
+                new String[]{String.valueOf(afterSeq)},
+                null, null,
+                COLUMN_CHANGE_SEQ + " ASC",
+                String.valueOf(limit));
+    }
+
+    /**
+     * 删除已同步的变更日志
+     * @param upToSeq 删除序号小于等于该值的日志
      * @return 删除的行数
      */
-    public int unmarkNoteIndexed(long noteId) {
+    public int deleteChanges(long upToSeq) {
         SQLiteDatabase db = this.getWritableDatabase();
-        return db.delete(TABLE_SEARCH_INDEX_STATUS, COLUMN_INDEX_NOTE_ID + "=?", new String[]{String.valueOf(noteId)});
+        return db.delete(TABLE_CHANGE_LOG, COLUMN_CHANGE_SEQ + " <= ?", new String[]{String.valueOf(upToSeq)});
     }
 
     /**
-     * 获取所有未索引的笔记ID列表
-     * @return Cursor，包含未索引笔记的 _id
+     * 手动为笔记写入变更日志（在一个事务中写入），下次同步时这些笔记会重新索引
+     * @param noteIds 笔记ID列表
      */
-    public Cursor getUnindexedNotes() {
+    public void logNoteChanges(List<Long> noteIds) {
+        if (noteIds == null || noteIds.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement statement = db.compileStatement("INSERT INTO " + TABLE_CHANGE_LOG
+                    + " (" + COLUMN_CHANGE_NOTE_ID + ") VALUES (?)");
+            try {
+                for (Long noteId : noteIds) {
+                    statement.bindLong(1, noteId);
+                    statement.executeInsert();
+                    statement.clearBindings();
+                }
+            } finally {
+                statement.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 批量获取笔记的追加内容文本（建索引用）
+     * @param noteIds 笔记ID列表
+     * @return 笔记ID -> 追加内容列表（按时间正序），没有追加内容的笔记不在结果中
+     */
+    public java.util.Map<Long, List<String>> getCommentContentsForNotes(List<Long> noteIds) {
+        java.util.Map<Long, List<String>> result = new java.util.HashMap<>();
+        if (noteIds == null || noteIds.isEmpty()) {
+            return result;
+        }
+        StringBuilder placeholders = new StringBuilder();
+        String[] args = new String[noteIds.size()];
+        for (int i = 0; i < noteIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+            args[i] = String.valueOf(noteIds.get(i));
+        }
         SQLiteDatabase db = this.getReadableDatabase();
-        String query = "SELECT n." + COLUMN_ID + " FROM " + TABLE_NOTES + " n "
-                + "LEFT JOIN " + TABLE_SEARCH_INDEX_STATUS + " s ON n." + COLUMN_ID + " = s." + COLUMN_INDEX_NOTE_ID
-                + " WHERE s." + COLUMN_INDEX_NOTE_ID + " IS NULL AND n." + COLUMN_IS_ARCHIVED + " = 0";
-        return db.rawQuery(query, null);
+        Cursor cursor = db.query(TABLE_NOTE_COMMENTS,
+                new String[]{COLUMN_COMMENT_NOTE_ID, COLUMN_COMMENT_CONTENT},
+                COLUMN_COMMENT_NOTE_ID + " IN (" + placeholders + ")",
+                args,
+                null, null,
+                COLUMN_COMMENT_NOTE_ID + " ASC, " + COLUMN_COMMENT_TIMESTAMP + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                long noteId = cursor.getLong(0);
+                List<String> comments = result.get(noteId);
+                if (comments == null) {
+                    comments = new ArrayList<>();
+                    result.put(noteId, comments);
+                }
+                comments.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
     }
 
     /**
-     * 检查笔记是否已索引
-     * @param noteId 笔记ID
-     * @return true 表示已索引
+     * 批量获取笔记的标签名（建索引用）
+     * @param noteIds 笔记ID列表
+     * @return 笔记ID -> 标签名列表，没有标签的笔记不在结果中
      */
-    public boolean isNoteIndexed(long noteId) {
+    public java.util.Map<Long, List<String>> getTagNamesForNotes(List<Long> noteIds) {
+        java.util.Map<Long, List<String>> result = new java.util.HashMap<>();
+        if (noteIds == null || noteIds.isEmpty()) {
+            return result;
+        }
+        StringBuilder placeholders = new StringBuilder();
+        String[] args = new String[noteIds.size()];
+        for (int i = 0; i < noteIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+            args[i] = String.valueOf(noteIds.get(i));
+        }
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_SEARCH_INDEX_STATUS,
-                new String[]{COLUMN_INDEX_NOTE_ID},
-                COLUMN_INDEX_NOTE_ID + "=?",
-                new String[]{String.valueOf(noteId)},
-                null, null, null);
-        boolean indexed = cursor != null && cursor.getCount() > 0;
-        if (cursor != null) cursor.close();
-        return indexed;
+        Cursor cursor = db.rawQuery("SELECT nt." + COLUMN_RECORD_ID + ", t." + COLUMN_TAG_NAME
+                + " FROM " + TABLE_NOTE_TAGS + " nt"
+                + " INNER JOIN " + TABLE_TAGS + " t ON t." + COLUMN_TAG_ID + " = nt." + COLUMN_TAG_ID
+                + " WHERE nt." + COLUMN_RECORD_ID + " IN (" + placeholders + ")", args);
+        try {
+            while (cursor.moveToNext()) {
+                long noteId = cursor.getLong(0);
+                List<String> tags = result.get(noteId);
+                if (tags == null) {
+                    tags = new ArrayList<>();
+                    result.put(noteId, tags);
+                }
+                tags.add(cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
     }
 } 
\ No newline at end of file
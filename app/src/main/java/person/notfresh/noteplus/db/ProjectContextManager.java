@@ -6,10 +6,9 @@ import android.database.sqlite.SQLiteDatabase;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -28,21 +27,59 @@ public class ProjectContextManager {
     private static final String ORDER_SEPARATOR = ",";
     private static final String KEY_PROJECT_SWITCH_HISTORY = "project_switch_history";
     private static final int MAX_HISTORY_SIZE = 3;
+    // 默认同时打开的项目数据库上限
+    public static final int DEFAULT_MAX_OPEN_DATABASES = 8;
 
     private Context appContext;
     private NoteDbHelper currentDbHelper;
     private String currentProjectName;
     private SharedPreferences preferences;
     
-    // 添加缓存属性
-    private Map<String, NoteDbHelper> dbHelperCache = new HashMap<>();
+    // 各项目的数据库Helper，按最近使用淘汰，见 DbHelperCache
+    private final DbHelperCache dbHelperCache;
 
     // 项目切换历史列表（用于长按循环切换）
     private List<String> projectSwitchHistory = new ArrayList<>();
+
+    // 项目列表、顺序、回收站和默认项目的快照，修改后置空，下次读取时重建
+    private final Object snapshotLock = new Object();
+    private volatile ProjectSnapshot snapshot;
+    // 同一进程中的其他实例（小组件等）修改项目设置时也让快照失效；SharedPreferences 只弱引用监听器，这里持有
+    private final SharedPreferences.OnSharedPreferenceChangeListener snapshotInvalidator = (prefs, key) -> {
+        if (key == null || KEY_PROJECT_LIST.equals(key) || KEY_PROJECT_ORDER.equals(key)
+                || KEY_RECYCLED_PROJECTS.equals(key) || KEY_DEFAULT_PROJECT.equals(key)) {
+            invalidateSnapshot();
+        }
+    };
+
+    /**
+     * 项目设置的不可变快照
+     * 读取项目列表不再每次解析 SharedPreferences 和重新排序，判断项目是否存在为 O(1)
+     */
+    private static final class ProjectSnapshot {
+        final List<String> projects;       // 按保存的顺序排序
+        final Set<String> projectSet;
+        final List<String> order;          // 保存的顺序
+        final List<String> recycled;
+        final Set<String> recycledSet;
+        final String defaultProject;
+
+        ProjectSnapshot(List<String> projects, List<String> order, Set<String> recycled, String defaultProject) {
+            this.projects = Collections.unmodifiableList(new ArrayList<>(projects));
+            this.projectSet = Collections.unmodifiableSet(new HashSet<>(projects));
+            this.order = Collections.unmodifiableList(new ArrayList<>(order));
+            this.recycled = Collections.unmodifiableList(new ArrayList<>(recycled));
+            this.recycledSet = Collections.unmodifiableSet(new HashSet<>(recycled));
+            this.defaultProject = defaultProject;
+        }
+    }
     
     public ProjectContextManager(Context context) {
         this.appContext = context.getApplicationContext();
         preferences = appContext.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        preferences.registerOnSharedPreferenceChangeListener(snapshotInvalidator);
+        dbHelperCache = new DbHelperCache(DEFAULT_MAX_OPEN_DATABASES,
+                projectName -> new NoteDbHelper(appContext, getDatabaseName(projectName)));
         
         // 获取默认项目设置
         String defaultProject = preferences.getString(KEY_DEFAULT_PROJECT, DEFAULT_PROJECT);
@@ -92,34 +129,28 @@ public class ProjectContextManager {
      * 获取当前数据库Helper
      */
     public NoteDbHelper getCurrentDbHelper() {
-        // 从缓存中获取而不是每次创建新实例
-        if (!dbHelperCache.containsKey(currentProjectName)) {
-            dbHelperCache.put(currentProjectName, 
-                    new NoteDbHelper(appContext, getDatabaseName(currentProjectName)));
-        }
-        return dbHelperCache.get(currentProjectName);
+        // 从缓存中获取而不是每次创建新实例；当前项目的Helper不会被淘汰
+        return dbHelperCache.getPinned(currentProjectName);
     }
-    
+
     /**
-     * 获取指定项目的数据库Helper
+     * 获取指定项目的数据库Helper并持有引用：引用释放之前即使被淘汰也不会关闭
+     * 同时打开的数据库有上限，访问非当前项目都要通过引用，不提供不计引用的Helper
+     * 用法：try (DbHelperCache.Lease lease = acquireDbHelper(name)) { ... }
+     * @return 引用，项目不存在时返回 null
      */
-    public NoteDbHelper getDbHelperForProject(String projectName) {
-        if (projectName == null || projectName.isEmpty()) {
-            return null;
-        }
-        
-        // 检查项目是否存在
-        List<String> projects = getProjectList();
-        if (!projects.contains(projectName)) {
+    public DbHelperCache.Lease acquireDbHelper(String projectName) {
+        if (projectName == null || projectName.isEmpty() || !hasProject(projectName)) {
             return null;
         }
-        
-        // 从缓存中获取或创建新的Helper
-        if (!dbHelperCache.containsKey(projectName)) {
-            dbHelperCache.put(projectName, 
-                    new NoteDbHelper(appContext, getDatabaseName(projectName)));
-        }
-        return dbHelperCache.get(projectName);
+        return dbHelperCache.acquire(projectName);
+    }
+
+    /**
+     * 设置同时打开的项目数据库上限（至少为 2），超出的最久未使用的数据库会被关闭
+     */
+    public void setMaxOpenDatabases(int maxOpen) {
+        dbHelperCache.setMaxOpen(maxOpen);
     }
     
     /**
@@ -136,6 +167,7 @@ public class ProjectContextManager {
         
         // 不立即关闭数据库，仅切换引用
         currentProjectName = projectName;
+        dbHelperCache.setPinnedProject(projectName);
         
         // 保存当前项目名称到SharedPreferences
         preferences.edit().putString(KEY_CURRENT_PROJECT, projectName).apply();
@@ -234,28 +266,75 @@ public class ProjectContextManager {
         
     /**
      * 获取项目列表（按保存的顺序排序）
+     * @return 可修改的副本
      */
     public List<String> getProjectList() {
+        return new ArrayList<>(snapshot().projects);
+    }
+
+    /**
+     * 项目是否存在（不包括回收站中的项目）
+     */
+    public boolean hasProject(String projectName) {
+        return projectName != null && snapshot().projectSet.contains(projectName);
+    }
+
+    /**
+     * 项目是否在回收站中
+     */
+    public boolean isRecycled(String projectName) {
+        return projectName != null && snapshot().recycledSet.contains(projectName);
+    }
+
+    /**
+     * 获取快照，已失效时从 SharedPreferences 重建
+     */
+    private ProjectSnapshot snapshot() {
+        ProjectSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (snapshotLock) {
+            // 修改先写入 SharedPreferences 再在同一把锁下置空快照，这里读到的一定是修改后的值
+            if (snapshot == null) {
+                snapshot = loadSnapshot();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 项目设置修改后调用，下次读取时重建快照
+     */
+    void invalidateSnapshot() {
+        synchronized (snapshotLock) {
+            snapshot = null;
+        }
+    }
+
+    private ProjectSnapshot loadSnapshot() {
         Set<String> projectSet = preferences.getStringSet(KEY_PROJECT_LIST, new HashSet<>());
         List<String> projectList = new ArrayList<>(projectSet);
         
         // 确保默认项目总是存在
         if (!projectList.contains(DEFAULT_PROJECT)) {
             projectList.add(DEFAULT_PROJECT);
-            saveProjectList(projectList);
+            preferences.edit().putStringSet(KEY_PROJECT_LIST, new HashSet<>(projectList)).apply();
         }
-        
-        // 应用排序
-        return applyProjectOrder(projectList);
+
+        List<String> order = readProjectOrder();
+        return new ProjectSnapshot(applyProjectOrder(projectList, order), order,
+                preferences.getStringSet(KEY_RECYCLED_PROJECTS, new HashSet<>()),
+                preferences.getString(KEY_DEFAULT_PROJECT, DEFAULT_PROJECT));
     }
     
     /**
      * 根据保存的顺序对项目列表进行排序
      * @param projectList 原始项目列表
+     * @param orderedList 保存的顺序
      * @return 排序后的项目列表
      */
-    private List<String> applyProjectOrder(List<String> projectList) {
-        List<String> orderedList = getProjectOrder();
+    private static List<String> applyProjectOrder(List<String> projectList, List<String> orderedList) {
         
         // 如果没有保存的顺序，使用默认排序（字母顺序）
         if (orderedList.isEmpty()) {
@@ -298,6 +377,13 @@ public class ProjectContextManager {
      * @return 项目顺序列表
      */
     private List<String> getProjectOrder() {
+        return new ArrayList<>(snapshot().order);
+    }
+
+    /**
+     * 从 SharedPreferences 读取保存的项目顺序
+     */
+    private List<String> readProjectOrder() {
         String orderString = preferences.getString(KEY_PROJECT_ORDER, "");
         if (orderString == null || orderString.isEmpty()) {
             return new ArrayList<>();
@@ -329,6 +415,7 @@ public class ProjectContextManager {
     private void saveProjectOrder(List<String> orderedProjects) {
         if (orderedProjects == null || orderedProjects.isEmpty()) {
             preferences.edit().remove(KEY_PROJECT_ORDER).commit();
+            invalidateSnapshot();
             return;
         }
         
@@ -341,6 +428,7 @@ public class ProjectContextManager {
         }
         // 使用 commit() 确保立即保存，而不是异步的 apply()
         preferences.edit().putString(KEY_PROJECT_ORDER, sb.toString()).commit();
+        invalidateSnapshot();
     }
     
     /**
@@ -389,6 +477,7 @@ public class ProjectContextManager {
         boolean isNew = !newSet.contains(projectName);
         newSet.add(projectName);
         preferences.edit().putStringSet(KEY_PROJECT_LIST, newSet).apply();
+        invalidateSnapshot();
         
         // 如果是新项目，追加到顺序列表末尾
         if (isNew) {
@@ -406,6 +495,7 @@ public class ProjectContextManager {
     private void saveProjectList(List<String> projectList) {
         Set<String> projectSet = new HashSet<>(projectList);
         preferences.edit().putStringSet(KEY_PROJECT_LIST, projectSet).apply();
+        invalidateSnapshot();
     }
     
     /**
@@ -417,8 +507,7 @@ public class ProjectContextManager {
         }
         
         // 检查项目是否已存在
-        List<String> projects = getProjectList();
-        if (projects.contains(projectName)) {
+        if (hasProject(projectName)) {
             return false;
         }
         
@@ -450,20 +539,13 @@ public class ProjectContextManager {
         // 准备删除的数据库文件
         String dbName = getDatabaseName(projectName);
         File dbFile = appContext.getDatabasePath(dbName);
-        File dbJournalFile = new File(dbFile.getPath() + "-journal");
         
         try {
             // 1. 如果删除的是当前项目，先切换到默认项目
             boolean needReload = false;
             if (projectName.equals(currentProjectName)) {
                 // 关闭当前数据库连接
-                if (dbHelperCache.containsKey(projectName)) {
-                    NoteDbHelper helper = dbHelperCache.get(projectName);
-                    if (helper != null) {
-                        helper.close();
-                    }
-                    dbHelperCache.remove(projectName);
-                }
+                closeDbHelper(projectName);
                 
                 // 切换到默认项目
                 currentProjectName = DEFAULT_PROJECT;
@@ -472,13 +554,7 @@ public class ProjectContextManager {
             }
             
             // 2. 从缓存中移除并确保连接关闭
-            if (dbHelperCache.containsKey(projectName)) {
-                NoteDbHelper helper = dbHelperCache.get(projectName);
-                if (helper != null) {
-                    helper.close();
-                }
-                dbHelperCache.remove(projectName);
-            }
+            closeDbHelper(projectName);
             
             // 3. 从列表中移除
             projects.remove(projectName);
@@ -498,10 +574,8 @@ public class ProjectContextManager {
                 success = dbFile.delete();
             }
             
-            // 删除相关的journal文件
-            if (dbJournalFile.exists()) {
-                dbJournalFile.delete();
-            }
+            // 删除相关的journal/WAL文件
+            deleteSidecarFiles(dbFile);
             
             return success;
         } catch (Exception e) {
@@ -517,6 +591,13 @@ public class ProjectContextManager {
         return currentProjectName;
     }
     
+    /**
+     * 获取项目的数据库文件（不打开数据库）
+     */
+    public File getDatabaseFile(String projectName) {
+        return appContext.getDatabasePath(getDatabaseName(projectName));
+    }
+
     /**
      * 生成项目对应的数据库名称
      */
@@ -556,26 +637,47 @@ public class ProjectContextManager {
             saveProjectOrder(orderList);
         }
         
-        // 重命名数据库文件
+        // 重命名数据库文件：先关闭旧连接（WAL 模式下关闭时把日志写回数据库文件），
+        // 仍有未写回的 -wal 文件时随数据库一起改名，-shm 是共享内存索引，删除后会重建
+        closeDbHelper(oldName);
         File oldDbFile = appContext.getDatabasePath(getDatabaseName(oldName));
         File newDbFile = appContext.getDatabasePath(getDatabaseName(newName));
         
         if (oldDbFile.exists()) {
+            File oldWalFile = new File(oldDbFile.getPath() + "-wal");
+            if (oldWalFile.exists() && !oldWalFile.renameTo(new File(newDbFile.getPath() + "-wal"))) {
+                return false;
+            }
+            new File(oldDbFile.getPath() + "-shm").delete();
             return oldDbFile.renameTo(newDbFile);
         }
         
         return false;
     }
+
+    /**
+     * 关闭并移出缓存中指定项目的数据库Helper
+     */
+    private void closeDbHelper(String projectName) {
+        dbHelperCache.remove(projectName);
+    }
+
+    /**
+     * 删除数据库的 journal、WAL 和共享内存文件
+     */
+    private static void deleteSidecarFiles(File dbFile) {
+        for (String suffix : new String[]{"-journal", "-wal", "-shm"}) {
+            File file = new File(dbFile.getPath() + suffix);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
     
     /**
      * 清理所有数据库连接缓存
      */
     public void closeAll() {
-        for (NoteDbHelper helper : dbHelperCache.values()) {
-            if (helper != null) {
-                helper.close();
-            }
-        }
         dbHelperCache.clear();
     }
     
@@ -596,13 +698,7 @@ public class ProjectContextManager {
             // 1. 如果被移除的是当前项目，先切换到默认项目
             if (projectName.equals(currentProjectName)) {
                 // 关闭当前数据库连接
-                if (dbHelperCache.containsKey(projectName)) {
-                    NoteDbHelper helper = dbHelperCache.get(projectName);
-                    if (helper != null) {
-                        helper.close();
-                    }
-                    dbHelperCache.remove(projectName);
-                }
+                closeDbHelper(projectName);
                 
                 // 切换到默认项目
                 currentProjectName = DEFAULT_PROJECT;
@@ -610,13 +706,7 @@ public class ProjectContextManager {
             }
             
             // 2. 从缓存中移除并确保连接关闭
-            if (dbHelperCache.containsKey(projectName)) {
-                NoteDbHelper helper = dbHelperCache.get(projectName);
-                if (helper != null) {
-                    helper.close();
-                }
-                dbHelperCache.remove(projectName);
-            }
+            closeDbHelper(projectName);
             
             // 3. 从项目列表中移除
             projects.remove(projectName);
@@ -675,10 +765,10 @@ public class ProjectContextManager {
         // 准备删除的数据库文件
         String dbName = getDatabaseName(projectName);
         File dbFile = appContext.getDatabasePath(dbName);
-        File dbJournalFile = new File(dbFile.getPath() + "-journal");
         
         try {
-            // 1. 从回收站列表中移除
+            // 1. 关闭连接（WAL 模式下关闭时会把日志写回数据库文件），再从回收站列表中移除
+            closeDbHelper(projectName);
             recycledProjects.remove(projectName);
             saveRecycledProjects(recycledProjects);
             
@@ -691,10 +781,8 @@ public class ProjectContextManager {
                 success = dbFile.delete();
             }
             
-            // 删除相关的journal文件
-            if (dbJournalFile.exists()) {
-                dbJournalFile.delete();
-            }
+            // 删除相关的journal/WAL文件
+            deleteSidecarFiles(dbFile);
             
             return success;
         } catch (Exception e) {
@@ -707,8 +795,7 @@ public class ProjectContextManager {
      * 获取回收站中的项目列表
      */
     public List<String> getRecycledProjects() {
-        Set<String> projectSet = preferences.getStringSet(KEY_RECYCLED_PROJECTS, new HashSet<>());
-        return new ArrayList<>(projectSet);
+        return new ArrayList<>(snapshot().recycled);
     }
     
     /**
@@ -719,6 +806,7 @@ public class ProjectContextManager {
         Set<String> newSet = new HashSet<>(projectSet);
         newSet.add(projectName);
         preferences.edit().putStringSet(KEY_RECYCLED_PROJECTS, newSet).apply();
+        invalidateSnapshot();
     }
     
     /**
@@ -727,6 +815,7 @@ public class ProjectContextManager {
     private void saveRecycledProjects(List<String> projectList) {
         Set<String> projectSet = new HashSet<>(projectList);
         preferences.edit().putStringSet(KEY_RECYCLED_PROJECTS, projectSet).apply();
+        invalidateSnapshot();
     }
     
     /**
@@ -753,13 +842,13 @@ public class ProjectContextManager {
             return false;
         }
         
-        List<String> projects = getProjectList();
-        if (!projects.contains(projectName)) {
+        if (!hasProject(projectName)) {
             return false;
         }
         
         // 保存默认项目设置
         preferences.edit().putString(KEY_DEFAULT_PROJECT, projectName).apply();
+        invalidateSnapshot();
         
         return true;
     }
@@ -768,7 +857,7 @@ public class ProjectContextManager {
      * 获取默认项目
      */
     public String getDefaultProject() {
-        return preferences.getString(KEY_DEFAULT_PROJECT, DEFAULT_PROJECT);
+        return snapshot().defaultProject;
     }
 
     /**
@@ -1,7 +1,6 @@
 package person.notfresh.noteplus.manager;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -27,7 +26,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.function.BiConsumer;
 
+import person.notfresh.noteplus.db.DbHelperCache;
+import person.notfresh.noteplus.db.NoteBulkLoader;
 import person.notfresh.noteplus.db.NoteDbHelper;
 import person.notfresh.noteplus.db.ProjectContextManager;
 
@@ -542,6 +544,14 @@ public class ImportExportManager {
      * 从JSON导入数据（包含评论）
      */
     public ImportResult readJsonData(Uri uri) throws Exception {
+        return readJsonData(uri, null);
+    }
+
+    /**
+     * 从JSON导入数据（包含评论），通过 {@link NoteBulkLoader} 分批写入
+     * @param progressCallback 每提交一批回调一次 (已导入笔记数, 笔记总数)，可为 null
+     */
+    public ImportResult readJsonData(Uri uri, BiConsumer<Integer, Integer> progressCallback) throws Exception {
         ContentResolver resolver = context.getContentResolver();
         InputStream inputStream = resolver.openInputStream(uri);
         if (inputStream == null) {
@@ -565,7 +575,7 @@ public class ImportExportManager {
         android.util.Log.d("NotePlusImport", "[readJsonData] Detected exportType: " + exportType);
 
         if ("all_projects".equals(exportType)) {
-            return importAllProjects(rootObject);
+            return importAllProjects(rootObject, progressCallback);
         }
 
         // 单项目导入逻辑
@@ -574,8 +584,8 @@ public class ImportExportManager {
         int importedCount = 0;
         int skippedCount = 0;
         
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
+        NoteBulkLoader loader = new NoteBulkLoader(dbHelper);
+        loader.setProgressCallback(progressCallback, notesArray.length());
         
         try {
             for (int i = 0; i < notesArray.length(); i++) {
@@ -587,29 +597,22 @@ public class ImportExportManager {
                     String timestampStr = noteObject.getString("timestamp");
                     long timestamp = sdf.parse(timestampStr).getTime();
                     
-                    // 插入笔记
-                    ContentValues noteValues = new ContentValues();
-                    noteValues.put(NoteDbHelper.COLUMN_CONTENT, content);
-                    noteValues.put(NoteDbHelper.COLUMN_TIMESTAMP, timestamp);
-                    
                     // 处理花费信息
+                    double cost = 0;
                     if (noteObject.has("cost")) {
-                        double cost = noteObject.getDouble("cost");
-                        noteValues.put(NoteDbHelper.COLUMN_COST, cost);
+                        cost = noteObject.getDouble("cost");
                     }
                     
                     // 处理归档信息
                     boolean archived = noteObject.optBoolean("archived", false);
-                    noteValues.put(NoteDbHelper.COLUMN_IS_ARCHIVED, archived ? 1 : 0);
+                    long archivedAt = 0;
                     if (archived && noteObject.has("archivedAt")) {
                         String archivedAtStr = noteObject.getString("archivedAt");
-                        long archivedAt = sdf.parse(archivedAtStr).getTime();
-                        noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, archivedAt);
-                    } else {
-                        noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, 0);
+                        archivedAt = sdf.parse(archivedAtStr).getTime();
                     }
 
-                    long newNoteId = db.insert(NoteDbHelper.TABLE_NOTES, null, noteValues);
+                    // 插入笔记
+                    long newNoteId = loader.insertNote(content, timestamp, cost, archived ? 1 : 0, archivedAt);
                     
                     // 处理时间范围
                     if (noteObject.has("timeRange")) {
@@ -619,7 +622,7 @@ public class ImportExportManager {
                         
                         long startTime = sdf.parse(startTimeStr).getTime();
                         long endTime = sdf.parse(endTimeStr).getTime();
-                        dbHelper.saveTimeRange(newNoteId, startTime, endTime);
+                        loader.saveTimeRange(newNoteId, startTime, endTime);
                     }
                     
                     // 处理标签
@@ -631,13 +634,13 @@ public class ImportExportManager {
                             String tagColor = tagObject.getString("color");
                             
                             // 检查标签是否存在
-                            long tagId = dbHelper.getTagIdByName(tagName);
+                            long tagId = loader.getTagIdByName(tagName);
                             if (tagId == -1) {
                                 // 创建新标签
-                                tagId = dbHelper.addTag(tagName, tagColor);
+                                tagId = loader.addTag(tagName, tagColor);
                             }
                             if (tagId != -1) {
-                                dbHelper.linkNoteToTag(newNoteId, tagId);
+                                loader.linkNoteToTag(newNoteId, tagId);
                             }
                         }
                     }
@@ -677,16 +680,8 @@ public class ImportExportManager {
                             }
                             
                             // 插入评论
-                            ContentValues commentValues = new ContentValues();
-                            commentValues.put(NoteDbHelper.COLUMN_COMMENT_NOTE_ID, newNoteId);
-                            if (newParentCommentId != null) {
-                                commentValues.put(NoteDbHelper.COLUMN_PARENT_COMMENT_ID, newParentCommentId);
-                            }
-                            commentValues.put(NoteDbHelper.COLUMN_COMMENT_CONTENT, commentContent);
-                            commentValues.put(NoteDbHelper.COLUMN_COMMENT_TIMESTAMP, commentTimestamp);
-                            commentValues.put(NoteDbHelper.COLUMN_COMMENT_COST, commentCost);
-                            
-                            long newCommentId = db.insert(NoteDbHelper.TABLE_NOTE_COMMENTS, null, commentValues);
+                            long newCommentId = loader.insertComment(newNoteId, newParentCommentId,
+                                    commentContent, commentTimestamp, commentCost);
                             if (newCommentId != -1) {
                                 commentIdMap.put(oldCommentId, newCommentId);
                             }
@@ -701,10 +696,10 @@ public class ImportExportManager {
                 }
             }
             
-            db.setTransactionSuccessful();
+            loader.finish();
             
         } finally {
-            db.endTransaction();
+            loader.close();
         }
         
         return new ImportResult(importedCount, skippedCount);
@@ -712,13 +707,22 @@ public class ImportExportManager {
 
     /**
      * 全量导入所有项目
+     * 每个项目写入自己的数据库，进度按所有项目的笔记总数累计
      */
-    private ImportResult importAllProjects(JSONObject rootObject) throws Exception {
+    private ImportResult importAllProjects(JSONObject rootObject, BiConsumer<Integer, Integer> progressCallback) throws Exception {
         android.util.Log.i("NotePlusImport", "[importAllProjects] Starting all projects import");
 
         ImportResult result = new ImportResult(0, 0);
         JSONObject projectsObject = rootObject.getJSONObject("projects");
 
+        int totalNotes = 0;
+        Iterator<String> countKeys = projectsObject.keys();
+        while (countKeys.hasNext()) {
+            JSONArray projectNotes = projectsObject.getJSONObject(countKeys.next()).optJSONArray("notes");
+            totalNotes += projectNotes != null ? projectNotes.length() : 0;
+        }
+        int[] committedBefore = new int[1];
+
         Iterator<String> projectKeys = projectsObject.keys();
         while (projectKeys.hasNext()) {
             String projectName = projectKeys.next();
@@ -737,8 +741,19 @@ public class ImportExportManager {
             int projectImported = 0;
             int projectSkipped = 0;
 
-            SQLiteDatabase db = dbHelper.getWritableDatabase();
-            db.beginTransaction();
+            // 写入该项目的数据库，导入期间持有引用，不会因淘汰而关闭
+            DbHelperCache.Lease lease = projectManager.acquireDbHelper(projectName);
+            if (lease == null) {
+                android.util.Log.w("NotePlusImport", "[importAllProjects] Project not available, skipped: " + projectName);
+                result = result.merge(new ImportResult(0, notesArray.length()));
+                continue;
+            }
+            NoteBulkLoader loader = new NoteBulkLoader(lease.getHelper());
+            if (progressCallback != null) {
+                final int grandTotal = totalNotes;
+                loader.setProgressCallback((done, total) ->
+                        progressCallback.accept(committedBefore[0] + done, grandTotal), totalNotes);
+            }
 
             try {
                 for (int i = 0; i < notesArray.length(); i++) {
@@ -750,33 +765,26 @@ public class ImportExportManager {
                         String timestampStr = noteObject.getString("timestamp");
                         long timestamp = sdf.parse(timestampStr).getTime();
 
-                        ContentValues noteValues = new ContentValues();
-                        noteValues.put(NoteDbHelper.COLUMN_CONTENT, content);
-                        noteValues.put(NoteDbHelper.COLUMN_TIMESTAMP, timestamp);
-
+                        double cost = 0;
                         if (noteObject.has("cost")) {
-                            double cost = noteObject.getDouble("cost");
-                            noteValues.put(NoteDbHelper.COLUMN_COST, cost);
+                            cost = noteObject.getDouble("cost");
                         }
 
                         boolean archived = noteObject.optBoolean("archived", false);
-                        noteValues.put(NoteDbHelper.COLUMN_IS_ARCHIVED, archived ? 1 : 0);
+                        long archivedAt = 0;
                         if (archived && noteObject.has("archivedAt")) {
                             String archivedAtStr = noteObject.getString("archivedAt");
-                            long archivedAt = sdf.parse(archivedAtStr).getTime();
-                            noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, archivedAt);
-                        } else {
-                            noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, 0);
+                            archivedAt = sdf.parse(archivedAtStr).getTime();
                         }
 
-                        long newNoteId = db.insert(NoteDbHelper.TABLE_NOTES, null, noteValues);
+                        long newNoteId = loader.insertNote(content, timestamp, cost, archived ? 1 : 0, archivedAt);
 
                         // 处理时间范围
                         if (noteObject.has("timeRange")) {
                             JSONObject timeRange = noteObject.getJSONObject("timeRange");
                             long startTime = sdf.parse(timeRange.getString("start")).getTime();
                             long endTime = sdf.parse(timeRange.getString("end")).getTime();
-                            dbHelper.saveTimeRange(newNoteId, startTime, endTime);
+                            loader.saveTimeRange(newNoteId, startTime, endTime);
                         }
 
                         // 处理标签
@@ -787,12 +795,12 @@ public class ImportExportManager {
                                 String tagName = tagObject.getString("name");
                                 String tagColor = tagObject.getString("color");
                                 // 检查标签是否存在
-                                long tagId = dbHelper.getTagIdByName(tagName);
+                                long tagId = loader.getTagIdByName(tagName);
                                 if (tagId == -1) {
-                                    tagId = dbHelper.addTag(tagName, tagColor);
+                                    tagId = loader.addTag(tagName, tagColor);
                                 }
                                 if (tagId != -1) {
-                                    dbHelper.linkNoteToTag(newNoteId, tagId);
+                                    loader.linkNoteToTag(newNoteId, tagId);
                                 }
                             }
                         }
@@ -808,19 +816,13 @@ public class ImportExportManager {
                                 long commentTimestamp = sdf.parse(commentObject.getString("timestamp")).getTime();
                                 double commentCost = commentObject.optDouble("cost", 0);
 
-                                ContentValues commentValues = new ContentValues();
-                                commentValues.put(NoteDbHelper.COLUMN_NOTE_ID, newNoteId);
+                                Long newParentCommentId = null;
                                 if (commentObject.has("parentCommentId") && !commentObject.isNull("parentCommentId")) {
-                                    Long newParentCommentId = commentIdMap.get(commentObject.getLong("parentCommentId"));
-                                    if (newParentCommentId != null) {
-                                        commentValues.put(NoteDbHelper.COLUMN_PARENT_COMMENT_ID, newParentCommentId);
-                                    }
+                                    newParentCommentId = commentIdMap.get(commentObject.getLong("parentCommentId"));
                                 }
-                                commentValues.put(NoteDbHelper.COLUMN_COMMENT_CONTENT, commentContent);
-                                commentValues.put(NoteDbHelper.COLUMN_COMMENT_TIMESTAMP, commentTimestamp);
-                                commentValues.put(NoteDbHelper.COLUMN_COMMENT_COST, commentCost);
 
-                                long newCommentId = db.insert(NoteDbHelper.TABLE_NOTE_COMMENTS, null, commentValues);
+                                long newCommentId = loader.insertComment(newNoteId, newParentCommentId,
+                                        commentContent, commentTimestamp, commentCost);
                                 if (newCommentId != -1) {
                                     commentIdMap.put(oldCommentId, newCommentId);
                                 }
@@ -835,14 +837,16 @@ public class ImportExportManager {
                     }
                 }
 
-                db.setTransactionSuccessful();
+                loader.finish();
+                committedBefore[0] += loader.getCommittedNotes();
 
             } finally {
-                db.endTransaction();
+                loader.close();
+                lease.close();
             }
 
             android.util.Log.d("NotePlusImport", "[importAllProjects] Project " + projectName + " imported: " + projectImported + ", skipped: " + projectSkipped);
-            result.merge(new ImportResult(projectImported, projectSkipped));
+            result = result.merge(new ImportResult(projectImported, projectSkipped));
         }
 
         android.util.Log.i("NotePlusImport", "[importAllProjects] All projects imported: " + result.importedCount + ", skipped: " + result.skippedCount);
@@ -853,6 +857,14 @@ public class ImportExportManager {
      * 从CSV导入数据（兼容旧格式，支持评论）
      */
     public ImportResult readCsvData(Uri uri) throws Exception {
+        return readCsvData(uri, null);
+    }
+
+    /**
+     * 从CSV导入数据（兼容旧格式，支持评论），通过 {@link NoteBulkLoader} 分批写入
+     * @param progressCallback 每提交一批回调一次 (已导入笔记数, -1)，CSV 逐行读取，总数未知；可为 null
+     */
+    public ImportResult readCsvData(Uri uri, BiConsumer<Integer, Integer> progressCallback) throws Exception {
         ContentResolver resolver = context.getContentResolver();
         InputStream inputStream = resolver.openInputStream(uri);
         if (inputStream == null) {
@@ -874,8 +886,8 @@ public class ImportExportManager {
         int importedCount = 0;
         int skippedCount = 0;
         
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
+        NoteBulkLoader loader = new NoteBulkLoader(dbHelper);
+        loader.setProgressCallback(progressCallback, -1);
         
         try {
             if (isNewFormat) {
@@ -900,56 +912,50 @@ public class ImportExportManager {
                             String timestampStr = fields[5];
                             long timestamp = sdf.parse(timestampStr).getTime();
                             
-                            ContentValues noteValues = new ContentValues();
-                            noteValues.put(NoteDbHelper.COLUMN_CONTENT, content);
-                            noteValues.put(NoteDbHelper.COLUMN_TIMESTAMP, timestamp);
-                            
+                            double cost = 0;
                             if (fields.length > 6 && !fields[6].isEmpty()) {
                                 try {
-                                    double cost = Double.parseDouble(fields[6]);
-                                    noteValues.put(NoteDbHelper.COLUMN_COST, cost);
+                                    cost = Double.parseDouble(fields[6]);
                                 } catch (NumberFormatException e) {
-                                    noteValues.put(NoteDbHelper.COLUMN_COST, 0.0);
+                                    cost = 0.0;
                                 }
                             }
 
                             // 归档字段（新格式扩展列）
+                            int isArchived = 0;
+                            long archivedAt = 0;
                             if (fields.length > 10 && !fields[10].isEmpty()) {
                                 try {
-                                    int isArchived = Integer.parseInt(fields[10]);
-                                    noteValues.put(NoteDbHelper.COLUMN_IS_ARCHIVED, isArchived);
+                                    isArchived = Integer.parseInt(fields[10]);
                                 } catch (NumberFormatException e) {
-                                    noteValues.put(NoteDbHelper.COLUMN_IS_ARCHIVED, 0);
+                                    isArchived = 0;
                                 }
                             }
                             if (fields.length > 11 && !fields[11].isEmpty()) {
                                 try {
-                                    long archivedAt = sdf.parse(fields[11]).getTime();
-                                    noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, archivedAt);
+                                    archivedAt = sdf.parse(fields[11]).getTime();
                                 } catch (Exception e) {
-                                    noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, 0);
+                                    archivedAt = 0;
                                 }
                             }
                             
                             // 归档字段（旧格式扩展列）
                             if (fields.length > 7 && !fields[7].isEmpty()) {
                                 try {
-                                    int isArchived = Integer.parseInt(fields[7]);
-                                    noteValues.put(NoteDbHelper.COLUMN_IS_ARCHIVED, isArchived);
+                                    isArchived = Integer.parseInt(fields[7]);
                                 } catch (NumberFormatException e) {
-                                    noteValues.put(NoteDbHelper.COLUMN_IS_ARCHIVED, 0);
+                                    isArchived = 0;
                                 }
                             }
                             if (fields.length > 8 && !fields[8].isEmpty()) {
                                 try {
-                                    long archivedAt = sdf.parse(fields[8]).getTime();
-                                    noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, archivedAt);
+                                    archivedAt = sdf.parse(fields[8]).getTime();
                                 } catch (Exception e) {
-                                    noteValues.put(NoteDbHelper.COLUMN_ARCHIVED_AT, 0);
+                                    archivedAt = 0;
                                 }
                             }
 
-                            long newNoteId = db.insert(NoteDbHelper.TABLE_NOTES, null, noteValues);
+                            long newNoteId = loader.insertNote(content, timestamp, cost, isArchived, archivedAt);
                             noteIdMap.put(oldNoteId, newNoteId);
                             
                             // 处理时间范围
@@ -957,7 +963,7 @@ public class ImportExportManager {
                                 try {
                                     long startTime = sdf.parse(fields[7]).getTime();
                                     long endTime = sdf.parse(fields[8]).getTime();
-                                    dbHelper.saveTimeRange(newNoteId, startTime, endTime);
+                                    loader.saveTimeRange(newNoteId, startTime, endTime);
                                 } catch (Exception e) {
                                     // 时间范围解析失败，跳过
                                 }
@@ -969,14 +975,14 @@ public class ImportExportManager {
                                 String[] tagNames = tagsStr.split(";");
                                 for (String tagName : tagNames) {
                                     if (!tagName.trim().isEmpty()) {
-                                        long tagId = dbHelper.getTagIdByName(tagName.trim());
+                                        long tagId = loader.getTagIdByName(tagName.trim());
                                         if (tagId == -1) {
                                             String[] colors = {"#FF5722", "#9C27B0", "#2196F3", "#4CAF50", "#FFC107", "#607D8B"};
                                             String randomColor = colors[new Random().nextInt(colors.length)];
-                                            tagId = dbHelper.addTag(tagName.trim(), randomColor);
+                                            tagId = loader.addTag(tagName.trim(), randomColor);
                                         }
                                         if (tagId != -1) {
-                                            dbHelper.linkNoteToTag(newNoteId, tagId);
+                                            loader.linkNoteToTag(newNoteId, tagId);
                                         }
                                     }
                                 }
@@ -1037,16 +1043,8 @@ public class ImportExportManager {
                         }
                         
                         // 插入评论
-                        ContentValues commentValues = new ContentValues();
-                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_NOTE_ID, newNoteId);
-                        if (newParentCommentId != null) {
-                            commentValues.put(NoteDbHelper.COLUMN_PARENT_COMMENT_ID, newParentCommentId);
-                        }
-                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_CONTENT, commentContent);
-                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_TIMESTAMP, commentTimestamp);
-                        commentValues.put(NoteDbHelper.COLUMN_COMMENT_COST, commentCost);
-                        
-                        long newCommentId = db.insert(NoteDbHelper.TABLE_NOTE_COMMENTS, null, commentValues);
+                        long newCommentId = loader.insertComment(newNoteId, newParentCommentId,
+                                commentContent, commentTimestamp, commentCost);
                         if (newCommentId != -1) {
                             commentIdMap.put(oldCommentId, newCommentId);
                         }
@@ -1069,27 +1067,23 @@ public class ImportExportManager {
                             String timestampStr = fields[2];
                             long timestamp = sdf.parse(timestampStr).getTime();
                             
-                            ContentValues noteValues = new ContentValues();
-                            noteValues.put(NoteDbHelper.COLUMN_CONTENT, content);
-                            noteValues.put(NoteDbHelper.COLUMN_TIMESTAMP, timestamp);
-                            
+                            double cost = 0;
                             if (fields.length > 3 && !fields[3].isEmpty()) {
                                 try {
-                                    double cost = Double.parseDouble(fields[3]);
-                                    noteValues.put(NoteDbHelper.COLUMN_COST, cost);
+                                    cost = Double.parseDouble(fields[3]);
                                 } catch (NumberFormatException e) {
-                                    noteValues.put(NoteDbHelper.COLUMN_COST, 0.0);
+                                    cost = 0.0;
                                 }
                             }
                             
-                            long newNoteId = db.insert(NoteDbHelper.TABLE_NOTES, null, noteValues);
+                            long newNoteId = loader.insertNote(content, timestamp, cost, 0, 0);
                             
                             // 处理时间范围
                             if (fields.length > 6 && !fields[4].isEmpty() && !fields[5].isEmpty()) {
                                 try {
                                     long startTime = sdf.parse(fields[4]).getTime();
                                     long endTime = sdf.parse(fields[5]).getTime();
-                                    dbHelper.saveTimeRange(newNoteId, startTime, endTime);
+                                    loader.saveTimeRange(newNoteId, startTime, endTime);
                                 } catch (Exception e) {
                                     // 时间范围解析失败，跳过
                                 }
@@ -1101,14 +1095,14 @@ public class ImportExportManager {
                                 String[] tagNames = tagsStr.split(";");
                                 for (String tagName : tagNames) {
                                     if (!tagName.trim().isEmpty()) {
-                                        long tagId = dbHelper.getTagIdByName(tagName.trim());
+                                        long tagId = loader.getTagIdByName(tagName.trim());
                                         if (tagId == -1) {
                                             String[] colors = {"#FF5722", "#9C27B0", "#2196F3", "#4CAF50", "#FFC107", "#607D8B"};
                                             String randomColor = colors[new Random().nextInt(colors.length)];
-                                            tagId = dbHelper.addTag(tagName.trim(), randomColor);
+                                            tagId = loader.addTag(tagName.trim(), randomColor);
                                         }
                                         if (tagId != -1) {
-                                            dbHelper.linkNoteToTag(newNoteId, tagId);
+                                            loader.linkNoteToTag(newNoteId, tagId);
                                         }
                                     }
                                 }
@@ -1123,10 +1117,10 @@ public class ImportExportManager {
                 }
             }
             
-            db.setTransactionSuccessful();
+            loader.finish();
             
         } finally {
-            db.endTransaction();
+            loader.close();
             reader.close();
             inputStream.close();
         }
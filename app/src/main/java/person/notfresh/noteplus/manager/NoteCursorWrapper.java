@@ -4,106 +4,249 @@ import android.database.Cursor;
 import person.notfresh.noteplus.core.model.Note;
 import person.notfresh.noteplus.db.NoteDbHelper;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Cursor 包装器，实现懒加载和缓存
- * 在 getView() 时才从 Cursor 创建 Note 对象，避免一次性加载所有数据
+ * 笔记分页包装器，实现按页懒加载和有界缓存
+ * 按 (is_pinned, timestamp, _id) 键集分页查询，只保留最近访问的若干页，
+ * 打开大项目时只需查询总数和首屏所在页，内存占用不随笔记数量增长
+ * 主线程只通过 {@link #peekNote} 读取已加载的页；页查询由后台线程通过 {@link #getNote} 完成，
+ * 查询数据库期间不持有锁，主线程读取缓存不会等待数据库
  */
 public class NoteCursorWrapper {
-    private Cursor cursor;
+    // 每页行数
+    public static final int PAGE_SIZE = 100;
+    // 最多缓存的页数
+    private static final int MAX_CACHED_PAGES = 5;
+
+    private final NoteDbHelper dbHelper;
+    private final boolean timeDescOrder;
     private final String projectName;
-    private int idIndex, contentIndex, timestampIndex, costIndex, pinnedIndex;
-    
-    // 缓存已创建的 Note 对象（按 position 缓存）
-    private final Map<Integer, Note> noteCache = new HashMap<>();
-    
-    public NoteCursorWrapper(Cursor cursor, String projectName) {
+    private int count;
+    private boolean closed;
+    // 加载到不满的页时重新统计了总数，等待适配器刷新
+    private boolean countChanged;
+    // 每次重新加载或清空缓存时递增，查询返回时据此丢弃过期的结果
+    private int generation;
+
+    // 页缓存（按访问顺序淘汰）
+    private final Map<Integer, List<Note>> pageCache = new LinkedHashMap<Integer, List<Note>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Note>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    // 每页最后一条笔记的排序键，作为下一页的键集锚点（不含内容，占用很小）
+    private final Map<Integer, Note> pageAnchors = new HashMap<>();
+
+    public NoteCursorWrapper(NoteDbHelper dbHelper, boolean timeDescOrder, String projectName) {
+        this.dbHelper = dbHelper;
+        this.timeDescOrder = timeDescOrder;
         this.projectName = projectName;
-        setCursor(cursor);
+        reload();
+    }
+
+    /**
+     * 重新统计总数并清空缓存（用于数据变化后刷新）
+     */
+    public void reload() {
+        int newCount = dbHelper.countNotes();
+        synchronized (this) {
+            pageCache.clear();
+            pageAnchors.clear();
+            generation++;
+            count = newCount;
+            countChanged = false;
+            closed = false;
+        }
     }
-    
+
+    /**
+     * 总数是否在上次调用之后重新统计过（读取后清除标记）
+     */
+    public synchronized boolean consumeCountChanged() {
+        boolean changed = countChanged;
+        countChanged = false;
+        return changed;
+    }
+
     /**
-     * 更新 Cursor（用于数据变化后刷新）
+     * 只从已加载的页中获取笔记，不访问数据库（主线程使用）
+     * @param position 位置索引
+     * @return Note 对象，所在页未加载、越界或已关闭时返回 null
      */
-    public void setCursor(Cursor newCursor) {
-        // 关闭旧的 Cursor
-        if (this.cursor != null && !this.cursor.isClosed()) {
-            this.cursor.close();
+    public synchronized Note peekNote(int position) {
+        if (closed || position < 0 || position >= count) {
+            return null;
         }
-        this.cursor = newCursor;
-        // 清空缓存
-        noteCache.clear();
-        // 重新缓存列索引
-        if (cursor != null) {
-            idIndex = cursor.getColumnIndexOrThrow("_id");
-            contentIndex = cursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_CONTENT);
-            timestampIndex = cursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_TIMESTAMP);
-            costIndex = cursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_COST);
-            pinnedIndex = cursor.getColumnIndex(NoteDbHelper.COLUMN_IS_PINNED);
+        List<Note> page = pageCache.get(position / PAGE_SIZE);
+        if (page == null) {
+            return null;
         }
+        int index = position % PAGE_SIZE;
+        return index < page.size() ? page.get(index) : null;
     }
-    
+
     /**
-     * 获取指定位置的 Note 对象（懒加载 + 缓存）
+     * 所在页是否已加载
+     */
+    public synchronized boolean isPageLoaded(int position) {
+        return pageCache.containsKey(position / PAGE_SIZE);
+    }
+
+    /**
+     * 获取指定位置的 Note 对象，所在页未加载时查询数据库（后台线程使用）
      * @param position 位置索引
-     * @return Note 对象
+     * @return Note 对象，越界或已关闭时返回 null
      */
     public Note getNote(int position) {
-        // 先检查缓存
-        if (noteCache.containsKey(position)) {
-            return noteCache.get(position);
+        synchronized (this) {
+            if (closed || position < 0 || position >= count) {
+                return null;
+            }
         }
-        
-        // 从 Cursor 读取数据（按需加载）
-        cursor.moveToPosition(position);
-        Note note = new Note(
-            cursor.getLong(idIndex),
-            cursor.getString(contentIndex),
-            cursor.getLong(timestampIndex),
-            cursor.getDouble(costIndex),
-            pinnedIndex >= 0 && cursor.getInt(pinnedIndex) == 1,
-            projectName
-        );
-        
-        // 缓存 Note 对象（避免重复创建）
-        noteCache.put(position, note);
-        return note;
+        List<Note> page = loadPage(position / PAGE_SIZE);
+        int index = position % PAGE_SIZE;
+        return index < page.size() ? page.get(index) : null;
     }
 
     /**
-     * 获取指定位置的 Note ID（不创建Note对象）
+     * 获取指定位置的 Note ID（后台线程使用）
      * @param position 位置索引
-     * @return Note ID
+     * @return Note ID，不存在时返回 -1
      */
     public long getNoteIdAtPosition(int position) {
-        cursor.moveToPosition(position);
-        return cursor.getLong(idIndex);
+        Note note = getNote(position);
+        return note != null ? note.getId() : -1;
+    }
+
+    /**
+     * 查找笔记所在位置：先查已缓存的页，未命中时由数据库计算
+     * @param noteId 笔记ID
+     * @return 位置索引，不在列表中时返回 -1
+     */
+    public int findPosition(long noteId) {
+        synchronized (this) {
+            if (closed) {
+                return -1;
+            }
+            for (Map.Entry<Integer, List<Note>> entry : pageCache.entrySet()) {
+                List<Note> page = entry.getValue();
+                for (int i = 0; i < page.size(); i++) {
+                    if (page.get(i).getId() == noteId) {
+                        return entry.getKey() * PAGE_SIZE + i;
+                    }
+                }
+            }
+        }
+        int position = dbHelper.getNotePosition(noteId, timeDescOrder);
+        synchronized (this) {
+            return position < count ? position : -1;
+        }
     }
-    
+
     /**
      * 获取总数
      */
-    public int getCount() {
-        return cursor.getCount();
+    public synchronized int getCount() {
+        return closed ? 0 : count;
     }
-    
+
     /**
      * 清空缓存
      */
-    public void clearCache() {
-        noteCache.clear();
+    public synchronized void clearCache() {
+        pageCache.clear();
+        pageAnchors.clear();
+        generation++;
     }
-    
+
     /**
-     * 关闭 Cursor（需要时调用）
+     * 关闭包装器，释放缓存
      */
-    public void close() {
-        if (cursor != null && !cursor.isClosed()) {
+    public synchronized void close() {
+        closed = true;
+        pageCache.clear();
+        pageAnchors.clear();
+        generation++;
+    }
+
+    private List<Note> loadPage(int pageIndex) {
+        // 从最近的已知锚点出发：相邻页直接键集查询，跳页时在锚点后加偏移
+        Note anchor = null;
+        int offset = pageIndex * PAGE_SIZE;
+        int expectedCount;
+        int loadGeneration;
+        synchronized (this) {
+            List<Note> cached = pageCache.get(pageIndex);
+            if (cached != null) {
+                return cached;
+            }
+            if (closed) {
+                return Collections.emptyList();
+            }
+            for (int k = pageIndex - 1; k >= 0; k--) {
+                Note candidate = pageAnchors.get(k);
+                if (candidate != null) {
+                    anchor = candidate;
+                    offset = (pageIndex - 1 - k) * PAGE_SIZE;
+                    break;
+                }
+            }
+            expectedCount = count;
+            loadGeneration = generation;
+        }
+
+        // 查询期间不持有锁
+        List<Note> page = new ArrayList<>(PAGE_SIZE);
+        Cursor cursor = dbHelper.loadNotesPage(timeDescOrder, anchor, offset, PAGE_SIZE);
+        try {
+            int idIndex = cursor.getColumnIndexOrThrow("_id");
+            int contentIndex = cursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_CONTENT);
+            int timestampIndex = cursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_TIMESTAMP);
+            int costIndex = cursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_COST);
+            int pinnedIndex = cursor.getColumnIndex(NoteDbHelper.COLUMN_IS_PINNED);
+            while (cursor.moveToNext()) {
+                page.add(new Note(
+                    cursor.getLong(idIndex),
+                    cursor.getString(contentIndex),
+                    cursor.getLong(timestampIndex),
+                    cursor.getDouble(costIndex),
+                    pinnedIndex >= 0 && cursor.getInt(pinnedIndex) == 1,
+                    projectName
+                ));
+            }
+        } finally {
             cursor.close();
         }
-        noteCache.clear();
+
+        // 总数和各页在不同时间查询，期间后台删除、归档或移走了笔记时页会提前结束，重新统计总数
+        int newCount = -1;
+        if (page.size() < PAGE_SIZE && pageIndex * PAGE_SIZE + page.size() < expectedCount) {
+            newCount = dbHelper.countNotes();
+        }
+
+        synchronized (this) {
+            if (closed || loadGeneration != generation) {
+                // 查询期间列表已重新加载，结果不再缓存
+                return page;
+            }
+            if (newCount >= 0 && newCount != count) {
+                count = newCount;
+                countChanged = true;
+            }
+            if (!page.isEmpty()) {
+                Note last = page.get(page.size() - 1);
+                pageAnchors.put(pageIndex, new Note(last.getId(), null, last.getTimestamp(), 0, last.isPinned()));
+            }
+            pageCache.put(pageIndex, page);
+        }
+        return page;
     }
 }
-
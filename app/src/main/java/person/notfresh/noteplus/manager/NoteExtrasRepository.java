@@ -0,0 +1,266 @@
+package person.notfresh.noteplus.manager;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import person.notfresh.noteplus.core.model.AudioAttachment;
+import person.notfresh.noteplus.core.model.NoteExtras;
+import person.notfresh.noteplus.core.model.Tag;
+import person.notfresh.noteplus.core.model.TimeRange;
+import person.notfresh.noteplus.db.NoteDbHelper;
+
+/**
+ * 笔记附加信息仓库
+ * 按可见窗口批量加载时间区间、标签、图片、音频和追加数量（每张表一次 IN 查询），
+ * 结果按笔记ID放入 LRU 缓存，列表绑定时直接从缓存读取，避免每行 5+ 次查询
+ */
+public class NoteExtrasRepository {
+    private static final String TAG = "NoteExtrasRepository";
+
+    // 默认缓存条数（约几屏的列表项）
+    private static final int DEFAULT_CACHE_SIZE = 256;
+    // 单次 IN 查询的最大参数个数（SQLite 默认上限 999）
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final NoteDbHelper dbHelper;
+    private final int maxCacheSize;
+    private final LinkedHashMap<Long, NoteExtras> cache;
+
+    public NoteExtrasRepository(NoteDbHelper dbHelper) {
+        this(dbHelper, DEFAULT_CACHE_SIZE);
+    }
+
+    public NoteExtrasRepository(NoteDbHelper dbHelper, int maxCacheSize) {
+        this.dbHelper = dbHelper;
+        this.maxCacheSize = Math.max(1, maxCacheSize);
+        // accessOrder = true，按访问顺序淘汰最久未使用的条目
+        this.cache = new LinkedHashMap<Long, NoteExtras>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, NoteExtras> eldest) {
+                return size() > NoteExtrasRepository.this.maxCacheSize;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存中的附加信息
+     * @param noteId 笔记ID
+     * @return 附加信息，未缓存时返回 null
+     */
+    public synchronized NoteExtras getCached(long noteId) {
+        return cache.get(noteId);
+    }
+
+    /**
+     * 获取附加信息，未缓存时单独加载
+     * @param noteId 笔记ID
+     * @return 附加信息（不会为 null）
+     */
+    public NoteExtras get(long noteId) {
+        NoteExtras extras = getCached(noteId);
+        if (extras != null) {
+            return extras;
+        }
+        List<Long> ids = new ArrayList<>(1);
+        ids.add(noteId);
+        loadWindow(ids);
+        extras = getCached(noteId);
+        return extras != null ? extras : new NoteExtras(noteId);
+    }
+
+    /**
+     * 批量加载一个窗口内笔记的附加信息，已缓存的笔记会被跳过
+     * @param noteIds 窗口内的笔记ID
+     */
+    public void loadWindow(Collection<Long> noteIds) {
+        if (noteIds == null || noteIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> missing = new ArrayList<>();
+        synchronized (this) {
+            for (Long noteId : noteIds) {
+                if (noteId != null && !cache.containsKey(noteId) && !missing.contains(noteId)) {
+                    missing.add(noteId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        for (int start = 0; start < missing.size(); start += MAX_BATCH_SIZE) {
+            List<Long> batch = missing.subList(start, Math.min(start + MAX_BATCH_SIZE, missing.size()));
+            Map<Long, NoteExtras> loaded = queryBatch(batch);
+            synchronized (this) {
+                for (NoteExtras extras : loaded.values()) {
+                    cache.put(extras.getNoteId(), extras);
+                }
+            }
+        }
+    }
+
+    /**
+     * 使某条笔记的缓存失效（附加信息变更后调用）
+     */
+    public synchronized void invalidate(long noteId) {
+        cache.remove(noteId);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private Map<Long, NoteExtras> queryBatch(List<Long> noteIds) {
+        Map<Long, NoteExtras> result = new LinkedHashMap<>();
+        for (Long noteId : noteIds) {
+            result.put(noteId, new NoteExtras(noteId));
+        }
+
+        String placeholders = buildPlaceholders(noteIds.size());
+        String[] args = new String[noteIds.size()];
+        for (int i = 0; i < noteIds.size(); i++) {
+            args[i] = String.valueOf(noteIds.get(i));
+        }
+
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            loadTimeRanges(db, placeholders, args, result);
+            loadTags(db, placeholders, args, result);
+            loadImages(db, placeholders, args, result);
+            loadAudio(db, placeholders, args, result);
+            loadCommentCounts(db, placeholders, args, result);
+        } catch (Exception e) {
+            Log.e(TAG, "批量加载笔记附加信息失败", e);
+        }
+        return result;
+    }
+
+    private void loadTimeRanges(SQLiteDatabase db, String placeholders, String[] args,
+                                Map<Long, NoteExtras> result) {
+        Cursor cursor = db.query(
+                NoteDbHelper.TABLE_TIME_RANGES,
+                new String[]{NoteDbHelper.COLUMN_RANGE_ID, NoteDbHelper.COLUMN_NOTE_ID,
+                        NoteDbHelper.COLUMN_START_TIME, NoteDbHelper.COLUMN_END_TIME},
+                NoteDbHelper.COLUMN_NOTE_ID + " IN (" + placeholders + ")",
+                args, null, null,
+                NoteDbHelper.COLUMN_RANGE_ID + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                NoteExtras extras = result.get(cursor.getLong(1));
+                if (extras != null) {
+                    TimeRange range = new TimeRange(cursor.getLong(1), cursor.getLong(2), cursor.getLong(3));
+                    range.setId(cursor.getLong(0));
+                    extras.getTimeRanges().add(range);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void loadTags(SQLiteDatabase db, String placeholders, String[] args,
+                          Map<Long, NoteExtras> result) {
+        String query = "SELECT nt." + NoteDbHelper.COLUMN_RECORD_ID
+                + ", t." + NoteDbHelper.COLUMN_TAG_ID
+                + ", t." + NoteDbHelper.COLUMN_TAG_NAME
+                + ", t." + NoteDbHelper.COLUMN_TAG_COLOR
+                + " FROM " + NoteDbHelper.TABLE_TAGS + " t"
+                + " INNER JOIN " + NoteDbHelper.TABLE_NOTE_TAGS + " nt ON t." + NoteDbHelper.COLUMN_TAG_ID
+                + " = nt." + NoteDbHelper.COLUMN_TAG_ID
+                + " WHERE nt." + NoteDbHelper.COLUMN_RECORD_ID + " IN (" + placeholders + ")";
+        Cursor cursor = db.rawQuery(query, args);
+        try {
+            while (cursor.moveToNext()) {
+                NoteExtras extras = result.get(cursor.getLong(0));
+                if (extras != null) {
+                    extras.getTags().add(new Tag(cursor.getLong(1), cursor.getString(2), cursor.getString(3)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void loadImages(SQLiteDatabase db, String placeholders, String[] args,
+                            Map<Long, NoteExtras> result) {
+        Cursor cursor = db.query(
+                NoteDbHelper.TABLE_NOTE_IMAGES,
+                new String[]{NoteDbHelper.COLUMN_IMAGE_NOTE_ID, NoteDbHelper.COLUMN_IMAGE_PATH},
+                NoteDbHelper.COLUMN_IMAGE_NOTE_ID + " IN (" + placeholders + ")",
+                args, null, null,
+                NoteDbHelper.COLUMN_IMAGE_ID + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                NoteExtras extras = result.get(cursor.getLong(0));
+                if (extras != null) {
+                    extras.getImagePaths().add(cursor.getString(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void loadAudio(SQLiteDatabase db, String placeholders, String[] args,
+                           Map<Long, NoteExtras> result) {
+        Cursor cursor = db.query(
+                NoteDbHelper.TABLE_NOTE_AUDIO,
+                new String[]{NoteDbHelper.COLUMN_AUDIO_NOTE_ID, NoteDbHelper.COLUMN_AUDIO_ID,
+                        NoteDbHelper.COLUMN_AUDIO_PATH, NoteDbHelper.COLUMN_AUDIO_DURATION},
+                NoteDbHelper.COLUMN_AUDIO_NOTE_ID + " IN (" + placeholders + ")",
+                args, null, null,
+                NoteDbHelper.COLUMN_AUDIO_ID + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                NoteExtras extras = result.get(cursor.getLong(0));
+                if (extras != null) {
+                    extras.getAudioItems().add(new AudioAttachment(cursor.getLong(1), cursor.getString(2), cursor.getLong(3)));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void loadCommentCounts(SQLiteDatabase db, String placeholders, String[] args,
+                                   Map<Long, NoteExtras> result) {
+        Cursor cursor = db.query(
+                NoteDbHelper.TABLE_NOTE_COMMENTS,
+                new String[]{NoteDbHelper.COLUMN_COMMENT_NOTE_ID, "COUNT(*)"},
+                NoteDbHelper.COLUMN_COMMENT_NOTE_ID + " IN (" + placeholders + ")",
+                args,
+                NoteDbHelper.COLUMN_COMMENT_NOTE_ID, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                NoteExtras extras = result.get(cursor.getLong(0));
+                if (extras != null) {
+                    extras.setCommentCount(cursor.getInt(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String buildPlaceholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+}
@@ -42,6 +42,8 @@ import java.util.List;
 import person.notfresh.noteplus.ui.ImagePreviewDialog;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import androidx.appcompat.app.AlertDialog;
 
@@ -49,6 +51,9 @@ import person.notfresh.noteplus.R;
 import person.notfresh.noteplus.core.TimeRangeFilter;
 import person.notfresh.noteplus.core.model.Comment;
 import person.notfresh.noteplus.core.model.Note;
+import person.notfresh.noteplus.core.model.NoteExtras;
+import person.notfresh.noteplus.core.model.Tag;
+import person.notfresh.noteplus.core.model.TimeRange;
 import person.notfresh.noteplus.db.NoteDbHelper;
 import person.notfresh.noteplus.manager.INoteListCallback;
 import person.notfresh.noteplus.util.DisplayUtil;
@@ -69,7 +74,10 @@ public class NoteListManager {
     // 内部状态（从MainActivity移过来）
     private NoteCursorWrapper noteCursorWrapper;
     private NoteListAdapter adapter;
+    private NoteExtrasRepository noteExtrasRepository;
     private Set<Long> foldedNoteIds = new HashSet<>();
+    // 当前项目的折叠字数，加载列表时读取一次，绑定每一行时直接使用
+    private int foldDisplayLength = NoteDbHelper.DEFAULT_FOLD_DISPLAY_LENGTH;
     private Set<Long> expandedComments = new HashSet<>();
     private Set<Long> hiddenNoteIds = new HashSet<>();
     private boolean isMultiSelectMode = false;
@@ -84,6 +92,16 @@ public class NoteListManager {
     private Handler audioProgressHandler = new Handler(Looper.getMainLooper());
     private Runnable audioProgressRunnable;
     private final java.util.Map<String, Integer> audioProgressMap = new java.util.HashMap<>();
+
+    // 列表绑定数据的后台预取：单线程执行，保证按滚动顺序处理
+    private final ExecutorService bindExecutor = Executors.newSingleThreadExecutor();
+    // 缩略图解码单独一个线程，不排在页查询后面
+    private final ExecutorService thumbnailExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 预取范围：当前位置前后各若干屏
+    private static final int PREFETCH_SCREENS = 2;
+    // 列表尚未布局时按该行数估算一屏
+    private static final int MIN_SCREEN_ROWS = 8;
     
     /**
      * 初始化管理器
@@ -130,20 +148,22 @@ public class NoteListManager {
                 android.util.Log.e("NoteListManager", "dbHelper为null，无法加载笔记");
                 return;
             }
+            // 设置修改后会重新加载列表，折叠字数在这里刷新
+            foldDisplayLength = dbHelper.getIntSetting(NoteDbHelper.KEY_FOLD_DISPLAY_LENGTH,
+                    NoteDbHelper.DEFAULT_FOLD_DISPLAY_LENGTH);
             
-            // 使用NoteDbHelper封装的方法加载笔记
+            // 创建分页包装器（只查询总数，笔记按页懒加载）
             boolean timeDescOrder = callback.getTimeDescOrder();
-            Cursor cursor = null;
+            String currentProject = callback.getProjectManager().getCurrentProject();
             try {
-                cursor = dbHelper.loadNotes(timeDescOrder);
+                noteCursorWrapper = new NoteCursorWrapper(dbHelper, timeDescOrder, currentProject);
             } catch (Exception e) {
-                android.util.Log.e("NoteListManager", "加载笔记Cursor失败", e);
+                android.util.Log.e("NoteListManager", "加载笔记分页失败", e);
                 throw new RuntimeException("加载笔记失败：" + e.getMessage(), e);
             }
 
-            // 创建 Cursor 包装器
-            String currentProject = callback.getProjectManager().getCurrentProject();
-            noteCursorWrapper = new NoteCursorWrapper(cursor, currentProject);
+            // 重新加载时重建附加信息缓存（项目切换后 dbHelper 可能已变化）
+            noteExtrasRepository = new NoteExtrasRepository(dbHelper);
             
             // 创建适配器
             adapter = new NoteListAdapter(noteCursorWrapper);
@@ -203,6 +223,9 @@ public class NoteListManager {
                 return false;
             } else {
                 Note note = (Note) adapter.getItem(position);
+                if (note == null) {
+                    return false;
+                }
                 long noteId = note.getId();
                 showNoteOptionsMenu(view, noteId);
                 return true; // 返回true表示消费了长按事件
@@ -210,6 +233,15 @@ public class NoteListManager {
         });
     }
     
+    /**
+     * 释放后台预取线程（Activity 销毁时调用）
+     */
+    public void release() {
+        mainHandler.removeCallbacksAndMessages(null);
+        bindExecutor.shutdownNow();
+        thumbnailExecutor.shutdownNow();
+    }
+    
     /**
      * 刷新笔记列表
      * 重新加载数据并刷新显示
@@ -237,6 +269,10 @@ public class NoteListManager {
         }
 
         hiddenNoteIds.addAll(noteIds);
+        // 已移动的笔记可能已从数据库删除，重新统计总数和分页
+        if (noteCursorWrapper != null) {
+            noteCursorWrapper.reload();
+        }
         adapter.markVisiblePositionsDirty();
         adapter.notifyDataSetChanged();
 
@@ -333,14 +369,7 @@ public class NoteListManager {
         }
         
         // 在 adapter 中查找 noteId 对应的 position
-        int position = -1;
-        for (int i = 0; i < adapter.getCount(); i++) {
-            Note note = (Note) adapter.getItem(i);
-            if (note != null && note.getId() == noteId) {
-                position = i;
-                break;
-            }
-        }
+        int position = adapter.findPosition(noteId);
         
         if (position >= 0) {
             // 滚动到指定位置
@@ -372,59 +401,33 @@ public class NoteListManager {
     /**
      * 根据 noteId 和 TimeRangeFilter 找到附近的 Note 列表
      * TimeRangeFilter 相当于一个时间距离，前后的都可以
+     * 查询数据库，需在后台线程调用
      * 
+     * @param dbHelper 当前项目的数据库
+     * @param projectName 当前项目名
      * @param noteId 目标笔记ID
      * @param timeRange 时间范围过滤器（如最近1天、最近7天、最近30天）
-     * @return 在时间范围内的 Note 列表
+     * @param excludedIds 列表中已隐藏的笔记ID（调用前在主线程复制一份）
+     * @return 在时间范围内的 Note 列表（含目标笔记本身），按时间逆序
      */
-    public List<Note> getNearNotes(long noteId, TimeRangeFilter timeRange) {
+    private static List<Note> getNearNotes(NoteDbHelper dbHelper, String projectName, long noteId,
+                                           TimeRangeFilter timeRange, Set<Long> excludedIds) {
         List<Note> result = new ArrayList<>();
-        
-        if (adapter == null) {
+        if (excludedIds.contains(noteId)) {
             return result;
         }
-        
-        // 1. 先找到指定 noteId 的 Note，获取它的 timestamp
-        Note targetNote = null;
-        for (int i = 0; i < adapter.getCount(); i++) {
-            Note note = adapter.getItem(i);
-            if (note != null && note.getId() == noteId) {
-                targetNote = note;
-                break;
-            }
-        }
-        
-        // 如果找不到目标 Note，返回空列表
-        if (targetNote == null) {
-            return result;
-        }
-        
-        long targetTimestamp = targetNote.getTimestamp();
-        
-        // 2. 根据 TimeRangeFilter 计算时间范围（前后都可以）
-        // 将天数转换为毫秒数
-        int days = timeRange.getDays();
-        long timeRangeMillis = days * 24L * 60L * 60L * 1000L;
-        
-        // 计算时间范围的起始和结束时间
-        long startTime = targetTimestamp - timeRangeMillis;
-        long endTime = targetTimestamp + timeRangeMillis;
-        
-        // 3. 遍历 adapter 中的所有 Note，筛选出在时间范围内的 Note
-        for (int i = 0; i < adapter.getCount(); i++) {
-            Note note = adapter.getItem(i);
-            if (note != null) {
-                long noteTimestamp = note.getTimestamp();
-                // 检查是否在时间范围内（包含边界）
-                if (noteTimestamp >= startTime && noteTimestamp <= endTime) {
-                    result.add(note);
-                }
+
+        // 将天数转换为毫秒数，目标笔记前后各取这么长
+        long timeRangeMillis = timeRange.getDays() * 24L * 60L * 60L * 1000L;
+        Cursor cursor = dbHelper.getNotesAround(noteId, timeRangeMillis, excludedIds);
+        try {
+            while (cursor.moveToNext()) {
+                result.add(new Note(cursor.getLong(0), cursor.getString(1), cursor.getLong(2),
+                        cursor.getDouble(3), cursor.getInt(4) == 1, projectName));
             }
+        } finally {
+            cursor.close();
         }
-        
-        // 4. 按时间逆序排序（最新的在前）
-        result.sort((note1, note2) -> Long.compare(note2.getTimestamp(), note1.getTimestamp()));
-        
         return result;
     }
 
@@ -449,7 +452,11 @@ public class NoteListManager {
         
         if (rowsDeleted > 0) {
             // 笔记删除后，从索引中移除
-            SearchManager.getInstance(context).deleteNoteIndex(noteId);
+            SearchManager.getInstance(context).deleteNoteIndex(noteId,
+                    callback.getProjectManager().getCurrentProject());
+            if (noteExtrasRepository != null) {
+                noteExtrasRepository.invalidate(noteId);
+            }
 
             Toast.makeText(context, "记录已删除", Toast.LENGTH_SHORT).show();
             
@@ -461,13 +468,9 @@ public class NoteListManager {
                 scrollOffset = firstVisibleView.getTop();
             }
             
-            // 重新查询 Cursor（Cursor 是查询时的快照，删除后需要重新查询才能反映最新数据）
-            boolean timeDescOrder = callback.getTimeDescOrder();
-            Cursor newCursor = dbHelper.loadNotes(timeDescOrder);
-            
-            // 更新 wrapper 的 Cursor（会自动清空缓存）
+            // 重新统计总数并清空分页缓存（已加载的页是查询时的快照）
             if (noteCursorWrapper != null) {
-                noteCursorWrapper.setCursor(newCursor);
+                noteCursorWrapper.reload();
                 // 刷新适配器，ListView 会自动移除不存在的项，下面的项会自动浮上来
                 if (adapter != null) {
                     adapter.markVisiblePositionsDirty();
@@ -535,6 +538,9 @@ public class NoteListManager {
         // 保存追加内容
         long commentId = dbHelper.addComment(noteId, parentId, content, cost);
         if (commentId != -1) {
+            // 追加内容与笔记在同一个索引文档中，重建该笔记的索引
+            SearchManager.getInstance(context).reindexNote(noteId,
+                    callback.getProjectManager().getCurrentProject());
             Toast.makeText(context, "追加成功", Toast.LENGTH_SHORT).show();
             // 刷新该笔记的显示
             refreshNoteView(noteId);
@@ -542,6 +548,32 @@ public class NoteListManager {
             Toast.makeText(context, "追加失败", Toast.LENGTH_SHORT).show();
         }
     }
+
+    /**
+     * 修改评论内容
+     * @param commentId 评论ID
+     * @param noteId 所属笔记ID
+     * @param content 新内容
+     */
+    public void updateComment(long commentId, long noteId, String content) {
+        if (callback == null) {
+            return;
+        }
+
+        NoteDbHelper dbHelper = callback.getDbHelper();
+        Context context = callback.getContext();
+        if (dbHelper == null || context == null) {
+            return;
+        }
+
+        if (dbHelper.updateComment(commentId, content) > 0) {
+            SearchManager.getInstance(context).reindexNote(noteId,
+                    callback.getProjectManager().getCurrentProject());
+            refreshNoteView(noteId);
+        } else {
+            Toast.makeText(context, "修改失败", Toast.LENGTH_SHORT).show();
+        }
+    }
     
     /**
      * 切换置顶状态
@@ -562,6 +594,9 @@ public class NoteListManager {
         boolean success = dbHelper.togglePinNote(noteId);
         if (success) {
             boolean isPinned = dbHelper.isNotePinned(noteId);
+            // 置顶状态参与搜索排序，立即更新该笔记的索引
+            SearchManager.getInstance(context).reindexNote(noteId,
+                    callback.getProjectManager().getCurrentProject());
             Toast.makeText(context, isPinned ? "已置顶" : "已取消置顶", Toast.LENGTH_SHORT).show();
             // 刷新列表以更新排序
             loadNotes();
@@ -576,28 +611,27 @@ public class NoteListManager {
      * @param noteId 笔记ID
      */
     public void refreshNoteView(long noteId) {
+        // 附加信息可能已变化，先让缓存失效
+        if (noteExtrasRepository != null) {
+            noteExtrasRepository.invalidate(noteId);
+        }
         if (adapter == null || listView == null) {
             return;
         }
         
         // 找到该笔记在列表中的位置
-        for (int i = 0; i < adapter.getCount(); i++) {
-            Note note = (Note) adapter.getItem(i);
-            if (note != null) {
-                long id = note.getId();
-                if (id == noteId) {
-                    // 找到对应的视图
-                    int firstVisible = listView.getFirstVisiblePosition();
-                    int lastVisible = listView.getLastVisiblePosition();
-                    
-                    if (i >= firstVisible && i <= lastVisible) {
-                        View view = listView.getChildAt(i - firstVisible);
-                        if (view != null) {
-                            double cost = note.getCost();
-                            updateListItemWithExtras(view, noteId, cost);
-                        }
-                    }
-                    break;
+        int i = adapter.findPosition(noteId);
+        Note note = i >= 0 ? adapter.getItem(i) : null;
+        if (note != null) {
+            // 找到对应的视图
+            int firstVisible = listView.getFirstVisiblePosition();
+            int lastVisible = listView.getLastVisiblePosition();
+            
+            if (i >= firstVisible && i <= lastVisible) {
+                View view = listView.getChildAt(i - firstVisible);
+                if (view != null) {
+                    double cost = note.getCost();
+                    updateListItemWithExtras(view, noteId, cost, getNoteExtras(noteId));
                 }
             }
         }
@@ -655,12 +689,9 @@ public class NoteListManager {
         // 从 adapter 中获取笔记内容
         String currentContent = null;
         if (adapter != null) {
-            for (int i = 0; i < adapter.getCount(); i++) {
-                Note note = adapter.getItem(i);
-                if (note != null && note.getId() == noteId) {
-                    currentContent = note.getContent();
-                    break;
-                }
+            Note note = adapter.findNote(noteId);
+            if (note != null) {
+                currentContent = note.getContent();
             }
         }
 
@@ -713,13 +744,8 @@ public class NoteListManager {
                 // 刷新列表 cursor，显示存档后的内容
                 listView.post(() -> {
                     if (noteCursorWrapper != null) {
-                        NoteDbHelper helper = callback.getDbHelper();
-                        if (helper != null) {
-                            boolean timeDescOrder = callback.getTimeDescOrder();
-                            Cursor newCursor = helper.loadNotes(timeDescOrder);
-                            noteCursorWrapper.setCursor(newCursor);
-                            adapter.notifyDataSetChanged();
-                        }
+                        noteCursorWrapper.reload();
+                        adapter.notifyDataSetChanged();
                     }
                 });
             } else {
@@ -741,13 +767,8 @@ public class NoteListManager {
             listView.post(() -> {
                 android.util.Log.d("NoteListManager", "post: refreshing note " + noteId);
                 if (noteCursorWrapper != null) {
-                    NoteDbHelper helper = callback.getDbHelper();
-                    if (helper != null) {
-                        boolean timeDescOrder = callback.getTimeDescOrder();
-                        Cursor newCursor = helper.loadNotes(timeDescOrder);
-                        noteCursorWrapper.setCursor(newCursor);
-                        adapter.notifyDataSetChanged();
-                    }
+                    noteCursorWrapper.reload();
+                    adapter.notifyDataSetChanged();
                 }
             });
         });
@@ -829,12 +850,17 @@ public class NoteListManager {
         android.content.ContentValues values = new android.content.ContentValues();
         values.put(NoteDbHelper.COLUMN_CONTENT, newContent);
 
-        db.update(
+        int rows = db.update(
             NoteDbHelper.TABLE_NOTES,
             values,
             NoteDbHelper.COLUMN_ID + "=?",
             new String[]{String.valueOf(noteId)}
         );
+        if (rows > 0) {
+            // 编辑后的内容立即反映到索引中（变更日志也会记录这次修改，之后的同步重复处理没有副作用）
+            SearchManager.getInstance(context).reindexNote(noteId,
+                    callback.getProjectManager().getCurrentProject());
+        }
     }
 
     /**
@@ -849,14 +875,7 @@ public class NoteListManager {
         }
 
         // 先通过 adapter 找到笔记在列表中的位置
-        int targetPosition = -1;
-        for (int i = 0; i < adapter.getCount(); i++) {
-            Note note = adapter.getItem(i);
-            if (note != null && note.getId() == noteId) {
-                targetPosition = i;
-                break;
-            }
-        }
+        int targetPosition = adapter.findPosition(noteId);
 
         android.util.Log.d("NoteListManager", "updateNoteContentView: noteId=" + noteId + ", targetPosition=" + targetPosition);
 
@@ -887,12 +906,26 @@ public class NoteListManager {
     }
 
     // ========== 辅助方法（从 MainActivity 迁移） ==========
+
+    /**
+     * 获取笔记的附加信息（优先读取缓存）
+     */
+    private NoteExtras getNoteExtras(long noteId) {
+        if (noteExtrasRepository == null) {
+            NoteDbHelper dbHelper = callback != null ? callback.getDbHelper() : null;
+            if (dbHelper == null) {
+                return new NoteExtras(noteId);
+            }
+            noteExtrasRepository = new NoteExtrasRepository(dbHelper);
+        }
+        return noteExtrasRepository.get(noteId);
+    }
     
     /**
      * 为列表项添加时间区间和标签信息
      * 从 MainActivity.updateListItemWithExtras() 迁移
      */
-    private void updateListItemWithExtras(View view, long noteId, double cost) {
+    private void updateListItemWithExtras(View view, long noteId, double cost, NoteExtras extras) {
         Context context = callback != null ? callback.getContext() : null;
         if (context == null) {
             return;
@@ -918,19 +951,19 @@ public class NoteListManager {
         extrasContainer.removeAllViews();
         
         // 添加时间区间信息
-        addTimeRangeInfo(extrasContainer, noteId);
+        addTimeRangeInfo(extrasContainer, extras.getTimeRanges());
         
         // 添加标签信息
-        addTagsInfo(extrasContainer, noteId);
+        addTagsInfo(extrasContainer, extras.getTags());
 
         // 添加图片信息
-        addImagesInfo(extrasContainer, noteId);
+        addImagesInfo(extrasContainer, noteId, extras.getImagePaths());
 
         // 添加音频信息
-        addAudioInfo(extrasContainer, noteId);
+        addAudioInfo(extrasContainer, noteId, extras.getAudioItems());
         
         // 添加追加内容信息
-        addCommentsInfo(extrasContainer, noteId);
+        addCommentsInfo(extrasContainer, noteId, extras.getCommentCount());
         
         // 如果配置显示花费且花费大于0，则在记录旁边显示花费
         boolean showCost = callback != null ? callback.getShowCost() : false;
@@ -952,22 +985,19 @@ public class NoteListManager {
      * 添加时间区间信息到列表项
      * 从 MainActivity.addTimeRangeInfo() 迁移
      */
-    private void addTimeRangeInfo(LinearLayout container, long noteId) {
+    private void addTimeRangeInfo(LinearLayout container, List<TimeRange> timeRanges) {
         if (callback == null) {
             return;
         }
         
-        NoteDbHelper dbHelper = callback.getDbHelper();
         Context context = callback.getContext();
-        if (dbHelper == null || context == null) {
+        if (context == null) {
             return;
         }
         
-        Cursor timeRangeCursor = dbHelper.getTimeRangesForNote(noteId);
-        
-        if (timeRangeCursor != null && timeRangeCursor.moveToFirst()) {
-            @SuppressLint("Range") long startTime = timeRangeCursor.getLong(timeRangeCursor.getColumnIndex(NoteDbHelper.COLUMN_START_TIME));
-            @SuppressLint("Range") long endTime = timeRangeCursor.getLong(timeRangeCursor.getColumnIndex(NoteDbHelper.COLUMN_END_TIME));
+        if (timeRanges != null && !timeRanges.isEmpty()) {
+            long startTime = timeRanges.get(0).getStartTime();
+            long endTime = timeRanges.get(0).getEndTime();
             
             LinearLayout timeRangeLayout = new LinearLayout(context);
             timeRangeLayout.setOrientation(LinearLayout.HORIZONTAL);
@@ -987,8 +1017,6 @@ public class NoteListManager {
             timeRangeLayout.addView(timeRangeValue);
             
             container.addView(timeRangeLayout);
-            
-            timeRangeCursor.close();
         }
     }
     
@@ -996,20 +1024,17 @@ public class NoteListManager {
      * 添加标签信息到列表项
      * 从 MainActivity.addTagsInfo() 迁移
      */
-    private void addTagsInfo(LinearLayout container, long noteId) {
+    private void addTagsInfo(LinearLayout container, List<Tag> tags) {
         if (callback == null) {
             return;
         }
 
-        NoteDbHelper dbHelper = callback.getDbHelper();
         Context context = callback.getContext();
-        if (dbHelper == null || context == null) {
+        if (context == null) {
             return;
         }
 
-        Cursor tagsCursor = dbHelper.getTagsForNote(noteId);
-
-        if (tagsCursor != null && tagsCursor.getCount() > 0) {
+        if (tags != null && !tags.isEmpty()) {
             LinearLayout tagLayout = new LinearLayout(context);
             tagLayout.setOrientation(LinearLayout.HORIZONTAL);
             int padding = DisplayUtil.dpToPx(context, 4);
@@ -1026,9 +1051,9 @@ public class NoteListManager {
             tagsContainer.setAlignItems(com.google.android.flexbox.AlignItems.CENTER);
             tagsContainer.setFlexDirection(com.google.android.flexbox.FlexDirection.ROW);
 
-            while (tagsCursor.moveToNext()) {
-                @SuppressLint("Range") String tagName = tagsCursor.getString(tagsCursor.getColumnIndex(NoteDbHelper.COLUMN_TAG_NAME));
-                @SuppressLint("Range") String tagColor = tagsCursor.getString(tagsCursor.getColumnIndex(NoteDbHelper.COLUMN_TAG_COLOR));
+            for (Tag tag : tags) {
+                String tagName = tag.getName();
+                String tagColor = tag.getColor();
 
                 TextView tagView = new TextView(context);
                 tagView.setText(tagName);
@@ -1055,26 +1080,22 @@ public class NoteListManager {
 
             tagLayout.addView(tagsContainer);
             container.addView(tagLayout);
-
-            tagsCursor.close();
         }
     }
 
     /**
      * 添加图片信息到列表项
      */
-    private void addImagesInfo(LinearLayout container, long noteId) {
+    private void addImagesInfo(LinearLayout container, long noteId, java.util.List<String> imagePaths) {
         if (callback == null) {
             return;
         }
 
-        NoteDbHelper dbHelper = callback.getDbHelper();
         Context context = callback.getContext();
-        if (dbHelper == null || context == null) {
+        if (context == null) {
             return;
         }
 
-        java.util.List<String> imagePaths = dbHelper.getNoteImagePaths(noteId);
         if (imagePaths == null || imagePaths.isEmpty()) {
             return;
         }
@@ -1105,10 +1126,7 @@ public class NoteListManager {
             imageView.setLayoutParams(params);
             imageView.setScaleType(android.widget.ImageView.ScaleType.CENTER_CROP);
 
-            android.graphics.Bitmap bitmap = decodeSampledBitmap(path, imageSize, imageSize);
-            if (bitmap != null) {
-                imageView.setImageBitmap(bitmap);
-            }
+            loadThumbnailAsync(imageView, path, imageSize);
 
             int index = row.getChildCount();
             imageView.setOnClickListener(v -> showImagePreview(context, imagePaths, index));
@@ -1124,6 +1142,18 @@ public class NoteListManager {
         container.addView(imageLayout);
     }
 
+    /**
+     * 在后台线程解码缩略图，完成后回到主线程设置
+     */
+    private void loadThumbnailAsync(android.widget.ImageView imageView, String path, int size) {
+        thumbnailExecutor.execute(() -> {
+            android.graphics.Bitmap bitmap = decodeSampledBitmap(path, size, size);
+            if (bitmap != null) {
+                mainHandler.post(() -> imageView.setImageBitmap(bitmap));
+            }
+        });
+    }
+
     private void showImagePreview(Context context, java.util.List<String> imagePaths, int currentIndex) {
         if (context instanceof FragmentActivity) {
             FragmentActivity activity = (FragmentActivity) context;
@@ -1232,18 +1262,16 @@ public class NoteListManager {
     /**
      * 添加音频信息到列表项
      */
-    private void addAudioInfo(LinearLayout container, long noteId) {
+    private void addAudioInfo(LinearLayout container, long noteId, List<AudioAttachment> audioItems) {
         if (callback == null) {
             return;
         }
 
-        NoteDbHelper dbHelper = callback.getDbHelper();
         Context context = callback.getContext();
-        if (dbHelper == null || context == null) {
+        if (context == null) {
             return;
         }
 
-        List<AudioAttachment> audioItems = dbHelper.getNoteAudioItems(noteId);
         if (audioItems == null || audioItems.isEmpty()) {
             return;
         }
@@ -1498,7 +1526,7 @@ public class NoteListManager {
      * 添加追加内容信息到列表项
      * 从 MainActivity.addCommentsInfo() 迁移
      */
-    private void addCommentsInfo(LinearLayout extraContainer, long noteId) {
+    private void addCommentsInfo(LinearLayout extraContainer, long noteId, int commentCount) {
         if (callback == null) {
             return;
         }
@@ -1555,7 +1583,6 @@ public class NoteListManager {
 
         commentsContainer.addView(actionLayout);
 
-        int commentCount = dbHelper.getCommentCount(noteId);
         // 判断是否需要追加内容的展开/折叠功能
         boolean needExpandCollapse = commentCount > 3;
         boolean isExpanded = expandedComments.contains(noteId);
@@ -1650,6 +1677,9 @@ public class NoteListManager {
         boolean hasComments = commentsCursor != null && commentsCursor.getCount() > 0;
         
         if (hasComments) {
+            // 一次遍历计算所有追加的编号（按时间顺序，时间戳相同的编号相同），避免逐条查询
+            java.util.Map<Long, Integer> commentNumbers = buildCommentNumbers(commentsCursor);
+            commentsCursor.moveToPosition(-1);
             int count = 0;
             
             while (commentsCursor.moveToNext() && count < maxDisplay) {
@@ -1668,7 +1698,8 @@ public class NoteListManager {
                     parentId = commentsCursor.getLong(parentIdIndex);
                 }
                 // 获取当前评论的编号（所有评论都按时间顺序编号）
-                int currentNumber = dbHelper.getCommentNumber(commentId);
+                Integer numberValue = commentNumbers.get(commentId);
+                int currentNumber = numberValue != null ? numberValue : -1;
                 // 创建追加内容项
                 LinearLayout commentItem = new LinearLayout(context);
                 commentItem.setOrientation(LinearLayout.VERTICAL);
@@ -1683,7 +1714,8 @@ public class NoteListManager {
                     displayText = DisplayUtil.formatCommentTimestamp(timestamp) + " @" + currentNumber + " " + content;
                 } else {
                     // 回复评论：@当前编号 追加@父编号 内容
-                    int parentNumber = dbHelper.getCommentNumber(parentId);
+                    Integer parentNumberValue = commentNumbers.get(parentId);
+                    int parentNumber = parentNumberValue != null ? parentNumberValue : -1;
                     if (parentNumber > 0) {
                         displayText = DisplayUtil.formatCommentTimestamp(timestamp) + " @" + currentNumber + " 追加@" + parentNumber + " " + content;
                     } else {
@@ -1738,6 +1770,32 @@ public class NoteListManager {
         }
     }
     
+    /**
+     * 根据按时间正序排列的追加 Cursor 计算每条追加的编号
+     * 编号规则与 NoteDbHelper.getCommentNumber 一致：时间戳小于等于当前追加的数量
+     */
+    private java.util.Map<Long, Integer> buildCommentNumbers(Cursor commentsCursor) {
+        int idIndex = commentsCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_COMMENT_ID);
+        int timestampIndex = commentsCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_COMMENT_TIMESTAMP);
+        List<Long> ids = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        commentsCursor.moveToPosition(-1);
+        while (commentsCursor.moveToNext()) {
+            ids.add(commentsCursor.getLong(idIndex));
+            timestamps.add(commentsCursor.getLong(timestampIndex));
+        }
+
+        java.util.Map<Long, Integer> numbers = new java.util.HashMap<>();
+        int number = 0;
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            if (i == ids.size() - 1 || !timestamps.get(i).equals(timestamps.get(i + 1))) {
+                number = i + 1;
+            }
+            numbers.put(ids.get(i), number);
+        }
+        return numbers;
+    }
+    
     /**
      * 检查并显示折叠按钮
      * 从 MainActivity.checkAndShowFoldButton() 迁移
@@ -1753,14 +1811,8 @@ public class NoteListManager {
             return;
         }
         
-        // 读取当前项目的折叠字数配置
-        String foldLengthStr = callback.getSetting(NoteDbHelper.KEY_FOLD_DISPLAY_LENGTH, "300");
-        int foldDisplayLength;
-        try {
-            foldDisplayLength = Integer.parseInt(foldLengthStr);
-        } catch (NumberFormatException e) {
-            foldDisplayLength = 300; // 默认值
-        }
+        // 当前项目的折叠字数配置（loadNotes 时已读取）
+        int foldDisplayLength = this.foldDisplayLength;
         
         // 计算笔记字数
         int wordCount = StringUtil.calculateWordCount(content);
@@ -2187,6 +2239,8 @@ public class NoteListManager {
         builder.setPositiveButton("删除", (dialog, which) -> {
             int result = dbHelper.deleteComment(commentId);
             if (result > 0) {
+                SearchManager.getInstance(context).reindexNote(noteId,
+                        callback.getProjectManager().getCurrentProject());
                 Toast.makeText(context, "已删除", Toast.LENGTH_SHORT).show();
                 refreshNoteView(noteId);
             } else {
@@ -2301,6 +2355,9 @@ public class NoteListManager {
 
         boolean success = dbHelper.archiveNote(noteId);
         if (success) {
+            // 归档的笔记仍在索引中，按归档状态重建索引（默认搜索时排除）
+            SearchManager.getInstance(context).reindexNote(noteId,
+                    callback.getProjectManager().getCurrentProject());
             Toast.makeText(context, "已归档", Toast.LENGTH_SHORT).show();
             Set<Long> archivedIds = new HashSet<>();
             archivedIds.add(noteId);
@@ -2326,14 +2383,36 @@ public class NoteListManager {
             return;
         }
         
-        // 使用现有的getNearNotes方法获取一周内的Note列表
-        List<Note> nearNotes = getNearNotes(sourceNoteId, TimeRangeFilter.LAST_WEEK);
-        
-        // 过滤掉源Note本身
+        NoteDbHelper dbHelper = callback.getDbHelper();
+        if (dbHelper == null) {
+            return;
+        }
+        String projectName = callback.getProjectManager().getCurrentProject();
+        Set<Long> excludedIds = new HashSet<>(hiddenNoteIds);
+
+        // 在后台查询一周内的Note列表，查完回到主线程显示对话框
+        bindExecutor.execute(() -> {
+            List<Note> nearNotes;
+            try {
+                nearNotes = getNearNotes(dbHelper, projectName, sourceNoteId, TimeRangeFilter.LAST_WEEK, excludedIds);
+            } catch (Exception e) {
+                android.util.Log.e("NoteListManager", "查询合并目标失败", e);
+                nearNotes = new ArrayList<>();
+            }
+            List<Note> result = nearNotes;
+            mainHandler.post(() -> showMergeToDialog(context, sourceNoteId, result));
+        });
+    }
+
+    private void showMergeToDialog(Context context, long sourceNoteId, List<Note> nearNotes) {
+        // 分出源Note本身，其余为可选的目标
+        Note sourceNote = null;
         List<Note> targetNotes = new ArrayList<>();
         for (Note note : nearNotes) {
             if (note.getId() != sourceNoteId) {
                 targetNotes.add(note);
+            } else {
+                sourceNote = note;
             }
         }
         
@@ -2363,21 +2442,11 @@ public class NoteListManager {
         
         // 创建适配器并设置点击监听器
         MergeTargetAdapter mergeAdapter = new MergeTargetAdapter(context, targetNotes);
+        Note mergeSource = sourceNote;
         mergeAdapter.setOnItemClickListener((position) -> {
             Note targetNote = targetNotes.get(position);
-            // 同时获取源Note（从NoteListAdapter中）
-            Note sourceNote = null;
-            if (adapter != null) {
-                for (int i = 0; i < adapter.getCount(); i++) {
-                    Note note = adapter.getItem(i);
-                    if (note != null && note.getId() == sourceNoteId) {
-                        sourceNote = note;
-                        break;
-                    }
-                }
-            }
             dialog.dismiss();
-            showMergeConfirmDialog(sourceNote, targetNote);
+            showMergeConfirmDialog(mergeSource, targetNote);
         });
         noteListView.setAdapter(mergeAdapter);
         
@@ -2686,32 +2755,224 @@ public class NoteListManager {
      */
     private class NoteListAdapter extends BaseAdapter {
         private final NoteCursorWrapper wrapper;
-        private final List<Integer> visiblePositions = new ArrayList<>();
+        // 隐藏笔记在分页列表中的位置（升序），用于把适配器位置映射到分页位置
+        private final List<Integer> hiddenPositions = new ArrayList<>();
         private boolean visiblePositionsDirty = true;
+        // 上次提交预取的位置范围 [prefetchStart, prefetchEnd)
+        private int prefetchStart = -1;
+        private int prefetchEnd = -1;
+        // 以占位内容绑定、等待预取结果的笔记
+        private final Set<Long> placeholderNoteIds = new HashSet<>();
+        // 已提交后台加载的页（只在主线程访问）
+        private final Set<Integer> pendingPages = new HashSet<>();
         
         public NoteListAdapter(NoteCursorWrapper wrapper) {
             this.wrapper = wrapper;
         }
 
         private void rebuildVisiblePositions() {
-            visiblePositions.clear();
+            hiddenPositions.clear();
             if (wrapper == null) {
                 visiblePositionsDirty = false;
                 return;
             }
 
-            int total = wrapper.getCount();
-            for (int i = 0; i < total; i++) {
-                long noteId = wrapper.getNoteIdAtPosition(i);
-                if (!hiddenNoteIds.contains(noteId)) {
-                    visiblePositions.add(i);
+            // 只定位隐藏的笔记，不遍历整个列表
+            for (Long noteId : hiddenNoteIds) {
+                int position = wrapper.findPosition(noteId);
+                if (position >= 0) {
+                    hiddenPositions.add(position);
                 }
             }
+            java.util.Collections.sort(hiddenPositions);
             visiblePositionsDirty = false;
         }
 
+        /**
+         * 适配器位置转换为分页位置（跳过隐藏的笔记）
+         */
+        private int toCursorPosition(int position) {
+            int cursorPosition = position;
+            for (int hidden : hiddenPositions) {
+                if (hidden <= cursorPosition) {
+                    cursorPosition++;
+                } else {
+                    break;
+                }
+            }
+            return cursorPosition;
+        }
+
+        /**
+         * 查找笔记在适配器中的位置
+         * @return 位置索引，不在列表中或已隐藏时返回 -1
+         */
+        public int findPosition(long noteId) {
+            if (wrapper == null || hiddenNoteIds.contains(noteId)) {
+                return -1;
+            }
+            if (visiblePositionsDirty) {
+                rebuildVisiblePositions();
+            }
+            return toAdapterPosition(wrapper.findPosition(noteId));
+        }
+
+        /**
+         * 分页位置转换为适配器位置（扣除前面隐藏的笔记）
+         * @return 适配器位置，分页位置无效时返回 -1
+         */
+        public int toAdapterPosition(int cursorPosition) {
+            if (cursorPosition < 0) {
+                return -1;
+            }
+            if (visiblePositionsDirty) {
+                rebuildVisiblePositions();
+            }
+            int position = cursorPosition;
+            for (int hidden : hiddenPositions) {
+                if (hidden < cursorPosition) {
+                    position--;
+                } else {
+                    break;
+                }
+            }
+            return position;
+        }
+
+        /**
+         * 查找笔记对象
+         * @return 笔记，不在列表中时返回 null
+         */
+        public Note findNote(long noteId) {
+            int position = findPosition(noteId);
+            return position >= 0 ? getItem(position) : null;
+        }
+
         public void markVisiblePositionsDirty() {
             visiblePositionsDirty = true;
+            // 位置映射变化后，之前的预取窗口不再可信
+            prefetchStart = -1;
+            prefetchEnd = -1;
+        }
+
+        /**
+         * 在后台线程预取当前位置前后若干屏的笔记和附加信息
+         * 当前位置仍处于上次预取窗口内部（距边缘超过一屏）时不重复提交
+         */
+        private void schedulePrefetch(int position) {
+            if (noteExtrasRepository == null || wrapper == null || listView == null) {
+                return;
+            }
+            if (visiblePositionsDirty) {
+                rebuildVisiblePositions();
+            }
+
+            int screenRows = Math.max(MIN_SCREEN_ROWS,
+                    listView.getLastVisiblePosition() - listView.getFirstVisiblePosition() + 1);
+            if (prefetchStart >= 0
+                    && position - screenRows >= prefetchStart
+                    && position + screenRows < prefetchEnd) {
+                return;
+            }
+
+            int start = Math.max(0, position - screenRows * PREFETCH_SCREENS);
+            int end = Math.min(getCount(), position + screenRows * PREFETCH_SCREENS + 1);
+            if (start >= end) {
+                return;
+            }
+            prefetchStart = start;
+            prefetchEnd = end;
+
+            // 位置映射只在主线程计算，这里把分页位置交给后台线程
+            final List<Integer> cursorPositions = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                cursorPositions.add(toCursorPosition(i));
+            }
+            final NoteCursorWrapper targetWrapper = wrapper;
+            final NoteExtrasRepository repository = noteExtrasRepository;
+            bindExecutor.execute(() -> {
+                try {
+                    List<Long> noteIds = new ArrayList<>(cursorPositions.size());
+                    for (Integer cursorPosition : cursorPositions) {
+                        // 预热分页缓存，页查询也在后台完成
+                        Note note = targetWrapper.getNote(cursorPosition);
+                        if (note == null) {
+                            return;
+                        }
+                        noteIds.add(note.getId());
+                    }
+                    repository.loadWindow(noteIds);
+                } catch (Exception e) {
+                    // 列表已重新加载时丢弃本次预取
+                    android.util.Log.w("NoteListManager", "预取列表数据失败", e);
+                    return;
+                }
+                mainHandler.post(() -> onPrefetchFinished(repository));
+            });
+        }
+
+        /**
+         * 在后台线程加载分页位置所在的页，完成后刷新列表；同一页只提交一次
+         */
+        private void requestPage(int cursorPosition) {
+            final int pageIndex = cursorPosition / NoteCursorWrapper.PAGE_SIZE;
+            if (wrapper == null || !pendingPages.add(pageIndex)) {
+                return;
+            }
+            final NoteCursorWrapper targetWrapper = wrapper;
+            bindExecutor.execute(() -> {
+                try {
+                    targetWrapper.getNote(cursorPosition);
+                } catch (Exception e) {
+                    android.util.Log.w("NoteListManager", "加载列表分页失败", e);
+                }
+                mainHandler.post(() -> {
+                    pendingPages.remove(pageIndex);
+                    if (adapter == this) {
+                        onPagesChanged();
+                    }
+                });
+            });
+        }
+
+        /**
+         * 页加载完成：总数变化时重建位置映射，然后刷新列表（可见的占位行重新绑定）
+         */
+        private void onPagesChanged() {
+            if (wrapper.consumeCountChanged()) {
+                markVisiblePositionsDirty();
+            }
+            notifyDataSetChanged();
+        }
+
+        /**
+         * 预取完成后，重新绑定当前可见且仍显示占位内容的列表项
+         */
+        private void onPrefetchFinished(NoteExtrasRepository repository) {
+            if (adapter != this || repository != noteExtrasRepository || listView == null) {
+                return;
+            }
+            if (wrapper.consumeCountChanged()) {
+                markVisiblePositionsDirty();
+                notifyDataSetChanged();
+                return;
+            }
+            if (placeholderNoteIds.isEmpty()) {
+                return;
+            }
+
+            int firstVisible = listView.getFirstVisiblePosition();
+            for (int i = 0; i < listView.getChildCount(); i++) {
+                View child = listView.getChildAt(i);
+                Object tag = child != null ? child.getTag() : null;
+                if (!(tag instanceof Long)) {
+                    continue;
+                }
+                long noteId = (Long) tag;
+                if (placeholderNoteIds.contains(noteId) && repository.getCached(noteId) != null) {
+                    getView(firstVisible + i, child, listView);
+                }
+            }
         }
         
         @Override
@@ -2719,7 +2980,7 @@ public class NoteListManager {
             if (visiblePositionsDirty) {
                 rebuildVisiblePositions();
             }
-            return visiblePositions.size();
+            return wrapper != null ? Math.max(0, wrapper.getCount() - hiddenPositions.size()) : 0;
         }
         
         @Override
@@ -2730,11 +2991,11 @@ public class NoteListManager {
             if (visiblePositionsDirty) {
                 rebuildVisiblePositions();
             }
-            if (position < 0 || position >= visiblePositions.size()) {
+            if (position < 0 || position >= getCount()) {
                 return null;
             }
-            int cursorPosition = visiblePositions.get(position);
-            return wrapper.getNote(cursorPosition);
+            // 只读取已加载的页，不在主线程查询数据库
+            return wrapper.peekNote(toCursorPosition(position));
         }
         
         @Override
@@ -2742,21 +3003,60 @@ public class NoteListManager {
             Note note = getItem(position);
             return note != null ? note.getId() : position;
         }
+
+        /**
+         * 绑定空白占位行：所在页还在后台加载，或笔记已在统计总数之后被删除、归档或移走
+         * ListView 不接受 null 视图
+         */
+        private View bindPlaceholder(View convertView, ViewGroup parent) {
+            if (convertView == null) {
+                convertView = LayoutInflater.from(parent.getContext()).inflate(R.layout.note_list_item, parent, false);
+            }
+            convertView.setTag(null);
+            convertView.setOnClickListener(null);
+            convertView.setOnLongClickListener(null);
+            TextView contentText = convertView.findViewById(R.id.contentText);
+            TextView timestampText = convertView.findViewById(R.id.timestampText);
+            contentText.setText("");
+            timestampText.setText("");
+            LinearLayout extrasContainer = convertView.findViewById(R.id.extrasContainer);
+            if (extrasContainer != null) {
+                extrasContainer.removeAllViews();
+            }
+            CheckBox checkBox = convertView.findViewById(R.id.checkBox);
+            if (checkBox != null) {
+                checkBox.setVisibility(View.GONE);
+            }
+            return convertView;
+        }
         
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
-            // 获取 Note 对象（首次访问时才创建）
+            // 获取 Note 对象（只读已加载的页）
             Note note = getItem(position);
-            if (note == null) {
-                return convertView;
+            if (wrapper != null && wrapper.consumeCountChanged()) {
+                // 不能在布局过程中修改数据集，下一帧再刷新
+                mainHandler.post(() -> {
+                    if (adapter == this) {
+                        markVisiblePositionsDirty();
+                        notifyDataSetChanged();
+                    }
+                });
             }
-            
-            long noteId = note.getId();
             Context context = callback != null ? callback.getContext() : null;
-            if (context == null) {
-                return convertView;
+            if (note == null || context == null) {
+                if (note == null && wrapper != null && position >= 0 && position < getCount()) {
+                    // 所在页尚未加载：先绑定占位行，页在后台加载完成后刷新
+                    int cursorPosition = toCursorPosition(position);
+                    if (!wrapper.isPageLoaded(cursorPosition)) {
+                        requestPage(cursorPosition);
+                    }
+                }
+                return bindPlaceholder(convertView, parent);
             }
             
+            long noteId = note.getId();
+            
             LayoutInflater inflater = LayoutInflater.from(context);
             
             // 使用 Note 对象填充视图
@@ -2809,8 +3109,16 @@ public class NoteListManager {
             double cost = note.getCost();
             boolean isPinned = note.isPinned();
             
-            // 为列表项添加时间区间和标签信息
-            updateListItemWithExtras(convertView, noteId, cost);
+            // 预取前后若干屏的数据；附加信息未就绪时先绑定轻量占位内容，预取完成后再刷新该行
+            schedulePrefetch(position);
+            NoteExtras extras = noteExtrasRepository != null ? noteExtrasRepository.getCached(noteId) : null;
+            if (extras == null) {
+                placeholderNoteIds.add(noteId);
+                extras = new NoteExtras(noteId);
+            } else {
+                placeholderNoteIds.remove(noteId);
+            }
+            updateListItemWithExtras(convertView, noteId, cost, extras);
             
             // 如果置顶，在内容前添加标识（在updateListItemWithExtras之后，确保内容已设置）
             if (isPinned) {
@@ -3413,35 +3721,56 @@ public class NoteListManager {
 
     /**
      * 滚动到指定日期的第一条笔记
+     * 在后台查询该日期的第一条笔记及其位置，查完回到主线程滚动
      * @param dateStr 日期字符串，格式 "yyyy-MM-dd"
-     * @return 是否成功定位
+     * @param onResult 主线程回调，参数为是否成功定位
      */
-    public boolean scrollToDate(String dateStr) {
-        if (adapter == null || listView == null) {
-            return false;
+    public void scrollToDate(String dateStr, java.util.function.Consumer<Boolean> onResult) {
+        NoteListAdapter targetAdapter = adapter;
+        NoteDbHelper dbHelper = callback != null ? callback.getDbHelper() : null;
+        if (targetAdapter == null || targetAdapter.wrapper == null || listView == null || dbHelper == null) {
+            onResult.accept(false);
+            return;
         }
 
+        long startOfDay;
         try {
             java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd", Locale.US);
-            long startOfDay = sdf.parse(dateStr).getTime();
-            long endOfDay = startOfDay + 24 * 60 * 60 * 1000 - 1;
-
-            // 在 adapter 中找到该日期的第一条笔记
-            for (int i = 0; i < adapter.getCount(); i++) {
-                Object item = adapter.getItem(i);
-                if (item instanceof Note) {
-                    Note note = (Note) item;
-                    long timestamp = note.getTimestamp();
-                    if (timestamp >= startOfDay && timestamp <= endOfDay) {
-                        // 滚动到该位置
-                        return scrollToNote(note.getId());
-                    }
-                }
-            }
+            startOfDay = sdf.parse(dateStr).getTime();
         } catch (Exception e) {
             e.printStackTrace();
+            onResult.accept(false);
+            return;
         }
-        return false;
+        long endOfDay = startOfDay + 24 * 60 * 60 * 1000 - 1;
+        boolean timeDescOrder = callback.getTimeDescOrder();
+        Set<Long> excludedIds = new HashSet<>(hiddenNoteIds);
+        Context context = callback.getContext();
+        int offset = context != null ? DisplayUtil.dpToPx(context, 8) : 0;
+
+        bindExecutor.execute(() -> {
+            int cursorPosition = -1;
+            try {
+                // 按列表排序找到该日期的第一条笔记（直接查询数据库，不遍历所有分页）
+                long firstNoteId = dbHelper.findFirstNoteInTimeRange(startOfDay, endOfDay, timeDescOrder, excludedIds);
+                if (firstNoteId >= 0) {
+                    cursorPosition = targetAdapter.wrapper.findPosition(firstNoteId);
+                }
+            } catch (Exception e) {
+                android.util.Log.e("NoteListManager", "查找日期 " + dateStr + " 的第一条笔记失败", e);
+            }
+            int found = cursorPosition;
+            mainHandler.post(() -> {
+                // 查询期间列表已切换时不再滚动
+                int position = adapter == targetAdapter ? targetAdapter.toAdapterPosition(found) : -1;
+                if (position >= 0 && listView != null) {
+                    listView.setSelectionFromTop(position, offset);
+                    onResult.accept(true);
+                } else {
+                    onResult.accept(false);
+                }
+            });
+        });
     }
 }
 
@@ -0,0 +1,140 @@
+package person.notfresh.noteplus.search;
+
+import android.util.Log;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.wltea.analyzer.lucene.IKAnalyzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程内共用的分词器
+ * IKAnalyzer（智能分词）只创建一次，索引构建器和搜索服务共用；Analyzer 按线程复用分词组件，
+ * 重建索引构建器或搜索服务时不再重新创建分析器。实例随进程存在，不关闭（关闭后按线程缓存的组件会失效）
+ * 同时按查询串缓存分词结果（LRU），翻页、补全和防抖后的重复搜索不再重新分词
+ */
+public final class AnalyzerHolder {
+    private static final String TAG = "AnalyzerHolder";
+    // 分词结果缓存条数
+    private static final int TOKEN_CACHE_SIZE = 128;
+    // 分词时使用的字段名（IKAnalyzer 不区分字段）
+    private static final String FIELD_CONTENT = "content";
+
+    private static volatile Analyzer analyzer;
+    // accessOrder = true，按访问顺序淘汰最久未使用的条目
+    private static final LinkedHashMap<String, List<String>> tokenCache =
+            new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    return size() > TOKEN_CACHE_SIZE;
+                }
+            };
+
+    private AnalyzerHolder() {
+    }
+
+    /**
+     * 获取共用的分析器，首次调用时创建
+     */
+    public static Analyzer get() {
+        if (analyzer == null) {
+            synchronized (AnalyzerHolder.class) {
+                if (analyzer == null) {
+                    long start = System.currentTimeMillis();
+                    analyzer = new IKAnalyzer(true);
+                    Log.i(TAG, "分析器创建完成，耗时 " + (System.currentTimeMillis() - start) + "ms");
+                }
+            }
+        }
+        return analyzer;
+    }
+
+    /**
+     * 对文本分词，结果按文本缓存
+     * @param text 文本
+     * @return 分词结果（不可修改）；文本为空或分词失败时返回空列表
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        synchronized (tokenCache) {
+            List<String> cached = tokenCache.get(text);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream tokenStream = get().tokenStream(FIELD_CONTENT, text)) {
+            CharTermAttribute termAttr = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                String term = termAttr.toString();
+                if (!term.isEmpty()) {
+                    tokens.add(term);
+                }
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            Log.e(TAG, "分词失败", e);
+            // 失败的结果不缓存
+            return Collections.emptyList();
+        }
+        List<String> result = Collections.unmodifiableList(tokens);
+        synchronized (tokenCache) {
+            tokenCache.put(text, result);
+        }
+        return result;
+    }
+
+    /**
+     * 分词后取最后一个词（输入补全用，不缓存）
+     * @param text 文本
+     * @return 最后一个词及其在文本中的起始位置；没有词或分词失败时返回 null
+     */
+    public static Token lastToken(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        Token last = null;
+        try (TokenStream tokenStream = get().tokenStream(FIELD_CONTENT, text)) {
+            CharTermAttribute termAttr = tokenStream.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAttr = tokenStream.addAttribute(OffsetAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                String term = termAttr.toString();
+                if (!term.isEmpty() && (last == null || offsetAttr.startOffset() >= last.startOffset)) {
+                    last = new Token(term, offsetAttr.startOffset(), offsetAttr.endOffset());
+                }
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            Log.e(TAG, "分词失败", e);
+            return null;
+        }
+        return last;
+    }
+
+    /**
+     * 一个词及其在原文中的位置 [startOffset, endOffset)
+     */
+    public static final class Token {
+        public final String term;
+        public final int startOffset;
+        public final int endOffset;
+
+        Token(String term, int startOffset, int endOffset) {
+            this.term = term;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package person.notfresh.noteplus.search;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分面计数收集器
+ * 遍历查询命中的所有文档，按 SortedSetDocValues 统计各字段每个取值的文档数，同时统计命中总数
+ * 每个段内先按序号（ord）计数，换段时再转换成字符串累加，避免对每个文档查找取值
+ * （项目只依赖 lucene-core，没有引入 lucene-facet 模块）
+ */
+class FacetCollector extends SimpleCollector {
+    private final String[] fields;
+    private final List<Map<String, Integer>> counts = new ArrayList<>();
+    private SortedSetDocValues[] leafValues;
+    private int[][] leafCounts;
+    private int totalHits;
+
+    FacetCollector(String... fields) {
+        this.fields = fields;
+        for (int i = 0; i < fields.length; i++) {
+            counts.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        flushLeaf();
+        leafValues = new SortedSetDocValues[fields.length];
+        leafCounts = new int[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            // 字段不存在时返回空的 DocValues
+            leafValues[i] = DocValues.getSortedSet(context.reader(), fields[i]);
+            leafCounts[i] = new int[(int) leafValues[i].getValueCount()];
+        }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        totalHits++;
+        for (int i = 0; i < fields.length; i++) {
+            SortedSetDocValues values = leafValues[i];
+            if (values.advanceExact(doc)) {
+                long ord;
+                while ((ord = values.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+                    leafCounts[i][(int) ord]++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+    /**
+     * 命中总数
+     */
+    int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * 获取某个字段的计数
+     * @param field 字段名（必须是构造时传入的字段）
+     * @param limit 最多返回的取值数
+     * @return 取值 -> 文档数，按文档数降序
+     */
+    Map<String, Integer> getCounts(String field, int limit) throws IOException {
+        flushLeaf();
+        int index = -1;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(field)) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return Collections.emptyMap();
+        }
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.get(index).entrySet());
+        entries.sort((a, b) -> !a.getValue().equals(b.getValue())
+                ? Integer.compare(b.getValue(), a.getValue()) : a.getKey().compareTo(b.getKey()));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 把当前段的序号计数转换成字符串计数
+     */
+    private void flushLeaf() throws IOException {
+        if (leafValues == null) {
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            Map<String, Integer> fieldCounts = counts.get(i);
+            int[] ordCounts = leafCounts[i];
+            for (int ord = 0; ord < ordCounts.length; ord++) {
+                if (ordCounts[ord] > 0) {
+                    String value = leafValues[i].lookupOrd(ord).utf8ToString();
+                    Integer previous = fieldCounts.get(value);
+                    fieldCounts.put(value, previous != null ? previous + ordCounts[ord] : ordCounts[ord]);
+                }
+            }
+        }
+        leafValues = null;
+        leafCounts = null;
+    }
+}
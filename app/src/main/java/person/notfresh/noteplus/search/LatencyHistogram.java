@@ -0,0 +1,108 @@
+package person.notfresh.noteplus.search;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时直方图
+ * 按固定的毫秒区间计数，用于观察查询延迟的分布；分位数取所在区间的上界
+ * 只做原子计数，可以在多个线程中同时记录
+ */
+public class LatencyHistogram {
+    // 各区间的上界（毫秒），最后还有一个无上界的区间
+    private static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long millis = nanos / 1_000_000;
+        int bucket = BUCKET_BOUNDS_MS.length;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            if (millis < BUCKET_BOUNDS_MS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        counts.incrementAndGet(bucket);
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // CAS 失败时重试
+        }
+    }
+
+    /**
+     * 获取记录次数
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * 估算分位数
+     * @param percentile 分位（0~1，例如 0.95）
+     * @return 所在区间的上界（毫秒），落在最后一个区间时返回最大值；没有记录时返回 0
+     */
+    public long getPercentileMs(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return BUCKET_BOUNDS_MS[i];
+            }
+        }
+        return maxNanos.get() / 1_000_000;
+    }
+
+    /**
+     * 获取平均耗时（毫秒）
+     */
+    public double getAverageMs() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : totalNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /**
+     * 生成摘要，例如 "n=20 avg=3.1ms p50<5ms p95<20ms p99<20ms max=14ms [<1:2 <2:5 ...]"
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "n=%d avg=%.1fms p50<%dms p95<%dms p99<%dms max=%dms [",
+                getCount(), getAverageMs(), getPercentileMs(0.5), getPercentileMs(0.95),
+                getPercentileMs(0.99), maxNanos.get() / 1_000_000));
+        for (int i = 0; i < counts.length(); i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(i < BUCKET_BOUNDS_MS.length ? "<" + BUCKET_BOUNDS_MS[i] : ">=" + BUCKET_BOUNDS_MS[i - 1])
+                    .append(':').append(counts.get(i));
+        }
+        return sb.append(']').toString();
+    }
+}
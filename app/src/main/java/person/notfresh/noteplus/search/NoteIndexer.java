@@ -4,25 +4,51 @@ import android.content.Context;
 import android.database.Cursor;
 import android.util.Log;
 
-import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LiveIndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.ReaderManager;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.SimpleFSLockFactory;
-import org.wltea.analyzer.lucene.IKAnalyzer;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import person.notfresh.noteplus.db.DbHelperCache;
 import person.notfresh.noteplus.db.NoteDbHelper;
 import person.notfresh.noteplus.db.ProjectContextManager;
 
@@ -30,43 +56,327 @@ import person.notfresh.noteplus.db.ProjectContextManager;
  * 笔记索引构建器
  * 负责构建和更新 Lucene 索引
  *
- * <p><b>线程安全注意事项：</b>IndexWriter 不是线程安全的。
- * 多个线程共享同一个 NoteIndexer 实例调用索引操作可能导致数据损坏或异常。
- * 每个线程应使用独立的 NoteIndexer 实例，或在外部进行同步控制。
+ * <p><b>线程安全注意事项：</b>同一个索引目录只能有一个 IndexWriter。
+ * 多个 NoteIndexer 实例同时打开同一个项目的分片会因写锁失败，进程内只使用 SearchManager 持有的实例。
+ *
+ * <p>构造时不做任何 IO：已有分片在第一次读写时才打开（{@link #ensureOpen}），
+ * 启动后可在后台调用 {@link #warmUp} 提前打开并预热，不阻塞首帧。
+ *
+ * <p>每个项目一个分片（{@code search_index/p_<项目名的十六进制>}），各自有一个 {@link ReaderManager}；
+ * 搜索时把所有分片当前的 reader 组合成一个 MultiReader（见 {@link #acquireReader}）。
+ * IndexWriter 只在写入时打开，最多同时保留 {@link #MAX_OPEN_WRITERS} 个，超出时关闭最久未写入的；
+ * 有写入器的分片使用近实时 reader，其余分片直接读取最近一次提交，项目再多也不会每个都占着写锁和内存缓冲。
+ * 删除、回收或重建一个项目只关闭并删除它自己的分片，不影响其他项目。
+ *
+ * <p>每个文档以 "项目名:笔记ID" 作为唯一键（{@code key} 字段，StringField），
+ * 不同项目的同号笔记互不冲突，更新和删除都按该键精确匹配。
+ *
+ * <p>笔记的追加内容作为同一文档的多值 {@code comment} 字段索引，命中追加内容时返回的仍是所属笔记；
+ * 追加内容增删改后按笔记重建这一个文档。
+ *
+ * <p>项目名、标签、归档状态以 StringField 索引，用于在索引内过滤；项目名和标签另有 SortedSetDocValues，
+ * 用于统计搜索结果的分面计数；时间戳另有 NumericDocValues，只有过滤条件时按时间排序。
+ * 已归档的笔记也会索引（{@code archived} 为 "1"），默认搜索时排除。
+ *
+ * <p>索引与数据库通过各项目的 {@code change_log} 表同步（由触发器写入），
+ * 已同步到的日志序号作为检查点保存在该项目分片提交的 user data 中，见 {@link #syncChanges}。
  */
 public class NoteIndexer implements Closeable {
     private static final String TAG = "NoteIndexer";
     public static final String INDEX_DIR = "search_index";
+    // 分片目录名前缀，后接项目名 UTF-8 字节的十六进制（项目名可以是中文，不能直接用作文件名）
+    private static final String SHARD_DIR_PREFIX = "p_";
     private static final String FIELD_ID = "id";
+    // 文档唯一键：项目名:笔记ID
+    private static final String FIELD_KEY = "key";
     private static final String FIELD_CONTENT = "content";
+    // 追加内容（多值，每条追加内容一个值）
+    private static final String FIELD_COMMENT = "comment";
     private static final String FIELD_TIMESTAMP = "timestamp";
     private static final String FIELD_PROJECT_NAME = "projectName";
+    private static final String FIELD_TAG = "tag";
+    private static final String FIELD_ARCHIVED = "archived";
+    // 置顶（1/0），DocValues 供搜索排序读取置顶加成，存储值供结果列表显示
+    private static final String FIELD_PINNED = SearchRanking.FIELD_PINNED;
+    // 花费，只存储，结果列表直接显示不回表
+    private static final String FIELD_COST = "cost";
+    // 内容字段：分词、存储，并在倒排中记录字符偏移，搜索高亮时直接读取偏移，不再扫描全文
+    static final FieldType CONTENT_TYPE = new FieldType(TextField.TYPE_STORED);
+    static {
+        CONTENT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        CONTENT_TYPE.freeze();
+    }
+    // 同步时每批的笔记/日志条数：每批提交一次索引
+    private static final int BULK_BATCH_SIZE = 500;
+    // 分片提交 user data 中检查点（已同步到的变更日志序号）的键
+    private static final String COMMIT_KEY_CHANGE_SEQ = "change_seq";
+    // 批量索引时的内存缓冲（MB），减少中途刷盘的段数，结束后恢复原值
+    private static final double BULK_RAM_BUFFER_MB = 48;
+    // 同时打开的 IndexWriter 上限（每个写入器持有写锁和内存缓冲）
+    static final int MAX_OPEN_WRITERS = 3;
+    // 文件修改时间精度有限，修改时间距今不足该值的数据库文件不记录状态，下次同步仍打开统计
+    private static final long DB_STAMP_SETTLE_MS = 2000;
 
     private final Context context;
     private final ProjectContextManager projectContextManager;
-    private Analyzer analyzer;
-    private Directory indexDirectory;
-    private IndexWriter indexWriter;
+    private final File indexRoot;
+    // 项目名 -> 已打开的分片，首次读写时打开
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    // 已打开写入器的分片，按最近写入顺序排列（只在持有本对象锁时访问）
+    private final LinkedHashMap<String, Shard> openWriters = new LinkedHashMap<>(16, 0.75f, true);
+    // 项目名 -> 上次统计到没有待同步变更时数据库文件的状态（只在持有本对象锁时访问）
+    private final Map<String, String> syncedDbStamps = new HashMap<>();
+    // 已有分片是否已打开（见 ensureOpen）
+    private volatile boolean opened = false;
+    private volatile boolean closed = false;
+
+    /**
+     * 一个项目的索引分片
+     */
+    private static final class Shard {
+        final String projectName;
+        final File dir;
+        final Directory directory;
+        // 写入器，没有写入时为 null（只在持有 NoteIndexer 锁时读写，见 openWriter）
+        IndexWriter writer;
+        // 有写入器时为近实时 reader，否则直接读取最近一次提交；还没有任何提交时为 null
+        private ReaderManager readerManager;
+        // 已同步到的变更日志序号，随分片一起提交，索引内容与检查点不会不一致；null 表示需要全量索引
+        Long checkpoint;
+
+        Shard(String projectName, File dir, Directory directory) {
+            this.projectName = projectName;
+            this.dir = dir;
+            this.directory = directory;
+        }
+
+        synchronized ReaderManager getReaderManager() {
+            return readerManager;
+        }
+
+        /**
+         * 取得当前 reader 的引用，并把对应的 ReaderManager 加入 managers（释放时必须交给同一个 manager）
+         * @return reader，分片还没有可读的提交时返回 null
+         */
+        synchronized DirectoryReader acquire(List<ReaderManager> managers) throws IOException {
+            if (readerManager == null) {
+                return null;
+            }
+            DirectoryReader reader = readerManager.acquire();
+            managers.add(readerManager);
+            return reader;
+        }
+
+        /**
+         * 换用新的 ReaderManager 并关闭旧的；正在使用旧 reader 的搜索不受影响，释放时才真正关闭
+         */
+        void swapReaderManager(ReaderManager next) throws IOException {
+            ReaderManager previous;
+            synchronized (this) {
+                previous = readerManager;
+                readerManager = next;
+            }
+            if (previous != null) {
+                previous.close();
+            }
+        }
+
+        void close() throws IOException {
+            try {
+                swapReaderManager(null);
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+            } finally {
+                directory.close();
+            }
+        }
+    }
 
     public NoteIndexer(Context context, ProjectContextManager projectContextManager) {
         this.context = context.getApplicationContext();
         this.projectContextManager = projectContextManager;
-        initIndex();
+        this.indexRoot = new File(this.context.getFilesDir(), INDEX_DIR);
+    }
+
+    /**
+     * 第一次读写前打开已有的分片（打开目录和读取最近一次提交的 reader，写入器在写入时才打开）
+     * 之后直接返回；还没有分片的项目在首次写入时创建
+     */
+    private void ensureOpen() {
+        if (!opened) {
+            openExistingShards();
+        }
+    }
+
+    private synchronized void openExistingShards() {
+        if (opened || closed) {
+            return;
+        }
+        android.os.Trace.beginSection("NoteIndexer#open");
+        long start = System.currentTimeMillis();
+        try {
+            openIndexRoot();
+        } finally {
+            opened = true;
+            android.os.Trace.endSection();
+        }
+        Log.i(TAG, "索引分片已打开 " + shards.size() + " 个，耗时 " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private void openIndexRoot() {
+        if (!indexRoot.exists()) {
+            indexRoot.mkdirs();
+        }
+        // 旧版本所有项目共用根目录下的一个索引，改为分片后直接删除，各项目没有检查点，随后的同步会全量索引
+        File[] files = indexRoot.listFiles();
+        if (files != null) {
+            int removed = 0;
+            for (File file : files) {
+                if (file.isFile() && file.delete()) {
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                Log.i(TAG, "已删除旧的单一索引文件 " + removed + " 个");
+            }
+        }
+        // 打开已有的分片，搜索时才能读到
+        for (String projectName : projectContextManager.getProjectList()) {
+            if (new File(indexRoot, shardDirName(projectName)).isDirectory()) {
+                try {
+                    openShard(projectName);
+                } catch (IOException e) {
+                    Log.e(TAG, "打开项目 " + projectName + " 的索引分片失败", e);
+                }
+            }
+        }
+        Log.d(TAG, "索引目录: " + indexRoot.getAbsolutePath());
+    }
+
+    /**
+     * 预热：打开已有分片，并读取各分段的词典和 DocValues，使首次搜索不再承担打开和加载的开销
+     * 应在后台线程调用
+     */
+    public void warmUp() {
+        android.os.Trace.beginSection("NoteIndexer#warmUp");
+        long start = System.currentTimeMillis();
+        int segments = 0;
+        try {
+            ensureOpen();
+            try (ShardReader shardReader = acquireReader()) {
+                for (LeafReaderContext leaf : shardReader.getReader().leaves()) {
+                    LeafReader leafReader = leaf.reader();
+                    for (String field : new String[]{FIELD_CONTENT, FIELD_COMMENT, FIELD_TAG}) {
+                        Terms terms = leafReader.terms(field);
+                        if (terms != null) {
+                            terms.iterator().next();
+                        }
+                    }
+                    DocValues.getNumeric(leafReader, FIELD_TIMESTAMP);
+                    DocValues.getNumeric(leafReader, FIELD_PINNED);
+                    DocValues.getSortedSet(leafReader, FIELD_PROJECT_NAME);
+                    DocValues.getSortedSet(leafReader, FIELD_TAG);
+                    segments++;
+                }
+            }
+        } catch (AlreadyClosedException e) {
+            Log.w(TAG, "索引构建器已关闭，跳过预热");
+        } catch (IOException e) {
+            Log.e(TAG, "索引预热失败", e);
+        } finally {
+            android.os.Trace.endSection();
+        }
+        Log.i(TAG, "索引预热完成，" + segments + " 个分段，耗时 " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * 获取项目的分片，不存在时创建
+     */
+    private Shard getShard(String projectName) throws IOException {
+        ensureOpen();
+        Shard shard = shards.get(projectName);
+        return shard != null ? shard : openShard(projectName);
+    }
+
+    /**
+     * 打开项目的分片目录，已有提交时打开直接读取提交的 reader；不打开写入器
+     */
+    private synchronized Shard openShard(String projectName) throws IOException {
+        if (closed) {
+            throw new AlreadyClosedException("索引构建器已关闭");
+        }
+        Shard shard = shards.get(projectName);
+        if (shard != null) {
+            return shard;
+        }
+        File dir = new File(indexRoot, shardDirName(projectName));
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        Directory directory = new org.apache.lucene.store.NIOFSDirectory(dir.toPath());
+        shard = new Shard(projectName, dir, directory);
+        try {
+            if (DirectoryReader.indexExists(directory)) {
+                shard.checkpoint = readCheckpoint(directory);
+                shard.readerManager = new ReaderManager(directory);
+            }
+        } catch (IOException | RuntimeException e) {
+            directory.close();
+            throw e;
+        }
+        shards.put(projectName, shard);
+        Log.d(TAG, "打开项目 " + projectName + " 的索引分片，检查点 " + shard.checkpoint);
+        return shard;
     }
 
-    private void initIndex() {
+    /**
+     * 获取分片的写入器，没有时打开，并把 reader 换成近实时的
+     * 打开的写入器超过 {@link #MAX_OPEN_WRITERS} 个时关闭最久未写入的；调用方必须持有本对象锁直到写完
+     */
+    private IndexWriter openWriter(Shard shard) throws IOException {
+        if (shard.writer == null) {
+            // 各分片共用同一个分析器（Analyzer 可以跨线程复用），IndexWriterConfig 不能共用
+            IndexWriter writer = new IndexWriter(shard.directory, new IndexWriterConfig(AnalyzerHolder.get()));
+            ReaderManager nrtManager;
+            try {
+                // 近实时：直接读取 IndexWriter 中未提交的变更，删除立即生效
+                nrtManager = new ReaderManager(writer, true, false);
+            } catch (IOException | RuntimeException e) {
+                writer.close();
+                throw e;
+            }
+            shard.writer = writer;
+            shard.swapReaderManager(nrtManager);
+            Log.d(TAG, "打开项目 " + shard.projectName + " 的索引写入器");
+        }
+        openWriters.put(shard.projectName, shard);
+        Iterator<Shard> eldest = openWriters.values().iterator();
+        while (openWriters.size() > MAX_OPEN_WRITERS) {
+            Shard idle = eldest.next();
+            eldest.remove();
+            closeWriter(idle);
+        }
+        return shard.writer;
+    }
+
+    /**
+     * 关闭分片的写入器（提交未提交的变更），reader 换成直接读取提交的
+     */
+    private void closeWriter(Shard shard) {
+        IndexWriter writer = shard.writer;
+        if (writer == null) {
+            return;
+        }
+        shard.writer = null;
         try {
-            File indexDir = new File(context.getFilesDir(), INDEX_DIR);
-            if (!indexDir.exists()) {
-                indexDir.mkdirs();
-            }
-            indexDirectory = new org.apache.lucene.store.NIOFSDirectory(indexDir.toPath());
-            analyzer = new IKAnalyzer(true);
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-            indexWriter = new IndexWriter(indexDirectory, config);
-            Log.i(TAG, "索引初始化成功，索引目录: " + indexDir.getAbsolutePath());
+            writer.close();
+            shard.swapReaderManager(DirectoryReader.indexExists(shard.directory)
+                    ? new ReaderManager(shard.directory) : null);
+            Log.d(TAG, "关闭项目 " + shard.projectName + " 的空闲索引写入器");
         } catch (IOException e) {
-            Log.e(TAG, "索引初始化失败", e);
+            Log.e(TAG, "关闭项目 " + shard.projectName + " 的索引写入器失败", e);
         }
     }
 
@@ -79,31 +389,48 @@ public class NoteIndexer implements Closeable {
      * @return 是否成功
      */
     public boolean indexNote(long noteId, String content, long timestamp, String projectName) {
-        if (indexWriter == null) {
-            Log.e(TAG, "索引写入器未初始化");
-            return false;
+        // 花费和置顶以数据库为准（合并、移动得到的笔记可能带有花费）
+        double cost = 0;
+        boolean pinned = false;
+        // 持有引用，查询和写索引期间该项目的数据库不会因淘汰而关闭
+        try (DbHelperCache.Lease lease = projectContextManager.acquireDbHelper(projectName)) {
+            NoteDbHelper noteDbHelper = lease != null ? lease.getHelper() : null;
+            if (noteDbHelper != null) {
+                Cursor cursor = noteDbHelper.getNotesForIndex(Collections.singletonList(noteId));
+                try {
+                    if (cursor.moveToFirst()) {
+                        pinned = cursor.getInt(4) == 1;
+                        cost = cursor.getDouble(5);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return indexNote(noteDbHelper, noteId, content, timestamp, false, pinned, cost, projectName);
         }
+    }
+
+    /**
+     * @param noteDbHelper 笔记所在项目的数据库（调用方持有引用），为 null 时不写入追加内容和标签
+     */
+    private synchronized boolean indexNote(NoteDbHelper noteDbHelper, long noteId, String content, long timestamp,
+                                           boolean archived, boolean pinned, double cost, String projectName) {
         try {
-            // 先删除旧文档（如果存在）
-            indexWriter.deleteDocuments(new Term(FIELD_ID, String.valueOf(noteId)));
-
-            // 创建新文档
-            Document doc = new Document();
-            doc.add(new LongPoint(FIELD_ID, noteId));
-            doc.add(new StoredField(FIELD_ID, noteId));
-            doc.add(new TextField(FIELD_CONTENT, content, Field.Store.YES));
-            doc.add(new LongPoint(FIELD_TIMESTAMP, timestamp));
-            doc.add(new StoredField(FIELD_TIMESTAMP, timestamp));
-            doc.add(new StoredField(FIELD_PROJECT_NAME, projectName));
-
-            indexWriter.addDocument(doc);
-            indexWriter.commit();
-
-            // 标记为已索引（使用对应项目的dbHelper）
-            NoteDbHelper noteDbHelper = projectContextManager.getDbHelperForProject(projectName);
+            Shard shard = getShard(projectName);
+            IndexWriter writer = openWriter(shard);
+            // 追加内容和标签与笔记写在同一文档中
+            List<String> comments = null;
+            List<String> tags = null;
             if (noteDbHelper != null) {
-                noteDbHelper.markNoteIndexed(noteId);
+                List<Long> noteIds = Collections.singletonList(noteId);
+                comments = noteDbHelper.getCommentContentsForNotes(noteIds).get(noteId);
+                tags = noteDbHelper.getTagNamesForNotes(noteIds).get(noteId);
             }
+            // 替换旧文档（如果存在）
+            writer.updateDocument(keyTerm(projectName, noteId),
+                    buildDocument(noteId, content, timestamp, archived, pinned, cost, projectName, comments, tags));
+            writer.commit();
+            refreshReader(shard);
             Log.d(TAG, "笔记 " + noteId + " 索引构建成功");
             return true;
         } catch (AlreadyClosedException e) {
@@ -116,20 +443,59 @@ public class NoteIndexer implements Closeable {
     }
 
     /**
-     * 从索引中删除指定笔记（仅从索引中删除，不处理数据库标记）
+     * 按数据库中的当前内容重建单条笔记的索引（追加内容增删改、归档和还原、置顶切换后调用）
+     * 笔记已不存在时不做处理
      * @param noteId 笔记ID
+     * @param projectName 笔记所在项目
      * @return 是否成功
      */
-    public boolean deleteNoteIndex(long noteId) {
-        if (indexWriter == null) {
-            Log.e(TAG, "索引写入器未初始化");
-            return false;
+    public boolean reindexNote(long noteId, String projectName) {
+        try (DbHelperCache.Lease lease = projectContextManager.acquireDbHelper(projectName)) {
+            if (lease == null) {
+                return false;
+            }
+            NoteDbHelper noteDbHelper = lease.getHelper();
+            String content;
+            long timestamp;
+            boolean archived;
+            boolean pinned;
+            double cost;
+            Cursor cursor = noteDbHelper.getNotesForIndex(Collections.singletonList(noteId));
+            try {
+                if (!cursor.moveToFirst()) {
+                    return false;
+                }
+                content = cursor.getString(1);
+                timestamp = cursor.getLong(2);
+                archived = cursor.getInt(3) == 1;
+                pinned = cursor.getInt(4) == 1;
+                cost = cursor.getDouble(5);
+            } finally {
+                cursor.close();
+            }
+            return indexNote(noteDbHelper, noteId, content != null ? content : "", timestamp,
+                    archived, pinned, cost, projectName);
         }
+    }
+
+    /**
+     * 从索引中删除指定笔记（仅从索引中删除，不处理数据库标记）
+     * @param noteId 笔记ID
+     * @param projectName 笔记所在项目
+     * @return 是否成功
+     */
+    public synchronized boolean deleteNoteIndex(long noteId, String projectName) {
         try {
-            indexWriter.deleteDocuments(new Term(FIELD_ID, String.valueOf(noteId)));
-            indexWriter.commit();
+            Shard shard = getShard(projectName);
+            IndexWriter writer = openWriter(shard);
+            writer.deleteDocuments(keyTerm(projectName, noteId));
+            writer.commit();
+            refreshReader(shard);
             Log.d(TAG, "笔记 " + noteId + " 从索引中删除");
             return true;
+        } catch (AlreadyClosedException e) {
+            Log.w(TAG, "索引写入器已关闭，跳过删除笔记 " + noteId);
+            return false;
         } catch (IOException e) {
             Log.e(TAG, "删除笔记 " + noteId + " 索引失败", e);
             return false;
@@ -137,80 +503,518 @@ public class NoteIndexer implements Closeable {
     }
 
     /**
-     * 批量构建未索引笔记的索引（跨所有项目）
-     * @param progressCallback 进度回调 (current, total)
-     * @return 成功构建的数量
+     * 获取所有已打开分片当前的 reader，组合成一个 MultiReader
+     * 各分片的 reader 只在写入后刷新，这里直接取用；没有写入器的分片读取最近一次提交。
+     * 调用方用完后必须关闭返回的 {@link ShardReader}
+     * @return 组合后的 reader（没有分片时为空的 MultiReader）
+     */
+    public ShardReader acquireReader() throws IOException {
+        ensureOpen();
+        List<ReaderManager> managers = new ArrayList<>();
+        List<DirectoryReader> readers = new ArrayList<>();
+        try {
+            for (Shard shard : shards.values()) {
+                DirectoryReader reader = shard.acquire(managers);
+                if (reader != null) {
+                    readers.add(reader);
+                }
+            }
+            return new ShardReader(managers, readers);
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < readers.size(); i++) {
+                managers.get(i).release(readers.get(i));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 一次搜索持有的各分片 reader
      */
-    public int indexUnindexedNotes(java.util.function.BiConsumer<Integer, Integer> progressCallback) {
+    public static final class ShardReader implements Closeable {
+        private final List<ReaderManager> managers;
+        private final List<DirectoryReader> readers;
+        private final MultiReader reader;
+
+        private ShardReader(List<ReaderManager> managers, List<DirectoryReader> readers) throws IOException {
+            this.managers = managers;
+            this.readers = readers;
+            // 子 reader 由各自的 ReaderManager 管理引用计数，MultiReader 关闭时不关闭它们
+            this.reader = new MultiReader(readers.toArray(new IndexReader[0]), false);
+        }
+
+        public IndexReader getReader() {
+            return reader;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                reader.close();
+            } finally {
+                for (int i = 0; i < readers.size(); i++) {
+                    managers.get(i).release(readers.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入后刷新分片的 reader，使新文档和删除对搜索可见
+     * 没有变更时 maybeRefresh 不会重新打开 reader
+     */
+    private void refreshReader(Shard shard) {
+        try {
+            ReaderManager readerManager = shard.getReaderManager();
+            if (readerManager != null) {
+                readerManager.maybeRefresh();
+            }
+        } catch (AlreadyClosedException e) {
+            Log.w(TAG, "分片 " + shard.projectName + " 已关闭，跳过刷新");
+        } catch (IOException e) {
+            Log.e(TAG, "刷新分片 " + shard.projectName + " 失败", e);
+        }
+    }
+
+    /**
+     * 按变更日志同步索引（跨所有项目）
+     * 没有检查点的项目（首次索引、分片被删除或重建、数据库被替换）全量索引一次；
+     * 其余项目只读取检查点之后的变更日志，按笔记ID回表：存在的更新文档，已删除的从索引中删除。
+     * 每 BULK_BATCH_SIZE 条提交一次分片，检查点随同一次提交写入，之后删除已同步的日志；
+     * 中途中断时从上次提交的检查点继续，重复处理同一条日志没有副作用。
+     * 已不在项目列表中的项目（删除、移入回收站、重命名前的旧名）的分片会被删除。
+     * 索引期间临时调大内存缓冲，避免逐条 commit 导致的大量 fsync
+     * @param progressCallback 进度回调 (current, total)，每批回调一次
+     * @return 处理的笔记/日志条数
+     */
+    public synchronized int syncChanges(java.util.function.BiConsumer<Integer, Integer> progressCallback) {
+        if (closed) {
+            Log.e(TAG, "索引构建器已关闭");
+            return 0;
+        }
+        ensureOpen();
         List<String> projects = projectContextManager.getProjectList();
-        int count = 0;
-        int total = 0;
+        dropOrphanShards(new HashSet<>(projects));
+        int[] progress = new int[2];
+        // 有待处理变更的项目，只为这些项目打开写入器
+        Map<String, Integer> pending = new HashMap<>();
 
-        // 先统计所有未索引笔记总数
-        for (String projectName : projects) {
-            NoteDbHelper dbHelper = projectContextManager.getDbHelperForProject(projectName);
-            if (dbHelper != null) {
-                total += dbHelper.getUnindexedNotes().getCount();
+        // 先统计待处理总数，同步开销与变更数量成正比，而不是与笔记总数成正比
+        // 上次统计到没有变更之后数据库文件没有变化的项目不打开数据库，不会把用户正在用的数据库挤出缓存
+        try {
+            for (String projectName : projects) {
+                Long checkpoint = getShard(projectName).checkpoint;
+                String stamp = readDbStamp(projectName);
+                if (checkpoint != null && stamp != null && stamp.equals(syncedDbStamps.get(projectName))) {
+                    continue;
+                }
+                try (DbHelperCache.Lease lease = projectContextManager.acquireDbHelper(projectName)) {
+                    if (lease == null) {
+                        continue;
+                    }
+                    NoteDbHelper dbHelper = lease.getHelper();
+                    int count = needsFullIndex(dbHelper, checkpoint)
+                            ? dbHelper.countNotesForIndex() : dbHelper.countChanges(checkpoint);
+                    if (count > 0) {
+                        pending.put(projectName, count);
+                        progress[1] += count;
+                        syncedDbStamps.remove(projectName);
+                    } else if (stamp != null) {
+                        // 状态在统计之前读取，统计之后的写入都会改变状态
+                        syncedDbStamps.put(projectName, stamp);
+                    }
+                }
             }
+        } catch (AlreadyClosedException e) {
+            Log.w(TAG, "索引构建器已关闭，同步中止");
+            return 0;
+        } catch (IOException e) {
+            Log.e(TAG, "打开索引分片失败", e);
+            return 0;
+        }
+        if (progress[1] == 0) {
+            Log.d(TAG, "索引已是最新");
+            return 0;
         }
-        Log.i(TAG, "发现 " + total + " 条未索引笔记（跨 " + projects.size() + " 个项目）");
+        Log.i(TAG, "待同步 " + progress[1] + " 条（跨 " + projects.size() + " 个项目）");
 
-        // 遍历所有项目索引
         for (String projectName : projects) {
-            NoteDbHelper dbHelper = projectContextManager.getDbHelperForProject(projectName);
-            if (dbHelper == null) {
+            Shard shard = shards.get(projectName);
+            if (shard == null || !pending.containsKey(projectName)) {
                 continue;
             }
+            // 持有引用，同步期间该项目的数据库不会因淘汰而关闭
+            DbHelperCache.Lease lease = projectContextManager.acquireDbHelper(projectName);
+            if (lease == null) {
+                continue;
+            }
+            NoteDbHelper dbHelper = lease.getHelper();
+            LiveIndexWriterConfig liveConfig = null;
+            double previousRamBuffer = 0;
+            try {
+                liveConfig = openWriter(shard).getConfig();
+                previousRamBuffer = liveConfig.getRAMBufferSizeMB();
+                liveConfig.setRAMBufferSizeMB(BULK_RAM_BUFFER_MB);
+                if (needsFullIndex(dbHelper, shard.checkpoint)) {
+                    indexProject(shard, dbHelper, progress, progressCallback);
+                } else {
+                    applyChanges(shard, dbHelper, progress, progressCallback);
+                }
+            } catch (AlreadyClosedException e) {
+                Log.w(TAG, "项目 " + projectName + " 的分片已关闭，跳过");
+            } catch (IOException e) {
+                Log.e(TAG, "项目 " + projectName + " 索引同步失败", e);
+            } finally {
+                if (liveConfig != null) {
+                    try {
+                        liveConfig.setRAMBufferSizeMB(previousRamBuffer);
+                    } catch (AlreadyClosedException e) {
+                        // 写入器已关闭，无需恢复
+                    }
+                }
+                refreshReader(shard);
+                lease.close();
+            }
+        }
+        Log.i(TAG, "索引同步完成，处理 " + progress[0] + " 条");
+        return progress[0];
+    }
+
+    /**
+     * 是否需要全量索引：没有检查点，或检查点超过了数据库中的最大日志序号（数据库被替换或恢复）
+     */
+    private static boolean needsFullIndex(NoteDbHelper dbHelper, Long checkpoint) {
+        return checkpoint == null || checkpoint > dbHelper.getMaxChangeSeq();
+    }
+
+    /**
+     * 项目数据库文件的状态（主文件和 WAL 文件的修改时间与大小），不打开数据库；任何写入都会改变状态
+     * @return 状态，文件不存在或刚被修改过（修改时间精度内可能还有写入）时返回 null
+     */
+    private String readDbStamp(String projectName) {
+        File dbFile = projectContextManager.getDatabaseFile(projectName);
+        File walFile = new File(dbFile.getPath() + "-wal");
+        long dbModified = dbFile.lastModified();
+        long walModified = walFile.lastModified();
+        if (dbModified == 0
+                || System.currentTimeMillis() - Math.max(dbModified, walModified) < DB_STAMP_SETTLE_MS) {
+            return null;
+        }
+        return dbModified + ":" + dbFile.length() + ":" + walModified + ":" + walFile.length();
+    }
+
+    /**
+     * 全量索引一个项目
+     * 开始前记下当前的最大日志序号作为检查点，全量期间产生的日志留给之后的增量同步处理
+     */
+    private void indexProject(Shard shard, NoteDbHelper dbHelper, int[] progress,
+                              java.util.function.BiConsumer<Integer, Integer> progressCallback) throws IOException {
+        long startSeq = dbHelper.getMaxChangeSeq();
+        // 先清空分片，数据库中已不存在的笔记不会残留
+        shard.writer.deleteAll();
+        long lastId = 0;
+        while (true) {
+            List<Long> batchIds = indexRows(shard, dbHelper, dbHelper.getNotesForIndex(lastId, BULK_BATCH_SIZE));
+            if (batchIds.isEmpty()) {
+                break;
+            }
+            lastId = batchIds.get(batchIds.size() - 1);
+            shard.writer.commit();
+            progress[0] += batchIds.size();
+            if (progressCallback != null) {
+                progressCallback.accept(progress[0], progress[1]);
+            }
+        }
+        commitCheckpoint(shard, startSeq);
+        dbHelper.deleteChanges(startSeq);
+        Log.i(TAG, "项目 " + shard.projectName + " 全量索引完成，检查点 " + startSeq);
+    }
 
-            Cursor cursor = dbHelper.getUnindexedNotes();
+    /**
+     * 按变更日志增量同步一个项目
+     */
+    private void applyChanges(Shard shard, NoteDbHelper dbHelper, int[] progress,
+                              java.util.function.BiConsumer<Integer, Integer> progressCallback) throws IOException {
+        long checkpoint = shard.checkpoint;
+        while (true) {
+            // 同一条笔记在一批日志中多次出现时只处理一次
+            Set<Long> changedIds = new LinkedHashSet<>();
+            long lastSeq = checkpoint;
+            int rows = 0;
+            Cursor cursor = dbHelper.getChanges(checkpoint, BULK_BATCH_SIZE);
             try {
                 while (cursor.moveToNext()) {
-                    long noteId = cursor.getLong(cursor.getColumnIndexOrThrow("_id"));
-                    // 获取笔记完整信息
-                    Cursor noteCursor = dbHelper.getWritableDatabase().query(
-                            NoteDbHelper.TABLE_NOTES,
-                            new String[]{NoteDbHelper.COLUMN_CONTENT, NoteDbHelper.COLUMN_TIMESTAMP},
-                            NoteDbHelper.COLUMN_ID + "=?",
-                            new String[]{String.valueOf(noteId)},
-                            null, null, null
-                    );
-                    if (noteCursor != null && noteCursor.moveToFirst()) {
-                        String content = noteCursor.getString(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_CONTENT));
-                        long timestamp = noteCursor.getLong(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_TIMESTAMP));
-                        if (indexNote(noteId, content, timestamp, projectName)) {
-                            count++;
-                        }
-                        noteCursor.close();
-                    }
-                    if (progressCallback != null) {
-                        progressCallback.accept(count, total);
-                    }
+                    lastSeq = cursor.getLong(0);
+                    changedIds.add(cursor.getLong(1));
+                    rows++;
                 }
             } finally {
                 cursor.close();
             }
+            if (rows == 0) {
+                break;
+            }
+
+            List<Long> noteIds = new ArrayList<>(changedIds);
+            Set<Long> indexedIds = new HashSet<>(indexRows(shard, dbHelper, dbHelper.getNotesForIndex(noteIds)));
+            // 数据库中已不存在的笔记（删除、移动到其他项目）从索引中删除
+            for (Long noteId : noteIds) {
+                if (!indexedIds.contains(noteId)) {
+                    shard.writer.deleteDocuments(keyTerm(shard.projectName, noteId));
+                }
+            }
+            checkpoint = lastSeq;
+            commitCheckpoint(shard, checkpoint);
+            dbHelper.deleteChanges(checkpoint);
+
+            progress[0] += rows;
+            if (progressCallback != null) {
+                progressCallback.accept(progress[0], progress[1]);
+            }
         }
-        Log.i(TAG, "批量索引构建完成，成功 " + count + " 条");
-        return count;
     }
 
     /**
-     * 关闭索引写入器并释放资源
+     * 把游标中的笔记（_id、content、timestamp、is_archived、is_pinned、cost）写入分片，追加内容和标签各一次查询取回
+     * @return 写入的笔记ID，按游标顺序
      */
-    @Override
-    public void close() {
+    private List<Long> indexRows(Shard shard, NoteDbHelper dbHelper, Cursor cursor) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        List<Boolean> archived = new ArrayList<>();
+        List<Boolean> pinned = new ArrayList<>();
+        List<Double> costs = new ArrayList<>();
         try {
-            if (indexWriter != null) {
-                indexWriter.close();
+            while (cursor.moveToNext()) {
+                String content = cursor.getString(1);
+                ids.add(cursor.getLong(0));
+                contents.add(content != null ? content : "");
+                timestamps.add(cursor.getLong(2));
+                archived.add(cursor.getInt(3) == 1);
+                pinned.add(cursor.getInt(4) == 1);
+                costs.add(cursor.getDouble(5));
             }
-            if (analyzer != null) {
-                analyzer.close();
+        } finally {
+            cursor.close();
+        }
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        String projectName = shard.projectName;
+        Map<Long, List<String>> comments = dbHelper.getCommentContentsForNotes(ids);
+        Map<Long, List<String>> tags = dbHelper.getTagNamesForNotes(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            long noteId = ids.get(i);
+            shard.writer.updateDocument(keyTerm(projectName, noteId), buildDocument(noteId, contents.get(i),
+                    timestamps.get(i), archived.get(i), pinned.get(i), costs.get(i), projectName, comments.get(noteId),
+                    tags.get(noteId)));
+        }
+        return ids;
+    }
+
+    /**
+     * 从分片最近一次提交的 user data 中读取检查点
+     * @return 检查点，没有时返回 null
+     */
+    private static Long readCheckpoint(Directory directory) throws IOException {
+        String value = SegmentInfos.readLatestCommit(directory).getUserData().get(COMMIT_KEY_CHANGE_SEQ);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "忽略无效的检查点: " + value);
+            return null;
+        }
+    }
+
+    /**
+     * 把检查点写入 user data 并提交分片，检查点与索引内容在同一次提交中生效
+     */
+    private static void commitCheckpoint(Shard shard, long checkpoint) throws IOException {
+        shard.writer.setLiveCommitData(
+                Collections.singletonMap(COMMIT_KEY_CHANGE_SEQ, String.valueOf(checkpoint)).entrySet());
+        shard.writer.commit();
+        shard.checkpoint = checkpoint;
+    }
+
+    /**
+     * 删除一个项目的分片（项目删除、移入回收站或重命名时调用）
+     * 只关闭并删除该项目自己的分片目录；项目仍在列表中时，下次同步会重新全量索引
+     * @param projectName 项目名称
+     * @return 是否成功
+     */
+    public synchronized boolean dropProject(String projectName) {
+        openWriters.remove(projectName);
+        syncedDbStamps.remove(projectName);
+        Shard shard = shards.remove(projectName);
+        if (shard != null) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                Log.e(TAG, "关闭项目 " + projectName + " 的分片失败", e);
             }
-            if (indexDirectory != null) {
-                indexDirectory.close();
+        }
+        boolean deleted = deleteRecursively(new File(indexRoot, shardDirName(projectName)));
+        Log.i(TAG, "项目 " + projectName + " 的索引分片已删除");
+        return deleted;
+    }
+
+    /**
+     * 清空索引：删除所有项目的分片，随后的同步会按当前格式全量索引所有项目
+     * @return 是否成功
+     */
+    public synchronized boolean clearIndex() {
+        boolean success = true;
+        for (String projectName : new ArrayList<>(shards.keySet())) {
+            success &= dropProject(projectName);
+        }
+        File[] dirs = indexRoot.listFiles();
+        if (dirs != null) {
+            for (File dir : dirs) {
+                success &= deleteRecursively(dir);
+            }
+        }
+        Log.i(TAG, "索引已清空");
+        return success;
+    }
+
+    /**
+     * 删除不在项目列表中的分片（包括磁盘上未打开的分片目录）
+     */
+    private void dropOrphanShards(Set<String> projects) {
+        Set<String> orphans = new HashSet<>();
+        for (String projectName : shards.keySet()) {
+            if (!projects.contains(projectName)) {
+                orphans.add(projectName);
+            }
+        }
+        File[] dirs = indexRoot.listFiles();
+        if (dirs != null) {
+            for (File dir : dirs) {
+                String projectName = projectNameOf(dir.getName());
+                if (projectName != null && !projects.contains(projectName)) {
+                    orphans.add(projectName);
+                }
+            }
+        }
+        for (String projectName : orphans) {
+            dropProject(projectName);
+        }
+    }
+
+    /**
+     * 分片目录名：前缀 + 项目名 UTF-8 字节的十六进制，不同项目名不会映射到同一目录
+     */
+    private static String shardDirName(String projectName) {
+        byte[] bytes = projectName.getBytes(StandardCharsets.UTF_8);
+        StringBuilder name = new StringBuilder(SHARD_DIR_PREFIX.length() + bytes.length * 2);
+        name.append(SHARD_DIR_PREFIX);
+        for (byte b : bytes) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return name.toString();
+    }
+
+    /**
+     * 从分片目录名还原项目名
+     * @return 项目名，不是分片目录时返回 null
+     */
+    private static String projectNameOf(String dirName) {
+        if (!dirName.startsWith(SHARD_DIR_PREFIX) || (dirName.length() - SHARD_DIR_PREFIX.length()) % 2 != 0) {
+            return null;
+        }
+        String hex = dirName.substring(SHARD_DIR_PREFIX.length());
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        return !file.exists() || file.delete();
+    }
+
+    private Document buildDocument(long noteId, String content, long timestamp, boolean archived, boolean pinned,
+                                   double cost, String projectName, List<String> comments, List<String> tags) {
+        Document doc = new Document();
+        doc.add(new StringField(FIELD_KEY, buildKey(projectName, noteId), Field.Store.YES));
+        doc.add(new LongPoint(FIELD_ID, noteId));
+        doc.add(new StoredField(FIELD_ID, noteId));
+        doc.add(new Field(FIELD_CONTENT, content, CONTENT_TYPE));
+        doc.add(new LongPoint(FIELD_TIMESTAMP, timestamp));
+        doc.add(new StoredField(FIELD_TIMESTAMP, timestamp));
+        doc.add(new NumericDocValuesField(FIELD_TIMESTAMP, timestamp));
+        doc.add(new StoredField(FIELD_PROJECT_NAME, projectName));
+        doc.add(new StringField(FIELD_PROJECT_NAME, projectName, Field.Store.NO));
+        doc.add(new SortedSetDocValuesField(FIELD_PROJECT_NAME, new BytesRef(projectName)));
+        doc.add(new StringField(FIELD_ARCHIVED, archived ? "1" : "0", Field.Store.NO));
+        doc.add(new NumericDocValuesField(FIELD_PINNED, pinned ? 1 : 0));
+        doc.add(new StoredField(FIELD_PINNED, pinned ? 1 : 0));
+        doc.add(new StoredField(FIELD_COST, cost));
+        if (tags != null) {
+            for (String tag : new LinkedHashSet<>(tags)) {
+                if (tag != null && !tag.isEmpty()) {
+                    doc.add(new StringField(FIELD_TAG, tag, Field.Store.NO));
+                    doc.add(new SortedSetDocValuesField(FIELD_TAG, new BytesRef(tag)));
+                }
+            }
+        }
+        if (comments != null) {
+            for (String comment : comments) {
+                if (comment != null && !comment.isEmpty()) {
+                    doc.add(new Field(FIELD_COMMENT, comment, CONTENT_TYPE));
+                }
+            }
+        }
+        return doc;
+    }
+
+    private static String buildKey(String projectName, long noteId) {
+        return projectName + ":" + noteId;
+    }
+
+    private static Term keyTerm(String projectName, long noteId) {
+        return new Term(FIELD_KEY, buildKey(projectName, noteId));
+    }
+
+    /**
+     * 是否已关闭（关闭后所有读写都会失败）
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 关闭所有分片并释放资源
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Shard shard : shards.values()) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                Log.e(TAG, "关闭项目 " + shard.projectName + " 的分片失败", e);
             }
-        } catch (IOException e) {
-            Log.e(TAG, "关闭索引写入器失败", e);
         }
+        shards.clear();
+        openWriters.clear();
+        // 分析器进程内共用，不在这里关闭
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,140 @@
+package person.notfresh.noteplus.search;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 片段高亮
+ * 根据匹配词的字符偏移（来自索引中的 offsets，或在旧索引上扫描得到），
+ * 选出匹配最密集的一段窗口，只对这一段加【】标记，耗时与片段长度成正比而不是与全文长度成正比
+ */
+public final class PassageHighlighter {
+    // 片段最大长度（字符）
+    public static final int DEFAULT_SNIPPET_LENGTH = 200;
+    // 片段开头保留的匹配词之前的上下文长度
+    private static final int CONTEXT_BEFORE = 20;
+
+    private PassageHighlighter() {
+    }
+
+    /**
+     * 生成高亮片段
+     * @param content 原始内容
+     * @param offsets 匹配区间 {start, end}，可以无序、可以重叠
+     * @param maxLength 片段最大长度
+     * @return 带【】标记的片段，截断处以 "..." 表示
+     */
+    public static String highlight(String content, List<int[]> offsets, int maxLength) {
+        if (content == null) {
+            return null;
+        }
+        List<int[]> ranges = normalize(offsets, content.length());
+        if (ranges.isEmpty()) {
+            return content.length() > maxLength ? content.substring(0, maxLength) + "..." : content;
+        }
+
+        // 双指针：以每个匹配为窗口起点，统计窗口内完整包含的匹配数，取最多的一个
+        int bestFirst = 0;
+        int bestCount = 0;
+        int last = 0;
+        for (int first = 0; first < ranges.size(); first++) {
+            if (last < first) {
+                last = first;
+            }
+            int limit = ranges.get(first)[0] + maxLength;
+            while (last + 1 < ranges.size() && ranges.get(last + 1)[1] <= limit) {
+                last++;
+            }
+            int count = last - first + 1;
+            if (count > bestCount) {
+                bestCount = count;
+                bestFirst = first;
+            }
+        }
+
+        // 前置上下文不能把起点匹配挤出窗口
+        int[] anchor = ranges.get(bestFirst);
+        int before = Math.max(0, Math.min(CONTEXT_BEFORE, maxLength - (anchor[1] - anchor[0])));
+        int start = Math.max(0, anchor[0] - before);
+        int end = Math.min(content.length(), start + maxLength);
+        // 窗口到达末尾时向前补足长度
+        start = Math.max(0, Math.min(start, end - maxLength));
+
+        StringBuilder snippet = new StringBuilder(end - start + bestCount * 2 + 6);
+        if (start > 0) {
+            snippet.append("...");
+        }
+        int cursor = start;
+        for (int[] range : ranges) {
+            if (range[1] <= start) {
+                continue;
+            }
+            if (range[0] >= end) {
+                break;
+            }
+            int from = Math.max(range[0], start);
+            int to = Math.min(range[1], end);
+            snippet.append(content, cursor, from);
+            snippet.append("【").append(content, from, to).append("】");
+            cursor = to;
+        }
+        snippet.append(content, cursor, end);
+        if (end < content.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    /**
+     * 在内容中扫描匹配词的位置（没有索引偏移的旧文档使用）
+     * @param content 原始内容
+     * @param tokens 分词列表
+     * @return 匹配区间 {start, end}
+     */
+    public static List<int[]> findOffsets(String content, List<String> tokens) {
+        List<int[]> offsets = new ArrayList<>();
+        if (content == null || tokens == null) {
+            return offsets;
+        }
+        Set<String> tokenSet = new HashSet<>(tokens);
+        for (String token : tokenSet) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int index = 0;
+            while ((index = content.indexOf(token, index)) != -1) {
+                offsets.add(new int[]{index, index + token.length()});
+                index += token.length();
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * 排序、裁剪到内容范围内并合并重叠区间
+     */
+    private static List<int[]> normalize(List<int[]> offsets, int contentLength) {
+        List<int[]> sorted = new ArrayList<>(offsets.size());
+        for (int[] range : offsets) {
+            int from = Math.max(0, range[0]);
+            int to = Math.min(contentLength, range[1]);
+            if (from < to) {
+                sorted.add(new int[]{from, to});
+            }
+        }
+        sorted.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+
+        List<int[]> merged = new ArrayList<>(sorted.size());
+        for (int[] range : sorted) {
+            int[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && range[0] <= previous[1]) {
+                previous[1] = Math.max(previous[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+}
@@ -9,43 +9,54 @@ import android.util.Log;
 import java.io.File;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import person.notfresh.noteplus.db.NoteDbHelper;
 import person.notfresh.noteplus.db.ProjectContextManager;
 
 /**
  * 搜索管理器（单例）
- * 统一管理索引构建和搜索服务
+ * 统一管理索引构建和搜索服务；进程内唯一持有 NoteIndexer（各分片的 IndexWriter），
+ * 后台任务也通过这里读写索引，不会有第二个写入器争用写锁
  */
 public class SearchManager {
     private static final String TAG = "SearchManager";
     private static volatile SearchManager instance;
+    private static final String PREFS_NAME = "search_index_prefs";
+    // 排序权重，见 SearchRanking
+    private static final String PREF_RANKING_RECENCY_WEIGHT = "ranking_recency_weight";
+    private static final String PREF_RANKING_HALF_LIFE_DAYS = "ranking_half_life_days";
+    private static final String PREF_RANKING_PINNED_BOOST = "ranking_pinned_boost";
 
     private final Context context;
-    private NoteDbHelper dbHelper;
     private ProjectContextManager projectContextManager;
-    private String projectName;
     private NoteIndexer noteIndexer;
     private SearchService searchService;
     private final Handler mainHandler;
-    private volatile boolean isIndexing = false;
+    // 是否已有异步同步任务在排队或执行（检查和设置是一步，避免两个调用方同时提交同步）
+    private final AtomicBoolean isIndexing = new AtomicBoolean(false);
     private final ExecutorService executorService;
 
-    private SearchManager(Context context, NoteDbHelper dbHelper, ProjectContextManager projectContextManager, String projectName) {
+    private SearchManager(Context context, ProjectContextManager projectContextManager) {
         this.context = context.getApplicationContext();
-        this.dbHelper = dbHelper;
         this.projectContextManager = projectContextManager;
-        this.projectName = projectName;
         this.mainHandler = new Handler(Looper.getMainLooper());
         this.executorService = Executors.newCachedThreadPool();
-        initServices();
+        android.os.Trace.beginSection("SearchManager#init");
+        long start = System.currentTimeMillis();
+        try {
+            initServices();
+        } finally {
+            android.os.Trace.endSection();
+        }
+        Log.i(TAG, "SearchManager 创建耗时 " + (System.currentTimeMillis() - start) + "ms");
     }
 
-    public static SearchManager getInstance(Context context, NoteDbHelper dbHelper, ProjectContextManager projectContextManager, String projectName) {
+    public static SearchManager getInstance(Context context, ProjectContextManager projectContextManager) {
         if (instance == null) {
             synchronized (SearchManager.class) {
                 if (instance == null) {
-                    instance = new SearchManager(context, dbHelper, projectContextManager, projectName);
+                    instance = new SearchManager(context, projectContextManager);
                 }
             }
         }
@@ -56,7 +67,7 @@ public class SearchManager {
         if (instance == null) {
             synchronized (SearchManager.class) {
                 if (instance == null) {
-                    instance = new SearchManager(context, NoteDbHelper.getInstance(context.getApplicationContext()), ProjectContextManager.getInstance(context.getApplicationContext()), "default");
+                    instance = new SearchManager(context, ProjectContextManager.getInstance(context.getApplicationContext()));
                 }
             }
         }
@@ -70,11 +81,71 @@ public class SearchManager {
         if (searchService != null) {
             searchService.close();
         }
+        // 两者构造时都不做 IO，索引分片在第一次读写或预热时才打开
         noteIndexer = new NoteIndexer(context, projectContextManager);
-        searchService = new SearchService(context, projectContextManager);
+        // 搜索服务读取索引构建器各分片的近实时 reader
+        searchService = new SearchService(noteIndexer);
+        searchService.setRanking(loadRanking());
         Log.i(TAG, "SearchManager 初始化完成");
     }
 
+    /**
+     * 设置搜索排序权重并保存，之后的搜索生效
+     * @param ranking 排序权重，null 表示恢复默认
+     */
+    public void setRanking(SearchRanking ranking) {
+        SearchRanking value = ranking != null ? ranking : SearchRanking.DEFAULT;
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit()
+                .putFloat(PREF_RANKING_RECENCY_WEIGHT, (float) value.getRecencyWeight())
+                .putFloat(PREF_RANKING_HALF_LIFE_DAYS, (float) value.getHalfLifeDays())
+                .putFloat(PREF_RANKING_PINNED_BOOST, (float) value.getPinnedBoost())
+                .apply();
+        searchService.setRanking(value);
+    }
+
+    /**
+     * 获取当前的搜索排序权重
+     */
+    public SearchRanking getRanking() {
+        return searchService.getRanking();
+    }
+
+    /**
+     * 读取保存的排序权重，没有保存或保存的值无效时使用默认值
+     */
+    private SearchRanking loadRanking() {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!prefs.contains(PREF_RANKING_RECENCY_WEIGHT)) {
+            return SearchRanking.DEFAULT;
+        }
+        SearchRanking defaults = SearchRanking.DEFAULT;
+        try {
+            return new SearchRanking(
+                    prefs.getFloat(PREF_RANKING_RECENCY_WEIGHT, (float) defaults.getRecencyWeight()),
+                    prefs.getFloat(PREF_RANKING_HALF_LIFE_DAYS, (float) defaults.getHalfLifeDays()),
+                    prefs.getFloat(PREF_RANKING_PINNED_BOOST, (float) defaults.getPinnedBoost()));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "保存的排序权重无效，使用默认值", e);
+            return defaults;
+        }
+    }
+
+    /**
+     * 预热索引（后台执行）：加载分词词典、打开已有分片并读取各分段的词典，首次搜索不再等待
+     * 应在首帧绘制之后调用
+     */
+    public void warmUp() {
+        executorService.execute(() -> {
+            android.os.Trace.beginSection("SearchManager#warmUp");
+            try {
+                AnalyzerHolder.get();
+                noteIndexer.warmUp();
+            } finally {
+                android.os.Trace.endSection();
+            }
+        });
+    }
+
     /**
      * 检查索引是否就绪（存在且版本匹配）
      * @return true 如果索引已就绪
@@ -87,7 +158,7 @@ public class SearchManager {
         }
 
         // 检查版本号
-        SharedPreferences prefs = context.getSharedPreferences("search_index_prefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         int savedVersion = prefs.getInt(NoteDbHelper.PREF_SEARCH_INDEX_VERSION, 0);
         return savedVersion == NoteDbHelper.SEARCH_INDEX_VERSION;
     }
@@ -96,7 +167,7 @@ public class SearchManager {
      * 获取索引版本号
      */
     public int getIndexVersion() {
-        SharedPreferences prefs = context.getSharedPreferences("search_index_prefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         return prefs.getInt(NoteDbHelper.PREF_SEARCH_INDEX_VERSION, 0);
     }
 
@@ -104,7 +175,7 @@ public class SearchManager {
      * 保存索引版本号
      */
     private void saveIndexVersion() {
-        SharedPreferences prefs = context.getSharedPreferences("search_index_prefs", Context.MODE_PRIVATE);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         prefs.edit().putInt(NoteDbHelper.PREF_SEARCH_INDEX_VERSION, NoteDbHelper.SEARCH_INDEX_VERSION).apply();
     }
 
@@ -119,24 +190,24 @@ public class SearchManager {
     }
 
     /**
-     * 重建索引（删除旧索引并触发重建）
+     * 重建索引（后台执行：删除旧索引后全量同步，同步完成后才保存新版本号）
      */
     public void rebuildIndex() {
         executorService.execute(() -> {
-            // 删除旧索引
-            File indexDir = new File(context.getFilesDir(), NoteIndexer.INDEX_DIR);
-            if (indexDir.exists()) {
-                File[] files = indexDir.listFiles();
-                if (files != null) {
-                    for (File file : files) {
-                        file.delete();
-                    }
-                }
+            // 先关闭各分片的写入器再删除分片目录（直接删除文件会破坏正在使用的 IndexWriter）
+            if (!noteIndexer.clearIndex()) {
+                return;
             }
-            Log.i(TAG, "旧索引已删除，触发重建");
+            Log.i(TAG, "旧索引已删除，开始重建");
 
-            // 触发未索引笔记的重建
-            indexUnindexedNotes(null);
+            // 没有检查点，同步时全量索引所有项目；在本任务中同步执行，不会因已有同步任务而被跳过
+            try {
+                int count = syncIndexNow(null);
+                Log.i(TAG, "索引重建完成，共 " + count + " 条");
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "索引重建未完成，不保存版本号", e);
+                return;
+            }
 
             // 保存新版本号
             saveIndexVersion();
@@ -144,18 +215,12 @@ public class SearchManager {
     }
 
     /**
-     * 在项目切换后重绑数据库并重建索引/搜索服务
+     * 删除一个项目的索引分片（后台执行），其他项目的分片不受影响
+     * 项目仍在列表中时（例如从回收站恢复），随后的同步会重新全量索引该项目
+     * @param projectName 项目名称
      */
-    public synchronized void rebindDbHelper(NoteDbHelper newDbHelper, String newProjectName) {
-        if (newDbHelper == null || this.dbHelper == newDbHelper) {
-            return;
-        }
-        this.dbHelper = newDbHelper;
-        this.projectName = newProjectName;
-        // 重置索引状态，允许新的索引任务执行
-        isIndexing = false;
-        initServices();
-        Log.i(TAG, "SearchManager 已切换到新的项目数据库: " + newProjectName);
+    public void dropProjectIndex(String projectName) {
+        executorService.execute(() -> noteIndexer.dropProject(projectName));
     }
 
     /**
@@ -174,54 +239,136 @@ public class SearchManager {
         });
     }
 
+    /**
+     * 按数据库中的当前内容重建单条笔记的索引（追加内容增删改后调用）
+     * @param noteId 笔记ID
+     * @param projectName 笔记所在项目
+     */
+    public void reindexNote(long noteId, String projectName) {
+        executorService.execute(() -> {
+            if (!noteIndexer.reindexNote(noteId, projectName)) {
+                Log.w(TAG, "笔记 " + noteId + " 重建索引失败");
+            }
+        });
+    }
+
     /**
      * 删除笔记索引
      * @param noteId 笔记ID
+     * @param projectName 笔记所在项目
      */
-    public void deleteNoteIndex(long noteId) {
+    public void deleteNoteIndex(long noteId, String projectName) {
         executorService.execute(() -> {
-            noteIndexer.deleteNoteIndex(noteId);
+            noteIndexer.deleteNoteIndex(noteId, projectName);
         });
     }
 
     /**
-     * 搜索笔记
+     * 搜索笔记（第一页）
      * @param query 搜索词
-     * @param callback 搜索结果回调（在主线程）
+     * @param callback 第一页结果回调（在主线程），结果一到就回调，后续页通过 loadMore 获取
      */
     public void search(String query, SearchCallback callback) {
         if (callback == null) {
             return;
         }
         executorService.execute(() -> {
-            java.util.List<SearchResult> results = searchService.search(query);
-            mainHandler.post(() -> callback.onSearchResult(results));
+            SearchPage page = searchService.search(query);
+            mainHandler.post(() -> callback.onSearchResult(page));
+        });
+    }
+
+    /**
+     * 输入补全（后台执行，结果在主线程回调）
+     * 只查词典不执行查询，可以在每次输入变化时直接调用，不需要防抖
+     * @param input 搜索框当前输入
+     * @param callback 补全回调（在主线程）
+     */
+    public void suggest(String input, SuggestCallback callback) {
+        if (callback == null) {
+            return;
+        }
+        executorService.execute(() -> {
+            SearchSuggestions suggestions = searchService.suggest(input, SearchService.SUGGEST_LIMIT);
+            mainHandler.post(() -> callback.onSuggestions(suggestions));
         });
     }
 
     /**
-     * 批量索引未索引的笔记（后台执行）
+     * 加载下一页搜索结果
+     * @param previous 上一页
+     * @param callback 下一页结果回调（在主线程）
+     */
+    public void loadMore(SearchPage previous, SearchCallback callback) {
+        if (callback == null || previous == null || !previous.hasMore()) {
+            return;
+        }
+        executorService.execute(() -> {
+            SearchPage page = searchService.search(previous.getQuery(), previous.getLastScoreDoc(),
+                    SearchService.PAGE_SIZE, previous.getRankingTime());
+            mainHandler.post(() -> callback.onSearchResult(page));
+        });
+    }
+
+    /**
+     * 获取搜索耗时直方图
+     */
+    public LatencyHistogram getSearchLatency() {
+        return searchService.getSearchLatency();
+    }
+
+    /**
+     * 按变更日志同步索引（后台执行）：新增、编辑、删除、移动、归档、追加内容和标签的变化都会反映到索引中
      * @param callback 进度回调（current, total）
      */
-    public void indexUnindexedNotes(java.util.function.BiConsumer<Integer, Integer> callback) {
-        if (isIndexing) {
+    public void syncIndex(java.util.function.BiConsumer<Integer, Integer> callback) {
+        if (!isIndexing.compareAndSet(false, true)) {
             Log.w(TAG, "索引任务已在执行中");
             return;
         }
-        isIndexing = true;
         executorService.execute(() -> {
-            int count = noteIndexer.indexUnindexedNotes((current, total) -> {
-                if (callback != null) {
-                    mainHandler.post(() -> callback.accept(current, total));
-                }
-            });
-            isIndexing = false;
-            Log.i(TAG, "批量索引完成，共 " + count + " 条");
+            try {
+                int count = noteIndexer.syncChanges((current, total) -> {
+                    if (callback != null) {
+                        mainHandler.post(() -> callback.accept(current, total));
+                    }
+                });
+                Log.i(TAG, "索引同步完成，共 " + count + " 条");
+            } finally {
+                isIndexing.set(false);
+            }
         });
     }
 
+    /**
+     * 在调用线程中按变更日志同步索引（供 WorkManager 后台任务使用，与 {@link #syncIndex} 共用同一个写入器）
+     * @param callback 进度回调（current, total），在调用线程中回调
+     * @return 处理的笔记/日志条数
+     * @throws IllegalStateException 索引构建器已关闭（同步前或同步中途），索引没有同步完成
+     */
+    public int syncIndexNow(java.util.function.BiConsumer<Integer, Integer> callback) {
+        NoteIndexer indexer = noteIndexer;
+        if (indexer.isClosed()) {
+            throw new IllegalStateException("索引构建器已关闭");
+        }
+        int count = indexer.syncChanges(callback);
+        if (indexer.isClosed()) {
+            throw new IllegalStateException("索引构建器在同步中途被关闭");
+        }
+        return count;
+    }
+
+    /**
+     * 在调用线程中清空索引（供 WorkManager 后台任务使用）
+     * @return 是否成功
+     */
+    public boolean clearIndexNow() {
+        return noteIndexer.clearIndex();
+    }
+
     /**
      * 释放资源
+     * 单例在进程内共用（后台索引任务、各个界面），只应在不再需要搜索时调用，不要在 Activity 销毁时调用
      */
     public void release() {
         if (noteIndexer != null) {
@@ -238,6 +385,16 @@ public class SearchManager {
      * 搜索回调接口
      */
     public interface SearchCallback {
-        void onSearchResult(java.util.List<SearchResult> results);
+        void onSearchResult(SearchPage page);
+    }
+
+    /**
+     * 补全回调接口
+     */
+    public interface SuggestCallback {
+        /**
+         * @param suggestions 补全结果，{@link SearchSuggestions#getInput()} 为请求补全时的输入，用于丢弃过期的结果
+         */
+        void onSuggestions(SearchSuggestions suggestions);
     }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package person.notfresh.noteplus.search;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一页搜索结果
+ * 记录本页最后一个命中，作为下一页 searchAfter 的锚点
+ * 第一页同时带有命中总数和按项目、标签的分面计数，后续页不再统计
+ * 同时记录计算新近度加成的时间，后续页沿用，保证各页的得分可比
+ */
+public class SearchPage {
+    private final String query;
+    private final List<SearchResult> results;
+    private final ScoreDoc lastScoreDoc;  // 本页最后一个命中，没有命中时为 null
+    private final boolean hasMore;
+    private final int totalHits;  // 命中总数，未统计时为 -1
+    private final Map<String, Integer> projectCounts;  // 项目 -> 命中数，按命中数降序
+    private final Map<String, Integer> tagCounts;      // 标签 -> 命中数，按命中数降序
+    private final long rankingTime;  // 计算新近度加成的时间（毫秒）
+
+    public SearchPage(String query, List<SearchResult> results, ScoreDoc lastScoreDoc, boolean hasMore) {
+        this(query, results, lastScoreDoc, hasMore, -1, null, null, System.currentTimeMillis());
+    }
+
+    public SearchPage(String query, List<SearchResult> results, ScoreDoc lastScoreDoc, boolean hasMore,
+                      int totalHits, Map<String, Integer> projectCounts, Map<String, Integer> tagCounts,
+                      long rankingTime) {
+        this.query = query;
+        this.results = results;
+        this.lastScoreDoc = lastScoreDoc;
+        this.hasMore = hasMore;
+        this.totalHits = totalHits;
+        this.projectCounts = projectCounts != null ? projectCounts : Collections.<String, Integer>emptyMap();
+        this.tagCounts = tagCounts != null ? tagCounts : Collections.<String, Integer>emptyMap();
+        this.rankingTime = rankingTime;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public List<SearchResult> getResults() {
+        return results;
+    }
+
+    public ScoreDoc getLastScoreDoc() {
+        return lastScoreDoc;
+    }
+
+    /**
+     * 是否可能还有下一页（本页命中数等于页大小时为 true）
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * 命中总数（只有第一页统计，其他页为 -1）
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    public Map<String, Integer> getProjectCounts() {
+        return projectCounts;
+    }
+
+    public Map<String, Integer> getTagCounts() {
+        return tagCounts;
+    }
+
+    /**
+     * 计算新近度加成的时间，加载下一页时传回搜索服务
+     */
+    public long getRankingTime() {
+        return rankingTime;
+    }
+}
@@ -0,0 +1,240 @@
+package person.notfresh.noteplus.search;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 解析后的搜索条件
+ * 搜索框中除普通关键词外支持以下过滤条件（可组合，值中有空格时用双引号括起来）：
+ * <ul>
+ *     <li>{@code project:名称}：只搜索指定项目，多个 project: 之间为"或"</li>
+ *     <li>{@code tag:名称}：只搜索带该标签的笔记，多个 tag: 之间为"且"</li>
+ *     <li>{@code date:2024-01-01}、{@code date:2024-01-01..2024-01-31}、{@code date:2024-01-01..}、{@code date:..2024-01-31}：
+ *     按笔记时间过滤，按本地日期，两端都包含</li>
+ *     <li>{@code archived:true} 只搜索已归档，{@code archived:all} 包含已归档；默认不包含已归档</li>
+ * </ul>
+ * 无法识别的过滤条件按普通关键词处理
+ */
+public final class SearchQuery {
+    static final String PREFIX_PROJECT = "project:";
+    static final String PREFIX_TAG = "tag:";
+    private static final String PREFIX_DATE = "date:";
+    private static final String PREFIX_ARCHIVED = "archived:";
+    private static final String DATE_RANGE_SEPARATOR = "..";
+
+    /**
+     * 已归档笔记的过滤方式
+     */
+    public enum ArchivedMode {
+        EXCLUDE,  // 不包含已归档（默认）
+        ONLY,     // 只搜索已归档
+        INCLUDE   // 包含已归档
+    }
+
+    private final String text;
+    private final List<String> projects;
+    private final List<String> tags;
+    private final Long startTime;  // 包含，null 表示不限
+    private final Long endTime;    // 不包含，null 表示不限
+    private final ArchivedMode archivedMode;
+
+    private SearchQuery(String text, List<String> projects, List<String> tags, Long startTime, Long endTime,
+                        ArchivedMode archivedMode) {
+        this.text = text;
+        this.projects = Collections.unmodifiableList(projects);
+        this.tags = Collections.unmodifiableList(tags);
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.archivedMode = archivedMode;
+    }
+
+    /**
+     * 解析搜索框输入
+     * @param raw 原始输入
+     * @return 搜索条件
+     */
+    public static SearchQuery parse(String raw) {
+        List<String> projects = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        Long startTime = null;
+        Long endTime = null;
+        ArchivedMode archivedMode = ArchivedMode.EXCLUDE;
+        StringBuilder text = new StringBuilder();
+
+        for (String part : split(raw)) {
+            String lower = part.toLowerCase(Locale.ROOT);
+            boolean handled = true;
+            if (lower.startsWith(PREFIX_PROJECT)) {
+                addValue(projects, part.substring(PREFIX_PROJECT.length()));
+            } else if (lower.startsWith(PREFIX_TAG)) {
+                addValue(tags, part.substring(PREFIX_TAG.length()));
+            } else if (lower.startsWith(PREFIX_DATE)) {
+                long[] range = parseDateRange(unquote(part.substring(PREFIX_DATE.length())));
+                if (range != null) {
+                    startTime = range[0] != Long.MIN_VALUE ? Long.valueOf(range[0]) : null;
+                    endTime = range[1] != Long.MAX_VALUE ? Long.valueOf(range[1]) : null;
+                } else {
+                    // 正在输入的 "date:" 忽略，格式错误时按关键词处理
+                    handled = part.length() == PREFIX_DATE.length();
+                }
+            } else if (lower.startsWith(PREFIX_ARCHIVED)) {
+                String value = lower.substring(PREFIX_ARCHIVED.length());
+                if (value.equals("true") || value.equals("yes") || value.equals("1") || value.equals("only")) {
+                    archivedMode = ArchivedMode.ONLY;
+                } else if (value.equals("all") || value.equals("any")) {
+                    archivedMode = ArchivedMode.INCLUDE;
+                } else if (value.equals("false") || value.equals("no") || value.equals("0")) {
+                    archivedMode = ArchivedMode.EXCLUDE;
+                } else {
+                    // 正在输入的 "archived:" 忽略，其他值按关键词处理
+                    handled = value.isEmpty();
+                }
+            } else {
+                handled = false;
+            }
+            if (!handled) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(unquote(part));
+            }
+        }
+        return new SearchQuery(text.toString(), projects, tags, startTime, endTime, archivedMode);
+    }
+
+    /**
+     * 把过滤条件的值格式化为可放入搜索框的形式（含空格时加引号）
+     */
+    public static String formatValue(String value) {
+        if (value.indexOf(' ') >= 0 || value.indexOf('\t') >= 0) {
+            return "\"" + value.replace("\"", "") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * 关键词部分（已去掉过滤条件）
+     */
+    public String getText() {
+        return text;
+    }
+
+    public List<String> getProjects() {
+        return projects;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public Long getStartTime() {
+        return startTime;
+    }
+
+    public Long getEndTime() {
+        return endTime;
+    }
+
+    public ArchivedMode getArchivedMode() {
+        return archivedMode;
+    }
+
+    /**
+     * 是否有除默认归档过滤以外的过滤条件（只有过滤条件没有关键词时也可以搜索）
+     */
+    public boolean hasFilters() {
+        return !projects.isEmpty() || !tags.isEmpty() || startTime != null || endTime != null
+                || archivedMode != ArchivedMode.EXCLUDE;
+    }
+
+    /**
+     * 按空白切分，双引号内的空白不切分
+     */
+    private static List<String> split(String raw) {
+        List<String> parts = new ArrayList<>();
+        if (raw == null) {
+            return parts;
+        }
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                current.append(c);
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (current.length() > 0) {
+                    parts.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            parts.add(current.toString());
+        }
+        return parts;
+    }
+
+    private static void addValue(List<String> values, String value) {
+        String unquoted = unquote(value);
+        // 正在输入的 "project:" 等空值忽略
+        if (!unquoted.isEmpty() && !values.contains(unquoted)) {
+            values.add(unquoted);
+        }
+    }
+
+    private static String unquote(String value) {
+        return value.replace("\"", "").trim();
+    }
+
+    /**
+     * 解析日期范围
+     * @return {开始（包含）, 结束（不包含）}，不限的一端分别为 Long.MIN_VALUE / Long.MAX_VALUE；格式错误返回 null
+     */
+    private static long[] parseDateRange(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        int separator = value.indexOf(DATE_RANGE_SEPARATOR);
+        String from = separator < 0 ? value : value.substring(0, separator);
+        String to = separator < 0 ? value : value.substring(separator + DATE_RANGE_SEPARATOR.length());
+        if (from.isEmpty() && to.isEmpty()) {
+            return null;
+        }
+        Date fromDay = from.isEmpty() ? null : parseDay(from);
+        Date toDay = to.isEmpty() ? null : parseDay(to);
+        if ((!from.isEmpty() && fromDay == null) || (!to.isEmpty() && toDay == null)) {
+            return null;
+        }
+        long start = fromDay != null ? fromDay.getTime() : Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        if (toDay != null) {
+            // 结束日期当天也包含在内，按日历加一天（避开夏令时切换日不是 24 小时的问题）
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(toDay);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            end = calendar.getTimeInMillis();
+        }
+        return start < end ? new long[]{start, end} : null;
+    }
+
+    /**
+     * 按本地时区解析 yyyy-MM-dd，整串都必须匹配
+     * @return 当天零点，格式错误返回 null
+     */
+    private static Date parseDay(String value) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        format.setLenient(false);
+        ParsePosition position = new ParsePosition(0);
+        Date date = format.parse(value, position);
+        return date != null && position.getIndex() == value.length() ? date : null;
+    }
+}
@@ -0,0 +1,215 @@
+package person.notfresh.noteplus.search;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * 搜索结果的排序权重（不可变）
+ * 文本得分乘以一个加成：新近度加成按半衰期衰减，置顶笔记再乘以置顶加成：
+ * <pre>
+ * 得分 = 文本得分 × (1 + recencyWeight × 0.5^(距今天数 / halfLifeDays)) × (置顶 ? pinnedBoost : 1)
+ * </pre>
+ * 刚写的笔记加成为 1 + recencyWeight，每过一个半衰期加成的增量减半；时间在未来的笔记按刚写的处理。
+ * 加成只改变顺序，不改变命中集合；recencyWeight 为 0 且 pinnedBoost 为 1 时不包装查询，即纯文本得分。
+ * 加成从索引的 DocValues 读取（timestamp、pinned），不读取存储字段；
+ * 计算时间 now 由调用方固定，同一次搜索的各页使用同一个 now，翻页时顺序不会变化。
+ * 这里不依赖 Android，可以在 JVM 单元测试中验证排序
+ */
+public final class SearchRanking {
+    static final String FIELD_TIMESTAMP = "timestamp";
+    static final String FIELD_PINNED = "pinned";
+    private static final double DAY_MS = 24L * 60 * 60 * 1000;
+
+    /**
+     * 默认权重：刚写的笔记得分最多翻倍，半衰期 30 天；置顶笔记得分乘以 1.5
+     */
+    public static final SearchRanking DEFAULT = new SearchRanking(1.0, 30, 1.5);
+    /**
+     * 只按文本得分排序
+     */
+    public static final SearchRanking TEXT_ONLY = new SearchRanking(0, 30, 1);
+
+    private final double recencyWeight;
+    private final double halfLifeDays;
+    private final double pinnedBoost;
+
+    /**
+     * @param recencyWeight 新近度权重，不小于 0
+     * @param halfLifeDays 新近度加成的半衰期（天），大于 0
+     * @param pinnedBoost 置顶加成倍数，大于 0（小于 1 时置顶笔记排在后面）
+     */
+    public SearchRanking(double recencyWeight, double halfLifeDays, double pinnedBoost) {
+        if (!(recencyWeight >= 0) || Double.isInfinite(recencyWeight)) {
+            throw new IllegalArgumentException("recencyWeight 必须是不小于 0 的有限值: " + recencyWeight);
+        }
+        if (!(halfLifeDays > 0) || Double.isInfinite(halfLifeDays)) {
+            throw new IllegalArgumentException("halfLifeDays 必须大于 0: " + halfLifeDays);
+        }
+        if (!(pinnedBoost > 0) || Double.isInfinite(pinnedBoost)) {
+            throw new IllegalArgumentException("pinnedBoost 必须大于 0: " + pinnedBoost);
+        }
+        this.recencyWeight = recencyWeight;
+        this.halfLifeDays = halfLifeDays;
+        this.pinnedBoost = pinnedBoost;
+    }
+
+    public double getRecencyWeight() {
+        return recencyWeight;
+    }
+
+    public double getHalfLifeDays() {
+        return halfLifeDays;
+    }
+
+    public double getPinnedBoost() {
+        return pinnedBoost;
+    }
+
+    /**
+     * 是否只按文本得分排序
+     */
+    public boolean isTextOnly() {
+        return recencyWeight == 0 && pinnedBoost == 1;
+    }
+
+    /**
+     * 用加成包装文本查询
+     * @param query 文本查询
+     * @param now 计算新近度的时间（毫秒）
+     * @return 包装后的查询；只按文本得分排序时原样返回
+     */
+    public Query apply(Query query, long now) {
+        if (isTextOnly()) {
+            return query;
+        }
+        return FunctionScoreQuery.boostByValue(query, new BoostValuesSource(this, now));
+    }
+
+    /**
+     * 计算单篇笔记的加成
+     * @param hasTimestamp 索引中是否有时间（没有时不加新近度加成）
+     * @param timestamp 笔记时间（毫秒）
+     * @param pinned 是否置顶
+     * @param now 计算新近度的时间（毫秒）
+     */
+    double boost(boolean hasTimestamp, long timestamp, boolean pinned, long now) {
+        double boost = 1;
+        if (recencyWeight > 0 && hasTimestamp) {
+            double ageDays = Math.max(0, now - timestamp) / DAY_MS;
+            boost += recencyWeight * Math.pow(0.5, ageDays / halfLifeDays);
+        }
+        if (pinned) {
+            boost *= pinnedBoost;
+        }
+        return boost;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchRanking)) {
+            return false;
+        }
+        SearchRanking that = (SearchRanking) o;
+        return Double.compare(recencyWeight, that.recencyWeight) == 0
+                && Double.compare(halfLifeDays, that.halfLifeDays) == 0
+                && Double.compare(pinnedBoost, that.pinnedBoost) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(recencyWeight, halfLifeDays, pinnedBoost);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchRanking(recencyWeight=" + recencyWeight + ", halfLifeDays=" + halfLifeDays
+                + ", pinnedBoost=" + pinnedBoost + ")";
+    }
+
+    /**
+     * 按 timestamp、pinned 两个 NumericDocValues 计算每个文档的加成
+     * 不需要文本得分（由 FunctionScoreQuery 相乘）；按段缓存时以权重和 now 区分
+     */
+    private static final class BoostValuesSource extends DoubleValuesSource {
+        private final SearchRanking ranking;
+        private final long now;
+
+        BoostValuesSource(SearchRanking ranking, long now) {
+            this.ranking = ranking;
+            this.now = now;
+        }
+
+        @Override
+        public DoubleValues getValues(LeafReaderContext ctx, DoubleValues scores) throws IOException {
+            // 字段不存在时返回空的 DocValues
+            NumericDocValues timestamps = DocValues.getNumeric(ctx.reader(), FIELD_TIMESTAMP);
+            NumericDocValues pinned = DocValues.getNumeric(ctx.reader(), FIELD_PINNED);
+            return new DoubleValues() {
+                private double value;
+
+                @Override
+                public double doubleValue() {
+                    return value;
+                }
+
+                @Override
+                public boolean advanceExact(int doc) throws IOException {
+                    boolean hasTimestamp = timestamps.advanceExact(doc);
+                    long timestamp = hasTimestamp ? timestamps.longValue() : 0;
+                    boolean isPinned = pinned.advanceExact(doc) && pinned.longValue() != 0;
+                    value = ranking.boost(hasTimestamp, timestamp, isPinned, now);
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+
+        @Override
+        public DoubleValuesSource rewrite(IndexSearcher reader) {
+            return this;
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext ctx) {
+            return DocValues.isCacheable(ctx, FIELD_TIMESTAMP, FIELD_PINNED);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ranking, now);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BoostValuesSource)) {
+                return false;
+            }
+            BoostValuesSource that = (BoostValuesSource) o;
+            return now == that.now && ranking.equals(that.ranking);
+        }
+
+        @Override
+        public String toString() {
+            return "boost(" + ranking + ", now=" + now + ")";
+        }
+    }
+}
@@ -19,9 +19,16 @@ import java.util.Locale;
 
 /**
  * 搜索结果适配器
+ * 绑定到接近末尾的行时触发加载下一页
  */
 public class SearchResultAdapter extends ArrayAdapter<SearchResult> {
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+    // 距离末尾还剩多少行时加载下一页
+    private static final int LOAD_MORE_THRESHOLD = 5;
+
+    private Runnable onLoadMoreListener;
+    private boolean hasMore = false;
+    private boolean loadingMore = false;
 
     private static class ViewHolder {
         TextView contentView;
@@ -33,6 +40,22 @@ public class SearchResultAdapter extends ArrayAdapter<SearchResult> {
         super(context, R.layout.item_search_result, objects);
     }
 
+    /**
+     * 设置加载下一页的回调
+     */
+    public void setOnLoadMoreListener(Runnable listener) {
+        this.onLoadMoreListener = listener;
+    }
+
+    /**
+     * 一页结果加载完成（或开始新的搜索）后调用
+     * @param hasMore 是否还有下一页
+     */
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+        this.loadingMore = false;
+    }
+
     @NonNull
     @Override
     public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
@@ -48,6 +71,13 @@ public class SearchResultAdapter extends ArrayAdapter<SearchResult> {
             holder = (ViewHolder) convertView.getTag();
         }
 
+        if (hasMore && !loadingMore && onLoadMoreListener != null
+                && position >= getCount() - LOAD_MORE_THRESHOLD) {
+            loadingMore = true;
+            // 不在绑定过程中修改数据
+            parent.post(onLoadMoreListener);
+        }
+
         SearchResult result = getItem(position);
         if (result != null) {
             holder.contentView.setText(result.getHighlightedContent());
@@ -1,273 +1,564 @@
 package person.notfresh.noteplus.search;
 
-import android.content.Context;
-import android.database.Cursor;
 import android.util.Log;
 
-import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.LongPoint;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
-import org.wltea.analyzer.lucene.IKAnalyzer;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-
-import person.notfresh.noteplus.db.NoteDbHelper;
-import person.notfresh.noteplus.db.ProjectContextManager;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 搜索服务
  * 负责分词和搜索查询
+ * 每次搜索从 NoteIndexer 取得各项目分片当前的近实时 reader，组合成 MultiReader，
+ * 由带线程池的 IndexSearcher 并行搜索各分段；分片只在写入后刷新，Lucene 的分段缓存得以保留；
+ * 每次搜索的耗时记录在直方图中
+ * 搜索词中的 project:/tag:/date:/archived: 条件（见 {@link SearchQuery}）编译为索引内的过滤子句，
+ * 第一页同时返回按项目和标签的分面计数
+ * 输入中的最后一个词可能还没输入完整，额外按前缀匹配；{@link #suggest} 按前缀在词典中查找补全
+ * 有关键词时文本得分再乘以新近度和置顶加成，权重见 {@link SearchRanking}
  */
 public class SearchService {
     private static final String TAG = "SearchService";
-    private static final String INDEX_DIR = "search_index";
     private static final String FIELD_ID = "id";
     private static final String FIELD_CONTENT = "content";
+    private static final String FIELD_COMMENT = "comment";
     private static final String FIELD_TIMESTAMP = "timestamp";
     private static final String FIELD_PROJECT_NAME = "projectName";
-    private static final int MAX_SEARCH_RESULTS = 100;
-
-    private final Context context;
-    private final ProjectContextManager projectContextManager;
-    private Analyzer searchAnalyzer;  // 搜索时用智能分词
-    private Directory indexDirectory;
-    private boolean indexInitialized = false;
-
-    public SearchService(Context context, ProjectContextManager projectContextManager) {
-        this.context = context.getApplicationContext();
-        this.projectContextManager = projectContextManager;
-        initIndex();
-    }
+    private static final String FIELD_TAG = "tag";
+    private static final String FIELD_ARCHIVED = "archived";
+    private static final String FIELD_COST = "cost";
+    private static final String FIELD_PINNED = SearchRanking.FIELD_PINNED;
+    // 每页结果数
+    public static final int PAGE_SIZE = 20;
+    // 第一页返回的每个分面最多取值数
+    private static final int FACET_LIMIT = 10;
+    // 只有过滤条件没有关键词时，所有命中得分相同，按时间倒序排列
+    private static final Sort RECENT_FIRST = new Sort(new SortField(FIELD_TIMESTAMP, SortField.Type.LONG, true));
+    // 命中追加内容时，笔记正文和追加内容片段各自的最大长度
+    private static final int COMMENT_SNIPPET_LENGTH = 100;
+    // 每累计多少次搜索输出一次耗时分布
+    private static final int LATENCY_LOG_INTERVAL = 20;
+    // 并行搜索的线程数上限
+    private static final int MAX_SEARCH_THREADS = 4;
+    // 默认返回的补全数
+    public static final int SUGGEST_LIMIT = 8;
+    // 补全时每个字段最多扫描的词数，前缀很短时不遍历整个词典
+    private static final int SUGGEST_SCAN_LIMIT = 256;
 
-    private void initIndex() {
-        try {
-            File indexDir = new File(context.getFilesDir(), INDEX_DIR);
-            if (!indexDir.exists()) {
-                indexDir.mkdirs();
-            }
-            indexDirectory = new org.apache.lucene.store.NIOFSDirectory(indexDir.toPath());
-            searchAnalyzer = new IKAnalyzer(true);
-            indexInitialized = true;
-        } catch (IOException e) {
-            Log.e(TAG, "搜索服务初始化失败", e);
-            indexInitialized = false;
-        }
+    private final NoteIndexer noteIndexer;
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private final LatencyHistogram suggestLatency = new LatencyHistogram();
+    private final ExecutorService searchExecutor;
+    private volatile SearchRanking ranking = SearchRanking.DEFAULT;
+
+    /**
+     * @param noteIndexer 持有各项目分片的索引构建器
+     */
+    public SearchService(NoteIndexer noteIndexer) {
+        this.noteIndexer = noteIndexer;
+        int threads = Math.max(1, Math.min(MAX_SEARCH_THREADS, Runtime.getRuntime().availableProcessors()));
+        this.searchExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "search-slice");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
-     * 对搜索词进行分词
+     * 对搜索词进行分词（结果按搜索词缓存，见 {@link AnalyzerHolder#tokenize}）
      * @param query 搜索词
-     * @return 分词后的词列表
+     * @return 分词后的词列表（不可修改）
      */
     public List<String> tokenize(String query) {
-        List<String> tokens = new ArrayList<>();
-        if (query == null || query.trim().isEmpty()) {
-            return tokens;
-        }
-        try {
-            // IKAnalyzer 的 tokenStream 方法
-            org.apache.lucene.analysis.TokenStream tokenStream = searchAnalyzer.tokenStream(FIELD_CONTENT, query);
-            org.apache.lucene.analysis.tokenattributes.CharTermAttribute termAttr = tokenStream.addAttribute(org.apache.lucene.analysis.tokenattributes.CharTermAttribute.class);
-            tokenStream.reset();
-            while (tokenStream.incrementToken()) {
-                String term = termAttr.toString();
-                if (!term.isEmpty()) {
-                    tokens.add(term);
-                }
-            }
-            tokenStream.end();
-            tokenStream.close();
-        } catch (IOException e) {
-            Log.e(TAG, "分词失败", e);
-        }
-        return tokens;
+        return AnalyzerHolder.tokenize(query);
+    }
+
+    /**
+     * 搜索笔记（第一页）
+     * @param query 搜索词
+     * @return 第一页搜索结果
+     */
+    public SearchPage search(String query) {
+        return search(query, null, PAGE_SIZE, System.currentTimeMillis());
+    }
+
+    /**
+     * 设置排序权重，之后的搜索生效
+     */
+    public void setRanking(SearchRanking ranking) {
+        this.ranking = ranking != null ? ranking : SearchRanking.DEFAULT;
+    }
+
+    public SearchRanking getRanking() {
+        return ranking;
     }
 
     /**
-     * 搜索笔记
+     * 分页搜索笔记
+     * 用 searchAfter 从上一页最后一个命中之后继续，每页只读取本页命中的存储字段，不再有总数上限
+     * 两页之间索引可能被刷新，searchAfter 按得分和文档号定位，个别命中可能重复或跳过，对交互式搜索可以接受
      * @param query 搜索词
-     * @return 搜索结果列表
+     * @param after 上一页最后一个命中，第一页传 null
+     * @param pageSize 每页结果数
+     * @param rankingTime 计算新近度加成的时间，后续页传上一页的 {@link SearchPage#getRankingTime()}
+     * @return 本页搜索结果
      */
-    public List<SearchResult> search(String query) {
+    public SearchPage search(String query, ScoreDoc after, int pageSize, long rankingTime) {
         List<SearchResult> results = new ArrayList<>();
+        ScoreDoc lastScoreDoc = null;
+        boolean hasMore = false;
         if (query == null || query.trim().isEmpty()) {
-            return results;
-        }
-
-        if (!indexInitialized) {
-            Log.e(TAG, "索引未初始化");
-            return results;
+            return new SearchPage(query, results, null, false);
         }
 
-        IndexReader reader = null;
-        Cursor noteCursor = null;
+        long startNanos = System.nanoTime();
+        NoteIndexer.ShardReader shardReader = null;
+        int totalHits = -1;
+        Map<String, Integer> projectCounts = null;
+        Map<String, Integer> tagCounts = null;
         try {
-            // 1. 分词
-            List<String> tokens = tokenize(query);
-            if (tokens.isEmpty()) {
+            // 1. 解析过滤条件，对关键词部分分词
+            SearchQuery searchQuery = SearchQuery.parse(query);
+            List<String> tokens = tokenize(searchQuery.getText());
+            if (tokens.isEmpty() && !searchQuery.hasFilters()) {
                 Log.d(TAG, "分词结果为空");
-                return results;
+                return new SearchPage(query, results, null, false);
             }
             Log.d(TAG, "分词结果: " + tokens);
 
-            // 2. 构建 BooleanQuery（OR 匹配）
+            // 2. 构建 BooleanQuery：关键词之间 OR 匹配，过滤条件作为 FILTER 子句（不参与打分）
             BooleanQuery.Builder boolQueryBuilder = new BooleanQuery.Builder();
-            for (String token : tokens) {
-                // 在 content 字段中搜索每个分词
-                boolQueryBuilder.add(new BooleanClause(
-                        new org.apache.lucene.search.TermQuery(new Term(FIELD_CONTENT, token)),
-                        BooleanClause.Occur.SHOULD
-                ));
+            if (tokens.isEmpty()) {
+                boolQueryBuilder.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+            } else {
+                BooleanQuery.Builder tokenQueryBuilder = new BooleanQuery.Builder();
+                for (String token : tokens) {
+                    // 在 content 和 comment（追加内容）字段中搜索每个分词
+                    tokenQueryBuilder.add(new BooleanClause(
+                            new org.apache.lucene.search.TermQuery(new Term(FIELD_CONTENT, token)),
+                            BooleanClause.Occur.SHOULD
+                    ));
+                    tokenQueryBuilder.add(new BooleanClause(
+                            new org.apache.lucene.search.TermQuery(new Term(FIELD_COMMENT, token)),
+                            BooleanClause.Occur.SHOULD
+                    ));
+                }
+                // 输入没有以空白结尾时最后一个词可能还没输入完整，再按前缀匹配（常数得分，完整匹配仍排在前面）
+                if (!Character.isWhitespace(query.charAt(query.length() - 1))) {
+                    String lastToken = tokens.get(tokens.size() - 1);
+                    tokenQueryBuilder.add(new PrefixQuery(new Term(FIELD_CONTENT, lastToken)), BooleanClause.Occur.SHOULD);
+                    tokenQueryBuilder.add(new PrefixQuery(new Term(FIELD_COMMENT, lastToken)), BooleanClause.Occur.SHOULD);
+                }
+                boolQueryBuilder.add(tokenQueryBuilder.build(), BooleanClause.Occur.MUST);
             }
+            addFilterClauses(boolQueryBuilder, searchQuery);
             BooleanQuery booleanQuery = boolQueryBuilder.build();
+            // 有关键词时乘以新近度和置顶加成；只有过滤条件时按时间排序，不需要加成
+            Query rankedQuery = tokens.isEmpty() ? booleanQuery : ranking.apply(booleanQuery, rankingTime);
 
-            // 3. 执行搜索
-            reader = DirectoryReader.open(indexDirectory);
-            IndexSearcher searcher = new IndexSearcher(reader);
-            TopDocs topDocs = searcher.search(booleanQuery, MAX_SEARCH_RESULTS);
+            // 3. 执行搜索：所有项目分片组合成一个 MultiReader，按分段切片在线程池中并行搜索
+            shardReader = noteIndexer.acquireReader();
+            IndexSearcher searcher = new IndexSearcher(shardReader.getReader(), searchExecutor);
+            TopDocs topDocs = tokens.isEmpty()
+                    ? searcher.searchAfter(after, booleanQuery, pageSize, RECENT_FIRST)
+                    : searcher.searchAfter(after, rankedQuery, pageSize);
 
             Log.d(TAG, "找到 " + topDocs.totalHits + " 条匹配结果");
 
-            // 4. 处理结果
-            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            // 第一页统计命中总数和分面计数（遍历全部命中，只读 DocValues）
+            if (after == null) {
+                FacetCollector facetCollector = new FacetCollector(FIELD_PROJECT_NAME, FIELD_TAG);
+                searcher.search(booleanQuery, facetCollector);
+                totalHits = facetCollector.getTotalHits();
+                projectCounts = facetCollector.getCounts(FIELD_PROJECT_NAME, FACET_LIMIT);
+                tagCounts = facetCollector.getCounts(FIELD_TAG, FACET_LIMIT);
+            }
+
+            // 4. 处理结果：按得分顺序直接用存储字段构建笔记，不回表
+            ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+            if (scoreDocs.length > 0) {
+                lastScoreDoc = scoreDocs[scoreDocs.length - 1];
+            }
+            hasMore = scoreDocs.length == pageSize;
+            for (ScoreDoc scoreDoc : scoreDocs) {
                 Document doc = searcher.doc(scoreDoc.doc);
-                long noteId = doc.getField(FIELD_ID).numericValue().longValue();
-                String content = doc.getField(FIELD_CONTENT).stringValue();
-                long timestamp = doc.getField(FIELD_TIMESTAMP).numericValue().longValue();
-                // projectName 字段可能在旧索引中不存在
-                org.apache.lucene.index.IndexableField projectNameField = doc.getField(FIELD_PROJECT_NAME);
-                String projectName = projectNameField != null ? projectNameField.stringValue() : "default";
-
-                // 根据 projectName 获取对应的数据库Helper
-                NoteDbHelper noteDbHelper = projectContextManager.getDbHelperForProject(projectName);
-                if (noteDbHelper == null) {
-                    Log.w(TAG, "无法获取项目 " + projectName + " 的数据库Helper，跳过该结果");
+                org.apache.lucene.index.IndexableField costField = doc.getField(FIELD_COST);
+                org.apache.lucene.index.IndexableField pinnedField = doc.getField(FIELD_PINNED);
+                if (costField == null || pinnedField == null) {
+                    // 旧格式文档，索引版本升级后会被清空重建，重建完成前跳过
                     continue;
                 }
+                long noteId = doc.getField(FIELD_ID).numericValue().longValue();
+                String content = doc.get(FIELD_CONTENT);
+                long timestamp = doc.getField(FIELD_TIMESTAMP).numericValue().longValue();
+                double cost = costField.numericValue().doubleValue();
+                boolean pinned = pinnedField.numericValue().intValue() == 1;
+                String projectName = doc.get(FIELD_PROJECT_NAME);
 
-                // 获取对应的 Note 对象
-                noteCursor = noteDbHelper.getWritableDatabase().query(
-                        NoteDbHelper.TABLE_NOTES,
-                        new String[]{NoteDbHelper.COLUMN_ID, NoteDbHelper.COLUMN_CONTENT,
-                                NoteDbHelper.COLUMN_TIMESTAMP, NoteDbHelper.COLUMN_COST,
-                                NoteDbHelper.COLUMN_IS_PINNED},
-                        NoteDbHelper.COLUMN_ID + "=?",
-                        new String[]{String.valueOf(noteId)},
-                        null, null, null
-                );
-
-                person.notfresh.noteplus.core.model.Note note = null;
-                if (noteCursor != null && noteCursor.moveToFirst()) {
-                    note = new person.notfresh.noteplus.core.model.Note(
-                            noteCursor.getLong(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_ID)),
-                            noteCursor.getString(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_CONTENT)),
-                            noteCursor.getLong(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_TIMESTAMP)),
-                            noteCursor.getDouble(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_COST)),
-                            noteCursor.getInt(noteCursor.getColumnIndexOrThrow(NoteDbHelper.COLUMN_IS_PINNED)) == 1
-                    );
-                    note.setProjectName(projectName);
-                }
+                // 高亮处理：按索引偏移截取匹配最密集的片段；命中追加内容时附上匹配最多的一条追加内容
+                String highlighted = highlightHit(searcher.getIndexReader(), scoreDoc.doc, content,
+                        doc.getValues(FIELD_COMMENT), tokens);
+                person.notfresh.noteplus.core.model.Note note = new person.notfresh.noteplus.core.model.Note(
+                        noteId, content, timestamp, cost, pinned, projectName);
+                results.add(new SearchResult(note, highlighted, scoreDoc.score));
+            }
 
-                // 无论如何都要关闭 cursor
-                if (noteCursor != null) {
-                    noteCursor.close();
-                    noteCursor = null;
+        } catch (org.apache.lucene.store.AlreadyClosedException e) {
+            // 切换项目时索引构建器会被重建，删除项目时分片会被关闭
+            Log.w(TAG, "索引分片已关闭，忽略本次搜索");
+        } catch (IOException e) {
+            Log.e(TAG, "搜索失败", e);
+        } finally {
+            if (shardReader != null) {
+                try {
+                    shardReader.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "释放 reader 失败", e);
                 }
+            }
+            recordLatency(System.nanoTime() - startNanos);
+        }
 
-                if (note != null) {
-                    // 高亮处理：简单替换匹配词
-                    String highlighted = highlightContent(content, tokens);
-                    results.add(new SearchResult(note, highlighted, scoreDoc.score));
-                }
+        return new SearchPage(query, results, lastScoreDoc, hasMore, totalHits, projectCounts, tagCounts,
+                rankingTime);
+    }
+
+    /**
+     * 输入补全
+     * 取输入中最后一个词（正在输入的词）按前缀在各分片的词典中查找：普通词在 content 和 comment 字段中查找，
+     * "tag:"、"project:" 之后的部分在标签和项目名中查找，按包含该词的文档数降序。
+     * 普通词与索引时一样用分析器切分最后一段输入，取最后一个词：中文词与词之间没有空白，不能按空白截取。
+     * 只用 TermsEnum.seekCeil 定位后顺序读取词典，不执行查询，每个字段最多扫描 SUGGEST_SCAN_LIMIT 个词
+     * @param input 搜索框当前输入
+     * @param limit 最多返回的补全数
+     * @return 补全结果及被补全的词在输入中的起始位置；输入为空或以空白结尾时没有补全
+     */
+    public SearchSuggestions suggest(String input, int limit) {
+        if (input == null || input.isEmpty() || Character.isWhitespace(input.charAt(input.length() - 1))) {
+            return SearchSuggestions.empty(input);
+        }
+        int wordStart = input.length();
+        while (wordStart > 0 && !Character.isWhitespace(input.charAt(wordStart - 1))) {
+            wordStart--;
+        }
+        String word = input.substring(wordStart);
+        String lower = word.toLowerCase(Locale.ROOT);
+        String filterPrefix;
+        String[] fields;
+        String prefix;
+        int replaceStart = wordStart;
+        if (lower.startsWith(SearchQuery.PREFIX_TAG)) {
+            filterPrefix = SearchQuery.PREFIX_TAG;
+            fields = new String[]{FIELD_TAG};
+            prefix = word.substring(SearchQuery.PREFIX_TAG.length()).replace("\"", "");
+        } else if (lower.startsWith(SearchQuery.PREFIX_PROJECT)) {
+            filterPrefix = SearchQuery.PREFIX_PROJECT;
+            fields = new String[]{FIELD_PROJECT_NAME};
+            prefix = word.substring(SearchQuery.PREFIX_PROJECT.length()).replace("\"", "");
+        } else {
+            // 最后一个词必须延伸到输入末尾，否则末尾是标点等被分析器丢弃的字符，不是正在输入的词
+            AnalyzerHolder.Token token = AnalyzerHolder.lastToken(word);
+            if (token == null || token.endOffset != word.length()) {
+                return SearchSuggestions.empty(input);
             }
+            filterPrefix = null;
+            fields = new String[]{FIELD_CONTENT, FIELD_COMMENT};
+            // 分析器输出的词与索引中的词一致（英文已转为小写）
+            prefix = token.term;
+            replaceStart = wordStart + token.startOffset;
+        }
+        if (prefix.isEmpty()) {
+            return SearchSuggestions.empty(input);
+        }
 
+        long startNanos = System.nanoTime();
+        Map<String, Integer> docFreqs = new HashMap<>();
+        NoteIndexer.ShardReader shardReader = null;
+        try {
+            shardReader = noteIndexer.acquireReader();
+            BytesRef prefixBytes = new BytesRef(prefix);
+            for (String field : fields) {
+                Terms terms = MultiTerms.getTerms(shardReader.getReader(), field);
+                if (terms == null) {
+                    continue;
+                }
+                TermsEnum termsEnum = terms.iterator();
+                if (termsEnum.seekCeil(prefixBytes) == TermsEnum.SeekStatus.END) {
+                    continue;
+                }
+                int scanned = 0;
+                do {
+                    BytesRef term = termsEnum.term();
+                    if (!StringHelper.startsWith(term, prefixBytes)) {
+                        break;
+                    }
+                    String text = term.utf8ToString();
+                    // 已经输入完整的词不再作为补全
+                    if (!text.equals(prefix)) {
+                        docFreqs.merge(text, termsEnum.docFreq(), Integer::sum);
+                    }
+                } while (++scanned < SUGGEST_SCAN_LIMIT && termsEnum.next() != null);
+            }
+        } catch (org.apache.lucene.store.AlreadyClosedException e) {
+            Log.w(TAG, "索引分片已关闭，忽略本次补全");
         } catch (IOException e) {
-            Log.e(TAG, "搜索失败", e);
+            Log.e(TAG, "补全失败", e);
         } finally {
-            if (reader != null) {
+            if (shardReader != null) {
                 try {
-                    reader.close();
+                    shardReader.close();
                 } catch (IOException e) {
-                    Log.e(TAG, "关闭 reader 失败", e);
+                    Log.e(TAG, "释放 reader 失败", e);
                 }
             }
-            if (noteCursor != null) {
-                noteCursor.close();
+            suggestLatency.record(System.nanoTime() - startNanos);
+            if (suggestLatency.getCount() % LATENCY_LOG_INTERVAL == 0) {
+                Log.i(TAG, "补全耗时分布: " + suggestLatency.summary());
             }
         }
 
-        return results;
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(docFreqs.entrySet());
+        entries.sort((a, b) -> !a.getValue().equals(b.getValue())
+                ? Integer.compare(b.getValue(), a.getValue())
+                : a.getKey().length() != b.getKey().length()
+                ? Integer.compare(a.getKey().length(), b.getKey().length())
+                : a.getKey().compareTo(b.getKey()));
+        List<String> suggestions = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (suggestions.size() >= limit) {
+                break;
+            }
+            suggestions.add(filterPrefix != null
+                    ? filterPrefix + SearchQuery.formatValue(entry.getKey()) : entry.getKey());
+        }
+        return new SearchSuggestions(input, replaceStart, suggestions);
     }
 
     /**
-     * 简单高亮处理：将匹配的词用 【】 包裹
+     * 把项目、标签、时间范围和归档条件编译成过滤子句
+     * 项目之间为"或"，标签之间为"且"；旧文档没有归档字段，按"未归档"处理
+     */
+    private void addFilterClauses(BooleanQuery.Builder builder, SearchQuery searchQuery) {
+        List<String> projects = searchQuery.getProjects();
+        if (projects.size() == 1) {
+            builder.add(new TermQuery(new Term(FIELD_PROJECT_NAME, projects.get(0))), BooleanClause.Occur.FILTER);
+        } else if (projects.size() > 1) {
+            BooleanQuery.Builder projectQuery = new BooleanQuery.Builder();
+            for (String project : projects) {
+                projectQuery.add(new TermQuery(new Term(FIELD_PROJECT_NAME, project)), BooleanClause.Occur.SHOULD);
+            }
+            builder.add(projectQuery.build(), BooleanClause.Occur.FILTER);
+        }
+        for (String tag : searchQuery.getTags()) {
+            builder.add(new TermQuery(new Term(FIELD_TAG, tag)), BooleanClause.Occur.FILTER);
+        }
+        if (searchQuery.getStartTime() != null || searchQuery.getEndTime() != null) {
+            long start = searchQuery.getStartTime() != null ? searchQuery.getStartTime() : Long.MIN_VALUE;
+            long end = searchQuery.getEndTime() != null ? searchQuery.getEndTime() - 1 : Long.MAX_VALUE;
+            builder.add(LongPoint.newRangeQuery(FIELD_TIMESTAMP, start, end), BooleanClause.Occur.FILTER);
+        }
+        Query archivedQuery = new TermQuery(new Term(FIELD_ARCHIVED, "1"));
+        switch (searchQuery.getArchivedMode()) {
+            case ONLY:
+                builder.add(archivedQuery, BooleanClause.Occur.FILTER);
+                break;
+            case EXCLUDE:
+                builder.add(archivedQuery, BooleanClause.Occur.MUST_NOT);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 获取搜索耗时直方图
+     */
+    public LatencyHistogram getSearchLatency() {
+        return searchLatency;
+    }
+
+    /**
+     * 获取补全耗时直方图
+     */
+    public LatencyHistogram getSuggestLatency() {
+        return suggestLatency;
+    }
+
+    private void recordLatency(long nanos) {
+        searchLatency.record(nanos);
+        if (searchLatency.getCount() % LATENCY_LOG_INTERVAL == 0) {
+            Log.i(TAG, "搜索耗时分布: " + searchLatency.summary());
+        }
+    }
+
+    /**
+     * 生成命中的高亮摘要：笔记正文片段，命中追加内容时再附上匹配最多的一条追加内容片段
+     * @param reader 当前搜索使用的 reader
+     * @param docId 文档号（全局）
+     * @param content 笔记内容
+     * @param comments 追加内容（存储字段，旧文档为空）
+     * @param tokens 分词列表
+     * @return 高亮后的摘要
+     */
+    private String highlightHit(IndexReader reader, int docId, String content, String[] comments, List<String> tokens) {
+        String commentSnippet = comments.length > 0 ? highlightComment(reader, docId, comments, tokens) : null;
+        if (commentSnippet == null) {
+            return highlightContent(reader, docId, content, tokens, PassageHighlighter.DEFAULT_SNIPPET_LENGTH);
+        }
+        String contentSnippet = highlightContent(reader, docId, content, tokens, COMMENT_SNIPPET_LENGTH);
+        return (contentSnippet != null ? contentSnippet + "\n" : "") + "追加：" + commentSnippet;
+    }
+
+    /**
+     * 高亮处理：优先读取索引中记录的匹配词偏移，只对匹配最密集的一段片段加【】标记
+     * 旧文档没有偏移时退回到在内容中扫描
+     * @param reader 当前搜索使用的 reader
+     * @param docId 文档号（全局）
      * @param content 原始内容
      * @param tokens 分词列表
-     * @return 高亮后的内容
+     * @param maxLength 片段最大长度
+     * @return 高亮后的片段
      */
-    private String highlightContent(String content, List<String> tokens) {
+    private String highlightContent(IndexReader reader, int docId, String content, List<String> tokens, int maxLength) {
         if (content == null || tokens.isEmpty()) {
-            return content;
+            // 只有过滤条件时没有可高亮的词，只截取开头
+            return PassageHighlighter.highlight(content, Collections.<int[]>emptyList(), maxLength);
         }
-        // 预处理：收集所有需要高亮的区间（去重）
-        java.util.Set<String> tokenSet = new java.util.HashSet<>(tokens);
-        List<int[]> highlights = new java.util.ArrayList<>();
-        for (String token : tokenSet) {
-            int index = 0;
-            while ((index = content.indexOf(token, index)) != -1) {
-                highlights.add(new int[]{index, index + token.length()});
-                index += token.length();
+        List<int[]> offsets = null;
+        try {
+            offsets = readOffsets(reader, docId, FIELD_CONTENT, tokens);
+        } catch (IOException e) {
+            Log.w(TAG, "读取匹配偏移失败，退回到扫描内容", e);
+        }
+        if (offsets == null || offsets.isEmpty()) {
+            // 旧文档没有偏移，或只有前缀匹配（索引中的词比输入的词长），在内容中扫描输入的词
+            offsets = PassageHighlighter.findOffsets(content, tokens);
+        }
+        return PassageHighlighter.highlight(content, offsets, maxLength);
+    }
+
+    /**
+     * 追加内容高亮：选出匹配词最多的一条追加内容并截取片段
+     * 追加内容是多值字段，倒排中的偏移跨值累加，不能直接对应到单条追加内容；
+     * 这里只用倒排判断是否命中，命中后对各条（通常很短）重新分词得到准确偏移
+     * @return 高亮片段；追加内容未命中时返回 null
+     */
+    private String highlightComment(IndexReader reader, int docId, String[] comments, List<String> tokens) {
+        try {
+            List<int[]> matched = readOffsets(reader, docId, FIELD_COMMENT, tokens);
+            if (matched == null || matched.isEmpty()) {
+                return null;
             }
+        } catch (IOException e) {
+            Log.w(TAG, "读取追加内容匹配失败", e);
+            return null;
         }
-        // 按起始位置排序
-        highlights.sort((a, b) -> Integer.compare(a[0], b[0]));
-        // 构建结果
-        StringBuilder result = new StringBuilder();
-        int lastEnd = 0;
-        for (int[] range : highlights) {
-            result.append(content, lastEnd, range[0]);
-            result.append("【").append(content, range[0], range[1]).append("】");
-            lastEnd = range[1];
+        java.util.Set<String> tokenSet = new java.util.HashSet<>(tokens);
+        String bestComment = null;
+        List<int[]> bestOffsets = null;
+        for (String comment : comments) {
+            List<int[]> offsets = analyzeOffsets(comment, tokenSet);
+            if (bestOffsets == null || offsets.size() > bestOffsets.size()) {
+                bestComment = comment;
+                bestOffsets = offsets;
+            }
         }
-        result.append(content.substring(lastEnd));
-        // 限制显示长度
-        String finalResult = result.toString();
-        if (finalResult.length() > 200) {
-            int highlightIndex = finalResult.indexOf("【");
-            if (highlightIndex > 100) {
-                finalResult = "..." + finalResult.substring(highlightIndex - 50);
-            } else {
-                finalResult = finalResult.substring(0, 200) + "...";
+        return PassageHighlighter.highlight(bestComment, bestOffsets, COMMENT_SNIPPET_LENGTH);
+    }
+
+    /**
+     * 对文本重新分词，返回属于给定分词集合的词的字符偏移
+     */
+    private List<int[]> analyzeOffsets(String text, java.util.Set<String> tokenSet) {
+        List<int[]> offsets = new ArrayList<>();
+        try (org.apache.lucene.analysis.TokenStream tokenStream = AnalyzerHolder.get().tokenStream(FIELD_COMMENT, text)) {
+            org.apache.lucene.analysis.tokenattributes.CharTermAttribute termAttr =
+                    tokenStream.addAttribute(org.apache.lucene.analysis.tokenattributes.CharTermAttribute.class);
+            org.apache.lucene.analysis.tokenattributes.OffsetAttribute offsetAttr =
+                    tokenStream.addAttribute(org.apache.lucene.analysis.tokenattributes.OffsetAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                if (tokenSet.contains(termAttr.toString())) {
+                    offsets.add(new int[]{offsetAttr.startOffset(), offsetAttr.endOffset()});
+                }
             }
+            tokenStream.end();
+        } catch (IOException e) {
+            Log.w(TAG, "追加内容分词失败", e);
         }
-        return finalResult;
+        return offsets;
     }
 
     /**
-     * 关闭资源
+     * 从倒排中读取文档内各分词在指定字段中的字符偏移
+     * @return 匹配区间列表；字段不存在或未记录偏移时返回 null
      */
-    public void close() {
-        try {
-            if (searchAnalyzer != null) {
-                searchAnalyzer.close();
+    private List<int[]> readOffsets(IndexReader reader, int docId, String field, List<String> tokens) throws IOException {
+        List<LeafReaderContext> leaves = reader.leaves();
+        LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        FieldInfo fieldInfo = leaf.reader().getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null
+                || fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) < 0) {
+            return null;
+        }
+        int localDoc = docId - leaf.docBase;
+        List<int[]> offsets = new ArrayList<>();
+        for (String token : new java.util.HashSet<>(tokens)) {
+            PostingsEnum postings = leaf.reader().postings(new Term(field, token), PostingsEnum.OFFSETS);
+            if (postings == null || postings.advance(localDoc) != localDoc) {
+                continue;
             }
-            if (indexDirectory != null) {
-                indexDirectory.close();
+            int freq = postings.freq();
+            for (int i = 0; i < freq; i++) {
+                postings.nextPosition();
+                int startOffset = postings.startOffset();
+                int endOffset = postings.endOffset();
+                if (startOffset < 0 || endOffset < 0) {
+                    return null;
+                }
+                offsets.add(new int[]{startOffset, endOffset});
             }
-        } catch (IOException e) {
-            Log.e(TAG, "关闭搜索服务失败", e);
         }
+        return offsets;
+    }
+
+    /**
+     * 关闭资源
+     */
+    public void close() {
+        // 分析器进程内共用，不在这里关闭
+        searchExecutor.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package person.notfresh.noteplus.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 输入补全结果
+ * 记录被补全的词在输入中的起始位置：中文输入中词与词之间没有空白，
+ * 选中补全时只替换从该位置到末尾的部分，不替换整段输入
+ */
+public class SearchSuggestions {
+    private final String input;
+    private final int replaceStart;  // 被补全的词在输入中的起始位置
+    private final List<String> suggestions;
+
+    public SearchSuggestions(String input, int replaceStart, List<String> suggestions) {
+        this.input = input;
+        this.replaceStart = replaceStart;
+        this.suggestions = suggestions != null ? suggestions : Collections.<String>emptyList();
+    }
+
+    /**
+     * 没有补全
+     */
+    public static SearchSuggestions empty(String input) {
+        return new SearchSuggestions(input, input != null ? input.length() : 0, null);
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public int getReplaceStart() {
+        return replaceStart;
+    }
+
+    /**
+     * 补全后的词（过滤条件带前缀，例如 "tag:工作"）
+     */
+    public List<String> getSuggestions() {
+        return suggestions;
+    }
+
+    public boolean isEmpty() {
+        return suggestions.isEmpty();
+    }
+}
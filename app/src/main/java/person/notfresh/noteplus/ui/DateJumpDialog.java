@@ -29,6 +29,7 @@ import java.util.Set;
 import person.notfresh.noteplus.R;
 import person.notfresh.noteplus.core.TimeRangeFilter;
 import person.notfresh.noteplus.core.NoteDataLoader;
+import person.notfresh.noteplus.db.DbHelperCache;
 import person.notfresh.noteplus.db.NoteDbHelper;
 import person.notfresh.noteplus.db.ProjectContextManager;
 import person.notfresh.noteplus.manager.NoteListManager;
@@ -49,6 +50,9 @@ public class DateJumpDialog extends DialogFragment {
     // Cross-project mode for Timeline
     private boolean isCrossProject = false;
     private TimeRangeFilter timeRangeFilter = null;
+    // 任意时间范围（优先于 timeRangeFilter），rangeEnd 为 0 表示未设置
+    private long rangeStart = 0;
+    private long rangeEnd = 0;
 
     public static DateJumpDialog newInstance() {
         return new DateJumpDialog();
@@ -70,6 +74,11 @@ public class DateJumpDialog extends DialogFragment {
         this.timeRangeFilter = filter;
     }
 
+    public void setTimeRange(long startTime, long endTime) {
+        this.rangeStart = startTime;
+        this.rangeEnd = endTime;
+    }
+
     @NonNull
     @Override
     public Dialog onCreateDialog(Bundle savedInstanceState) {
@@ -109,7 +118,10 @@ public class DateJumpDialog extends DialogFragment {
             String query;
             String[] args;
 
-            if (timeRangeFilter != null) {
+            if (rangeEnd > 0) {
+                query = "SELECT DISTINCT date(timestamp/1000, 'unixepoch') FROM notes WHERE timestamp >= ? AND timestamp <= ?";
+                args = new String[]{String.valueOf(rangeStart), String.valueOf(rangeEnd)};
+            } else if (timeRangeFilter != null) {
                 // 使用时间范围过滤
                 java.util.Calendar calendar = java.util.Calendar.getInstance();
                 long currentTime = calendar.getTimeInMillis();
@@ -155,11 +167,12 @@ public class DateJumpDialog extends DialogFragment {
                 continue;
             }
 
-            try {
-                NoteDbHelper projectDbHelper = projectManager.getDbHelperForProject(projectName);
-                if (projectDbHelper == null) {
+            // 持有引用，查询期间该项目的数据库不会因淘汰而关闭
+            try (DbHelperCache.Lease lease = projectManager.acquireDbHelper(projectName)) {
+                if (lease == null) {
                     continue;
                 }
+                NoteDbHelper projectDbHelper = lease.getHelper();
 
                 android.database.sqlite.SQLiteDatabase db = projectDbHelper.getReadableDatabase();
                 android.util.Log.d("DateJumpDialog", "项目: " + projectName + ", 数据库: " + db.getPath());
@@ -167,7 +180,10 @@ public class DateJumpDialog extends DialogFragment {
                 String query;
                 String[] args;
 
-                if (timeRangeFilter != null) {
+                if (rangeEnd > 0) {
+                    query = "SELECT DISTINCT date(timestamp/1000, 'unixepoch') FROM notes WHERE timestamp >= ? AND timestamp <= ?";
+                    args = new String[]{String.valueOf(rangeStart), String.valueOf(rangeEnd)};
+                } else if (timeRangeFilter != null) {
                     java.util.Calendar calendar = java.util.Calendar.getInstance();
                     long currentTime = calendar.getTimeInMillis();
                     calendar.add(java.util.Calendar.DAY_OF_YEAR, -timeRangeFilter.getDays());
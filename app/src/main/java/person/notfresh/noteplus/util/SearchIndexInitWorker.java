@@ -13,8 +13,6 @@ import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
 import person.notfresh.noteplus.db.NoteDbHelper;
-import person.notfresh.noteplus.db.ProjectContextManager;
-import person.notfresh.noteplus.search.NoteIndexer;
 import person.notfresh.noteplus.search.SearchManager;
 
 /**
@@ -35,14 +33,25 @@ public class SearchIndexInitWorker extends Worker {
     @Override
     public Result doWork() {
         Log.i(TAG, "开始后台索引构建任务");
-        NoteIndexer indexer = null;
         try {
-            indexer = new NoteIndexer(getApplicationContext(), ProjectContextManager.getInstance(getApplicationContext()));
+            // 使用 SearchManager 持有的索引构建器，不另开写入器（同一目录只能有一个 IndexWriter）
+            SearchManager searchManager = SearchManager.getInstance(getApplicationContext());
+
+            // 索引格式版本变化时清空旧索引，全部笔记按新格式重新索引
+            SharedPreferences prefs = getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+            if (prefs.getInt(NoteDbHelper.PREF_SEARCH_INDEX_VERSION, 0) != NoteDbHelper.SEARCH_INDEX_VERSION) {
+                Log.i(TAG, "索引版本变化，清空旧索引");
+                if (!searchManager.clearIndexNow()) {
+                    // 没有清空时不能标记为新版本，下次重试
+                    Log.w(TAG, "清空旧索引失败，稍后重试");
+                    return Result.retry();
+                }
+            }
 
-            Log.i(TAG, "发现未索引笔记，开始构建...");
+            Log.i(TAG, "开始同步索引...");
 
-            // 执行批量索引（跨所有项目）
-            indexer.indexUnindexedNotes((current, t) -> {
+            // 按变更日志同步索引（跨所有项目）；索引构建器已关闭时抛出 IllegalStateException，不标记为已构建
+            searchManager.syncIndexNow((current, t) -> {
                 Log.d(TAG, "索引进度: " + current + "/" + t);
             });
 
@@ -52,13 +61,12 @@ public class SearchIndexInitWorker extends Worker {
             Log.i(TAG, "后台索引构建任务完成");
             return Result.success();
 
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "索引构建器已关闭，稍后重试: " + e.getMessage());
+            return Result.retry();
         } catch (Exception e) {
             Log.e(TAG, "后台索引构建任务失败", e);
             return Result.retry();
-        } finally {
-            if (indexer != null) {
-                indexer.close();
-            }
         }
     }
 
@@ -205,7 +205,7 @@ public class NoteWidgetConfigActivity extends AppCompatActivity {
     }
 
     private void showProjectSelectionDialog() {
-        ProjectContextManager projectManager = new ProjectContextManager(this);
+        ProjectContextManager projectManager = ProjectContextManager.getInstance(this);
         List<String> projects = projectManager.getProjectList();
         if (projects == null || projects.isEmpty()) {
             Toast.makeText(this, "暂无项目可选", Toast.LENGTH_SHORT).show();
@@ -15,6 +15,7 @@ import person.notfresh.noteplus.core.GlobalTimeline;
 import person.notfresh.noteplus.core.TimeRangeFilter;
 import person.notfresh.noteplus.core.model.Comment;
 import person.notfresh.noteplus.core.model.TimelineItemType;
+import person.notfresh.noteplus.db.DbHelperCache;
 import person.notfresh.noteplus.db.NoteDbHelper;
 import person.notfresh.noteplus.db.ProjectContextManager;
 
@@ -25,21 +26,23 @@ public class NoteWidgetDataSource {
             return new ArrayList<>();
         }
 
-        ProjectContextManager projectManager = new ProjectContextManager(context);
+        ProjectContextManager projectManager = ProjectContextManager.getInstance(context);
         List<NoteWidgetItem> result = new ArrayList<>();
 
         if (rangeType == NoteWidgetUpdater.RANGE_CURRENT_PROJECT) {
             String currentProject = projectManager.getCurrentProject();
-            NoteDbHelper dbHelper = projectManager.getDbHelperForProject(currentProject);
-            result.addAll(loadNotesForProject(dbHelper, currentProject));
+            try (DbHelperCache.Lease lease = projectManager.acquireDbHelper(currentProject)) {
+                result.addAll(loadNotesForProject(lease != null ? lease.getHelper() : null, currentProject));
+            }
         } else if (rangeType == NoteWidgetUpdater.RANGE_SELECTED_PROJECTS) {
             Set<String> projects = selectedProjects == null ? new HashSet<>() : selectedProjects;
             if (projects.isEmpty()) {
                 projects = new HashSet<>(projectManager.getProjectList());
             }
             for (String projectName : projects) {
-                NoteDbHelper dbHelper = projectManager.getDbHelperForProject(projectName);
-                result.addAll(loadNotesForProject(dbHelper, projectName));
+                try (DbHelperCache.Lease lease = projectManager.acquireDbHelper(projectName)) {
+                    result.addAll(loadNotesForProject(lease != null ? lease.getHelper() : null, projectName));
+                }
             }
         } else {
             GlobalTimeline timeline = new GlobalTimeline(projectManager);
@@ -75,15 +78,15 @@ public class NoteWidgetDataSource {
         if (context == null || projectName == null || projectName.isEmpty() || noteId <= 0) {
             return null;
         }
-        ProjectContextManager projectManager = new ProjectContextManager(context);
-        NoteDbHelper dbHelper = projectManager.getDbHelperForProject(projectName);
-        if (dbHelper == null) {
+        ProjectContextManager projectManager = ProjectContextManager.getInstance(context);
+        DbHelperCache.Lease lease = projectManager.acquireDbHelper(projectName);
+        if (lease == null) {
             return null;
         }
 
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
         Cursor cursor = null;
         try {
+            SQLiteDatabase db = lease.getHelper().getReadableDatabase();
             cursor = db.query(
                     NoteDbHelper.TABLE_NOTES,
                     new String[]{
@@ -114,6 +117,7 @@ public class NoteWidgetDataSource {
             if (cursor != null) {
                 cursor.close();
             }
+            lease.close();
         }
         return null;
     }
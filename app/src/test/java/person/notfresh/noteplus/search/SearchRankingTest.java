@@ -0,0 +1,145 @@
+package person.notfresh.noteplus.search;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 搜索排序加成的单元测试（JVM，内存索引）
+ * 时间固定，结果可重复；文本相同的笔记 BM25 得分相同，顺序只由加成决定
+ */
+public class SearchRankingTest {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_CONTENT = "content";
+
+    private Directory directory;
+    private IndexWriter writer;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new ByteBuffersDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        directory.close();
+    }
+
+    @Test
+    public void boost_followsHalfLife() {
+        SearchRanking ranking = new SearchRanking(1.0, 30, 2.0);
+        assertEquals(2.0, ranking.boost(true, NOW, false, NOW), 1e-9);
+        assertEquals(1.5, ranking.boost(true, NOW - 30 * DAY, false, NOW), 1e-9);
+        assertEquals(1.25, ranking.boost(true, NOW - 60 * DAY, false, NOW), 1e-9);
+        // 时间在未来的笔记按刚写的处理
+        assertEquals(2.0, ranking.boost(true, NOW + DAY, false, NOW), 1e-9);
+        // 置顶加成与新近度加成相乘；没有时间时只有置顶加成
+        assertEquals(3.0, ranking.boost(true, NOW - 30 * DAY, true, NOW), 1e-9);
+        assertEquals(2.0, ranking.boost(false, 0, true, NOW), 1e-9);
+        assertEquals(1.0, ranking.boost(false, 0, false, NOW), 1e-9);
+    }
+
+    @Test
+    public void recentNotesRankFirst() throws IOException {
+        addNote("old", "meeting notes", NOW - 100 * DAY, false);
+        addNote("new", "meeting notes", NOW, false);
+        addNote("mid", "meeting notes", NOW - 10 * DAY, false);
+
+        assertEquals(Arrays.asList("new", "mid", "old"), search(SearchRanking.DEFAULT, "meeting"));
+    }
+
+    @Test
+    public void pinnedNoteRanksFirstAtSameAge() throws IOException {
+        addNote("plain", "meeting notes", NOW - DAY, false);
+        addNote("pinned", "meeting notes", NOW - DAY, true);
+
+        assertEquals(Arrays.asList("pinned", "plain"), search(SearchRanking.DEFAULT, "meeting"));
+    }
+
+    @Test
+    public void weightsAreConfigurable() throws IOException {
+        addNote("recent", "meeting notes", NOW, false);
+        addNote("pinned", "meeting notes", NOW - 365 * DAY, true);
+
+        // 新近度权重大于置顶加成时，新笔记在前；反过来置顶笔记在前
+        assertEquals(Arrays.asList("recent", "pinned"), search(new SearchRanking(2.0, 30, 1.5), "meeting"));
+        assertEquals(Arrays.asList("pinned", "recent"), search(new SearchRanking(0.5, 30, 3.0), "meeting"));
+    }
+
+    @Test
+    public void textOnlyKeepsTextScoreOrder() throws IOException {
+        addNote("weak", "meeting with a long list of other unrelated words here", NOW, true);
+        addNote("strong", "meeting meeting", NOW - 365 * DAY, false);
+
+        Query query = new TermQuery(new Term(FIELD_CONTENT, "meeting"));
+        assertSame(query, SearchRanking.TEXT_ONLY.apply(query, NOW));
+        assertEquals(Arrays.asList("strong", "weak"), search(SearchRanking.TEXT_ONLY, "meeting"));
+    }
+
+    @Test
+    public void matchSetIsUnchanged() throws IOException {
+        addNote("hit", "meeting notes", NOW - 100 * DAY, false);
+        addNote("miss", "shopping list", NOW, true);
+
+        assertEquals(Arrays.asList("hit"), search(SearchRanking.DEFAULT, "meeting"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveHalfLife() {
+        new SearchRanking(1.0, 0, 1.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeRecencyWeight() {
+        new SearchRanking(-1.0, 30, 1.0);
+    }
+
+    private void addNote(String id, String content, long timestamp, boolean pinned) throws IOException {
+        Document doc = new Document();
+        doc.add(new StringField(FIELD_ID, id, Field.Store.YES));
+        doc.add(new TextField(FIELD_CONTENT, content, Field.Store.NO));
+        doc.add(new NumericDocValuesField(SearchRanking.FIELD_TIMESTAMP, timestamp));
+        doc.add(new NumericDocValuesField(SearchRanking.FIELD_PINNED, pinned ? 1 : 0));
+        writer.addDocument(doc);
+    }
+
+    private List<String> search(SearchRanking ranking, String term) throws IOException {
+        writer.commit();
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            Query query = ranking.apply(new TermQuery(new Term(FIELD_CONTENT, term)), NOW);
+            List<String> ids = new ArrayList<>();
+            for (ScoreDoc scoreDoc : searcher.search(query, 10).scoreDocs) {
+                ids.add(searcher.doc(scoreDoc.doc).get(FIELD_ID));
+            }
+            return ids;
+        }
+    }
+}